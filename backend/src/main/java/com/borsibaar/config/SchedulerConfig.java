@@ -1,17 +1,40 @@
 package com.borsibaar.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class SchedulerConfig {
 
     @Bean
-    public ThreadPoolTaskScheduler taskScheduler() {
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${app.scheduler.pool-size:2}") int poolSize) {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(1);
+        scheduler.setPoolSize(poolSize);
         scheduler.setThreadNamePrefix("scheduler-");
         return scheduler;
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs per-organization price correction concurrently. Virtual threads,
+     * bounded so the job never holds more database connections than
+     * {@code parallelism}.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService priceCorrectionExecutor(@Value("${app.price-correction.parallelism:4}") int parallelism) {
+        return Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("price-correction-", 0).factory());
+    }
+
+    /**
+     * Loads and sends inventory stream events; one virtual thread per task,
+     * so a client with a full socket buffer blocks only its own send.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService inventoryStreamExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("inventory-stream-", 0).factory());
+    }
+}
@@ -78,6 +78,7 @@ public class SecurityConfig {
                         // TODO: these should not be fully public
                         .requestMatchers(HttpMethod.GET, "/api/categories/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/inventory/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/menu").permitAll()
                         // All other API requests require authentication
                         .anyRequest().authenticated())
                 .oauth2Login(oauth2 -> oauth2
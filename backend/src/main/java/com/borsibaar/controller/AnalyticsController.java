@@ -0,0 +1,33 @@
+package com.borsibaar.controller;
+
+import com.borsibaar.dto.SalesHeatmapResponseDto;
+import com.borsibaar.service.AnalyticsService;
+import com.borsibaar.util.SecurityUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.OffsetDateTime;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    private final AnalyticsService analyticsService;
+
+    /**
+     * Volume and revenue per station and category for each hour, or day, of
+     * the range; for staffing the bar.
+     */
+    @GetMapping("/heatmap")
+    public SalesHeatmapResponseDto getHeatmap(
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        return analyticsService.getHeatmap(SecurityUtils.getCurrentUser().getOrganizationId(), granularity, from,
+                to);
+    }
+}
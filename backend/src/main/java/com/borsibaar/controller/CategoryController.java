@@ -4,18 +4,20 @@ import com.borsibaar.dto.CategoryRequestDto;
 import com.borsibaar.dto.CategoryResponseDto;
 import com.borsibaar.entity.User;
 import com.borsibaar.service.CategoryService;
+import com.borsibaar.service.EncodedResponseCache;
 import com.borsibaar.util.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/categories")
 @RequiredArgsConstructor
 public class CategoryController {
     private final CategoryService categoryService;
+    private final EncodedResponseCache responseCache;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -25,7 +27,8 @@ public class CategoryController {
     }
 
     @GetMapping
-    public List<CategoryResponseDto> getAll(@RequestParam(required = false) Long organizationId) {
+    public ResponseEntity<byte[]> getAll(@RequestParam(required = false) Long organizationId,
+            WebRequest request) {
         // If organizationId is provided, use it (for public access)
         // Otherwise, get from authenticated user
         Long orgId;
@@ -35,7 +38,8 @@ public class CategoryController {
             User user = SecurityUtils.getCurrentUser();
             orgId = user.getOrganizationId();
         }
-        return categoryService.getAllByOrg(orgId);
+        return responseCache.respond("categories", orgId, null, request,
+                () -> categoryService.getAllByOrg(orgId));
     }
 
     @GetMapping("/{id}")
@@ -2,13 +2,22 @@ package com.borsibaar.controller;
 
 import com.borsibaar.dto.*;
 import com.borsibaar.entity.User;
+import com.borsibaar.service.EncodedResponseCache;
 import com.borsibaar.service.InventoryService;
+import com.borsibaar.service.InventoryStreamHub;
+import com.borsibaar.service.PriceCandleService;
 import com.borsibaar.util.SecurityUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 @RestController
@@ -17,11 +26,15 @@ import java.util.List;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final EncodedResponseCache responseCache;
+    private final InventoryStreamHub inventoryStreamHub;
+    private final PriceCandleService priceCandleService;
 
     @GetMapping
-    public List<InventoryResponseDto> getOrganizationInventory(
+    public ResponseEntity<byte[]> getOrganizationInventory(
             @RequestParam(required = false) Long categoryId,
-            @RequestParam(required = false) Long organizationId) {
+            @RequestParam(required = false) Long organizationId,
+            WebRequest request) {
         // If organizationId is provided, use it (for public access)
         // Otherwise, get from authenticated user
         Long orgId;
@@ -31,7 +44,30 @@ public class InventoryController {
             User user = SecurityUtils.getCurrentUser();
             orgId = user.getOrganizationId();
         }
-        return inventoryService.getByOrganization(orgId, categoryId);
+        // Polled by every display screen: served as pre-encoded JSON
+        return responseCache.respond("inventory", orgId, categoryId, request,
+                () -> inventoryService.getByOrganization(orgId, categoryId));
+    }
+
+    // Delta sync: pass the previous response's version as "since"; omit it for a full sync
+    @GetMapping("/changes")
+    public InventoryChangesResponseDto getInventoryChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long organizationId) {
+        Long orgId = organizationId != null ? organizationId : SecurityUtils.getCurrentUser().getOrganizationId();
+        return inventoryService.getChanges(orgId, since);
+    }
+
+    // Live changes for display screens; "since" (or Last-Event-ID on reconnect) replays missed changes
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamInventory(
+            @RequestParam(required = false) Long organizationId,
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        Long orgId = organizationId != null ? organizationId : SecurityUtils.getCurrentUser().getOrganizationId();
+        SseEmitter emitter = inventoryStreamHub.subscribe(orgId, lastEventId != null ? lastEventId : since);
+        // Stop nginx from buffering the stream
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
     }
 
     @GetMapping("/product/{productId}")
@@ -64,20 +100,36 @@ public class InventoryController {
     }
 
     @GetMapping("/product/{productId}/history")
-    public List<InventoryTransactionResponseDto> getTransactionHistory(@PathVariable Long productId) {
+    public List<InventoryTransactionResponseDto> getTransactionHistory(@PathVariable Long productId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.getTransactionHistory(productId, user.getOrganizationId());
+        return inventoryService.getTransactionHistory(productId, user.getOrganizationId(), before, limit);
+    }
+
+    @GetMapping("/product/{productId}/candles")
+    public PriceCandlesResponseDto getPriceCandles(@PathVariable Long productId,
+            @RequestParam(required = false) Long organizationId,
+            @RequestParam(required = false) String interval,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        Long orgId = organizationId != null ? organizationId : SecurityUtils.getCurrentUser().getOrganizationId();
+        return priceCandleService.getCandles(productId, orgId, interval, from, to);
     }
 
     @GetMapping("/sales-stats")
-    public List<UserSalesStatsResponseDto> getUserSalesStats() {
+    public List<UserSalesStatsResponseDto> getUserSalesStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.getUserSalesStats(user.getOrganizationId());
+        return inventoryService.getUserSalesStats(user.getOrganizationId(), from, to);
     }
 
     @GetMapping("/station-sales-stats")
-    public List<StationSalesStatsResponseDto> getStationSalesStats() {
+    public List<StationSalesStatsResponseDto> getStationSalesStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.getStationSalesStats(user.getOrganizationId());
+        return inventoryService.getStationSalesStats(user.getOrganizationId(), from, to);
     }
 }
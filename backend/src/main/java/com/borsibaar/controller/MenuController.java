@@ -0,0 +1,32 @@
+package com.borsibaar.controller;
+
+import com.borsibaar.service.EncodedResponseCache;
+import com.borsibaar.service.InventoryService;
+import com.borsibaar.util.SecurityUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/api/menu")
+@RequiredArgsConstructor
+public class MenuController {
+    private final InventoryService inventoryService;
+    private final EncodedResponseCache responseCache;
+
+    /**
+     * Categories with their products, prices and stock in one response, so a
+     * display screen needs a single conditional request per refresh.
+     */
+    @GetMapping
+    public ResponseEntity<byte[]> getMenu(@RequestParam(required = false) Long organizationId,
+            WebRequest request) {
+        // If organizationId is provided, use it (for public access)
+        Long orgId = organizationId != null ? organizationId : SecurityUtils.getCurrentUser().getOrganizationId();
+        return responseCache.respond("menu", orgId, null, request, () -> inventoryService.getMenu(orgId));
+    }
+}
@@ -1,8 +1,12 @@
 package com.borsibaar.controller;
 
+import com.borsibaar.dto.SaleBatchRequestDto;
+import com.borsibaar.dto.SaleBatchResponseDto;
 import com.borsibaar.dto.SaleRequestDto;
 import com.borsibaar.dto.SaleResponseDto;
 import com.borsibaar.entity.User;
+import com.borsibaar.service.SaleBatchService;
+import com.borsibaar.service.SaleIdempotencyService;
 import com.borsibaar.service.SalesService;
 import com.borsibaar.util.SecurityUtils;
 import jakarta.validation.Valid;
@@ -16,11 +20,26 @@ import org.springframework.web.bind.annotation.*;
 public class SalesController {
 
     private final SalesService salesService;
+    private final SaleIdempotencyService saleIdempotencyService;
+    private final SaleBatchService saleBatchService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public SaleResponseDto processSale(@RequestBody @Valid SaleRequestDto request) {
+    public SaleResponseDto processSale(@RequestBody @Valid SaleRequestDto request,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         User user = SecurityUtils.getCurrentUser();
-        return salesService.processSale(request, user.getId(), user.getOrganizationId());
+        if (idempotencyKey == null) {
+            return salesService.processSale(request, user.getId(), user.getOrganizationId());
+        }
+        // Retries with the same key get the original response without re-running the sale
+        return saleIdempotencyService.processOnce(user.getOrganizationId(), idempotencyKey,
+                () -> salesService.processSale(request, user.getId(), user.getOrganizationId(), idempotencyKey));
+    }
+
+    // Replays sales queued by a station while offline; results are reported per sale
+    @PostMapping("/batch")
+    public SaleBatchResponseDto processSaleBatch(@RequestBody @Valid SaleBatchRequestDto request) {
+        User user = SecurityUtils.getCurrentUser();
+        return saleBatchService.replay(request.sales(), user.getId(), user.getOrganizationId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+/**
+ * Inventory rows changed since a cursor. {@code removedProductIds} lists
+ * products deactivated in that time; {@code version} is the cursor for the
+ * next request.
+ */
+public record InventoryChangesResponseDto(
+        long version,
+        List<InventoryResponseDto> changed,
+        List<Long> removedProductIds) {
+}
@@ -0,0 +1,15 @@
+package com.borsibaar.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.OffsetDateTime;
+
+public record OfflineSaleRequestDto(
+                @Size(max = 100, message = "Client sale ID must be at most 100 characters") String clientSaleId,
+
+                @NotNull(message = "Sale time is required") OffsetDateTime soldAt,
+
+                @NotNull(message = "Sale is required") @Valid SaleRequestDto sale) {
+}
@@ -0,0 +1,12 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+
+public record PriceCandleDto(
+        String time,
+        BigDecimal open,
+        BigDecimal high,
+        BigDecimal low,
+        BigDecimal close,
+        BigDecimal volume) {
+}
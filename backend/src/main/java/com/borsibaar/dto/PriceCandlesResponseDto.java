@@ -0,0 +1,10 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+public record PriceCandlesResponseDto(
+        String interval,
+        String from,
+        String to,
+        List<PriceCandleDto> candles) {
+}
@@ -0,0 +1,11 @@
+package com.borsibaar.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record SaleBatchRequestDto(
+                @NotEmpty(message = "Sales cannot be empty") @Size(max = 1000, message = "Cannot replay more than 1000 sales in a single batch") @Valid List<OfflineSaleRequestDto> sales) {
+}
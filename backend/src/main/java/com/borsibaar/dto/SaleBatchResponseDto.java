@@ -0,0 +1,10 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+public record SaleBatchResponseDto(
+                int created,
+                int duplicates,
+                int failed,
+                List<SaleBatchResultDto> results) {
+}
@@ -0,0 +1,9 @@
+package com.borsibaar.dto;
+
+public record SaleBatchResultDto(
+                int index,
+                String clientSaleId,
+                String status,
+                SaleResponseDto sale,
+                String error) {
+}
@@ -0,0 +1,13 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+
+public record SalesHeatmapCellDto(
+        String time,
+        Long barStationId,
+        String barStationName,
+        Long categoryId,
+        String categoryName,
+        BigDecimal volume,
+        BigDecimal revenue) {
+}
@@ -0,0 +1,10 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+public record SalesHeatmapResponseDto(
+        String granularity,
+        String from,
+        String to,
+        List<SalesHeatmapCellDto> cells) {
+}
@@ -5,13 +5,17 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
+// Only write changed columns, so an entity save never overwrites a concurrent
+// atomic stock update (see InventoryStockRepository)
 @Entity
+@DynamicUpdate
 @Table(name = "inventory")
 @Getter
 @Setter
@@ -30,4 +30,8 @@ public class Organization {
 
     @Column(name = "price_decrease_step", precision = 19, scale = 4)
     private BigDecimal priceDecreaseStep;
+
+    // How often unsold dynamic prices decay, and the idle window that decides it
+    @Column(name = "tick_interval_seconds", nullable = false)
+    private Integer tickIntervalSeconds;
 }
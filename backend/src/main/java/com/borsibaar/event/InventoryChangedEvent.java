@@ -0,0 +1,9 @@
+package com.borsibaar.event;
+
+/**
+ * Published when an organization's categories, products, stock or prices
+ * change outside the sale path. Listeners use it to drop anything they derived from the
+ * previous state.
+ */
+public record InventoryChangedEvent(Long organizationId) {
+}
@@ -0,0 +1,9 @@
+package com.borsibaar.event;
+
+/**
+ * Published when sales or price ticks change an organization's stock or
+ * prices in the database. Unlike {@link InventoryChangedEvent} it does not
+ * invalidate the market engine's book, which already reflects the change.
+ */
+public record MarketMovedEvent(Long organizationId) {
+}
@@ -0,0 +1,7 @@
+package com.borsibaar.event;
+
+/**
+ * Published when an organization is created, deleted or its settings change.
+ */
+public record OrganizationChangedEvent(Long organizationId) {
+}
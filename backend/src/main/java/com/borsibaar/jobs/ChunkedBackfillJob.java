@@ -0,0 +1,67 @@
+package com.borsibaar.jobs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Merges the ledger written before a rollup existed into it, one chunk of
+ * ledger ids per transaction, on a virtual thread started once the
+ * application is ready.
+ * <p>
+ * Progress is committed with each chunk, so an interrupted backfill resumes
+ * where it stopped on the next start, and finished backfills cost one query.
+ * Rows written since the rollup exists are merged on the write path, and
+ * merging is order-independent, so the backfill can run alongside sales.
+ */
+@Slf4j
+abstract class ChunkedBackfillJob {
+
+    private final String rollup;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    /**
+     * @param rollup name of the rollup, for the thread name and log lines
+     */
+    protected ChunkedBackfillJob(String rollup, PlatformTransactionManager transactionManager, int chunkSize) {
+        this.rollup = rollup;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Merges the next chunk of at most {@code chunkSize} ledger ids and
+     * advances the stored progress, inside the chunk's transaction.
+     *
+     * @return {@code false} once nothing is left to merge
+     */
+    protected abstract boolean mergeNextChunk(int chunkSize);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Off the startup thread: a long ledger must not delay readiness
+        Thread.ofVirtual().name(rollup.replace(' ', '-') + "-backfill").start(this::backfill);
+    }
+
+    /**
+     * @return number of chunks merged
+     */
+    int backfill() {
+        int chunks = 0;
+        try {
+            while (Boolean.TRUE.equals(chunkTransaction.execute(status -> mergeNextChunk(chunkSize)))) {
+                chunks++;
+            }
+            if (chunks > 0) {
+                log.info("Backfilled {} from {} ledger chunks", rollup, chunks);
+            }
+        } catch (RuntimeException e) {
+            // Committed chunks stay merged; the rest is picked up on the next start
+            log.warn("Backfill of {} stopped after {} chunks", rollup, chunks, e);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,23 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.service.SaleIdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class IdempotencyKeyCleanupJob {
+
+    private final SaleIdempotencyService saleIdempotencyService;
+
+    public IdempotencyKeyCleanupJob(SaleIdempotencyService saleIdempotencyService) {
+        this.saleIdempotencyService = saleIdempotencyService;
+    }
+
+    @Scheduled(cron = "0 30 * * * *")
+    public void purgeExpiredKeys() {
+        int removed = saleIdempotencyService.purgeExpired();
+        log.info("Removed {} expired sale idempotency keys", removed);
+    }
+}
@@ -0,0 +1,29 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.service.MarketEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.market-engine.enabled", havingValue = "true")
+public class MarketFlushJob {
+
+    private final MarketEngine marketEngine;
+
+    public MarketFlushJob(MarketEngine marketEngine) {
+        this.marketEngine = marketEngine;
+    }
+
+    @Scheduled(fixedDelayString = "${app.market-engine.flush-interval-ms:200}")
+    public void flush() {
+        try {
+            marketEngine.flush();
+        } catch (RuntimeException e) {
+            // Entries stay journaled and are retried on the next run
+            log.warn("Market flush failed", e);
+        }
+    }
+}
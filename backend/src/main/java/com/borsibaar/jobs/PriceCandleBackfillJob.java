@@ -0,0 +1,29 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Backfills {@code price_candles} from the ledger written before it existed.
+ */
+@Service
+@ConditionalOnProperty(name = "app.price-candles.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class PriceCandleBackfillJob extends ChunkedBackfillJob {
+
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+
+    public PriceCandleBackfillJob(InventoryTransactionRepository inventoryTransactionRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.price-candles.backfill.chunk-size:10000}") int chunkSize) {
+        super("price candles", transactionManager, chunkSize);
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+    }
+
+    @Override
+    protected boolean mergeNextChunk(int chunkSize) {
+        return inventoryTransactionRepository.backfillCandles(chunkSize);
+    }
+}
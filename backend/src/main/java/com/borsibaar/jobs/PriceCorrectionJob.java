@@ -1,90 +1,107 @@
 package com.borsibaar.jobs;
 
-import com.borsibaar.entity.Inventory;
-import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
+import com.borsibaar.event.MarketMovedEvent;
 import com.borsibaar.repository.*;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.borsibaar.service.MarketEngine;
+import com.borsibaar.util.ReferenceIdGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Decays the prices of one organization's idle products. Ticks are scheduled
+ * per organization by {@link PriceTickScheduler}.
+ * <p>
+ * Metrics aggregate over all organizations, so their number does not grow
+ * the number of series: {@code price_correction.tick.duration} and
+ * {@code price_correction.org.lag} are timers per organization tick, and
+ * {@code price_correction.org.failures} counts failed ticks. A decay
+ * statement still running after {@code app.price-correction.timeout} is
+ * cancelled and counted as a failure.
+ */
+@Slf4j
 @Service
 public class PriceCorrectionJob {
 
     private final InventoryRepository inventoryRepository;
-    private final InventoryTransactionRepository inventoryTransactionRepository;
     private final ProductRepository productRepository;
+    private final ReferenceIdGenerator referenceIdGenerator;
+    private final ObjectProvider<MarketEngine> marketEngine;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate decayTransaction;
 
     public PriceCorrectionJob(InventoryRepository inventoryRepository,
-            InventoryTransactionRepository inventoryTransactionRepository,
-            ProductRepository productRepository) {
+            ProductRepository productRepository,
+            ReferenceIdGenerator referenceIdGenerator,
+            ObjectProvider<MarketEngine> marketEngine,
+            MeterRegistry meterRegistry,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.price-correction.timeout:PT50S}") Duration timeout) {
         this.inventoryRepository = inventoryRepository;
-        this.inventoryTransactionRepository = inventoryTransactionRepository;
         this.productRepository = productRepository;
+        this.referenceIdGenerator = referenceIdGenerator;
+        this.marketEngine = marketEngine;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.decayTransaction = new TransactionTemplate(transactionManager);
+        // Applied to the decay statement as its query timeout
+        this.decayTransaction.setTimeout((int) Math.max(1, timeout.toSeconds()));
     }
 
-    @Scheduled(cron = "0 * * * * *")
-    public void adjustPrices() {
-        System.out.println("Running price reduction job");
-        List<Product> inactiveProducts = productRepository.findByActiveOrgAndInactiveSalesLastMinute();
+    /**
+     * Lowers the price of every dynamically priced product not sold within
+     * {@code window}, provided the organization sold anything in that window.
+     * Failures are logged and counted, never thrown, so one organization
+     * cannot affect another's schedule.
+     *
+     * @param dueAtNanos {@link System#nanoTime()} at which this tick was due
+     * @return number of products whose price changed
+     */
+    public int correctOrganization(Long organizationId, Duration window, long dueAtNanos) {
+        // Lag: how long after its due time this organization's tick started
+        meterRegistry.timer("price_correction.org.lag")
+                .record(Math.max(0, System.nanoTime() - dueAtNanos), TimeUnit.NANOSECONDS);
 
-        if (inactiveProducts.isEmpty()) {
-            System.out.println("No product prices to update automatically");
-            return;
-        }
-
-        int updatedCount = 0;
-        for (Product product : inactiveProducts) {
-            Inventory inventory = Optional.ofNullable(product.getInventory())
-                    .orElseGet(() -> {
-                        Inventory newInv = new Inventory();
-                        newInv.setOrganizationId(product.getOrganizationId());
-                        newInv.setProduct(product);
-                        newInv.setQuantity(BigDecimal.ZERO);
-                        newInv.setAdjustedPrice(product.getBasePrice());
-                        newInv.setCreatedAt(OffsetDateTime.now());
-                        newInv.setUpdatedAt(OffsetDateTime.now());
-                        return newInv;
-                    });
-
-            BigDecimal decreaseAmount = product.getOrganization().getPriceDecreaseStep();
-            BigDecimal minPrice = Optional.ofNullable(product.getMinPrice()).orElse(decreaseAmount);
-            BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice()).orElse(product.getBasePrice());
-            BigDecimal newPrice = currentPrice.subtract(decreaseAmount);
-            if (newPrice.compareTo(minPrice) < 0) {
-                newPrice = minPrice;
+        OffsetDateTime since = OffsetDateTime.now().minus(window);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            int updatedCount;
+            // Prices are owned by the market engine while it is enabled
+            MarketEngine engine = marketEngine.getIfAvailable();
+            if (engine != null) {
+                List<Product> idleProducts = productRepository.findIdleDynamicProducts(organizationId, since);
+                updatedCount = engine.applyPriceTicks(idleProducts, since);
+            } else {
+                // One statement: decay every idle product and write its ledger row
+                updatedCount = decayTransaction.execute(status -> inventoryRepository.decayPrices(
+                        organizationId, since, referenceIdGenerator.next("REDUCE")));
+                if (updatedCount > 0) {
+                    eventPublisher.publishEvent(new MarketMovedEvent(organizationId));
+                }
             }
-
-            if (newPrice.compareTo(currentPrice) == 0) {
-                // already at lowest price
-                continue;
+            sample.stop(meterRegistry.timer("price_correction.tick.duration"));
+            if (updatedCount > 0) {
+                log.info("Updated prices of {} products for organization {}", updatedCount, organizationId);
             }
-
-            inventory.setAdjustedPrice(newPrice);
-            inventory.setUpdatedAt(OffsetDateTime.now());
-            inventory = inventoryRepository.save(inventory);
-
-            // Create price reduction transaction
-            InventoryTransaction transaction = new InventoryTransaction();
-            transaction.setInventory(inventory);
-            transaction.setTransactionType("ADJUSTMENT");
-            transaction.setQuantityChange(BigDecimal.ZERO);
-            transaction.setQuantityBefore(inventory.getQuantity());
-            transaction.setQuantityAfter(inventory.getQuantity());
-            transaction.setPriceBefore(currentPrice);
-            transaction.setPriceAfter(newPrice);
-            transaction.setReferenceId("REDUCE-" + System.currentTimeMillis());
-            transaction.setNotes("PriceCorrectionJob");
-            transaction.setCreatedBy(null);
-            transaction.setCreatedAt(OffsetDateTime.now());
-            inventoryTransactionRepository.save(transaction);
-
-            updatedCount++;
+            return updatedCount;
+        } catch (RuntimeException e) {
+            meterRegistry.counter("price_correction.org.failures").increment();
+            log.warn("Price reduction failed for organization {}", organizationId, e);
+            return 0;
         }
-        System.out.println("Updated prices of " + updatedCount + " products.");
     }
 }
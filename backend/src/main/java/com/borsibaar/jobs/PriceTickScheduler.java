@@ -0,0 +1,150 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.entity.Organization;
+import com.borsibaar.event.OrganizationChangedEvent;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.util.HashedWheelTimer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Schedules each organization's price tick independently on a hashed timing
+ * wheel, every {@code Organization.tickIntervalSeconds}.
+ * <p>
+ * First ticks are spread across the interval by a hash of the organization
+ * id, so organizations with the same cadence do not all fire together.
+ * Later ticks are due exactly one interval after the previous due time, so
+ * slow ticks do not make the schedule drift. A changed interval applies
+ * from the next tick.
+ * <p>
+ * Organizations that no longer exist have their pending tick cancelled,
+ * either when their {@link OrganizationChangedEvent} finds them gone or on
+ * the periodic resync with the {@code organizations} table, which also
+ * catches rows deleted outside the application.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.price-correction.enabled", havingValue = "true", matchIfMissing = true)
+public class PriceTickScheduler {
+
+    private final OrganizationRepository organizationRepository;
+    private final PriceCorrectionJob priceCorrectionJob;
+    private final HashedWheelTimer timer;
+    private final Map<Long, Duration> intervals = new ConcurrentHashMap<>();
+    private final Map<Long, HashedWheelTimer.Timeout> timeouts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PriceTickScheduler(OrganizationRepository organizationRepository,
+            PriceCorrectionJob priceCorrectionJob,
+            @Qualifier("priceCorrectionExecutor") ExecutorService executor,
+            @Value("${app.price-correction.wheel-tick:PT1S}") Duration wheelTick,
+            @Value("${app.price-correction.wheel-size:512}") int wheelSize) {
+        this(organizationRepository, priceCorrectionJob, new HashedWheelTimer(wheelTick, wheelSize, executor));
+    }
+
+    PriceTickScheduler(OrganizationRepository organizationRepository, PriceCorrectionJob priceCorrectionJob,
+            HashedWheelTimer timer) {
+        this.organizationRepository = organizationRepository;
+        this.priceCorrectionJob = priceCorrectionJob;
+        this.timer = timer;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        timer.start();
+        for (Organization organization : organizationRepository.findAll()) {
+            register(organization);
+        }
+        log.info("Scheduled price ticks for {} organizations", intervals.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrganizationChanged(OrganizationChangedEvent event) {
+        organizationRepository.findById(event.organizationId())
+                .ifPresentOrElse(this::register, () -> unregister(event.organizationId()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.price-correction.resync-interval-ms:300000}",
+            initialDelayString = "${app.price-correction.resync-interval-ms:300000}")
+    public void resync() {
+        Set<Long> gone = new HashSet<>(intervals.keySet());
+        for (Organization organization : organizationRepository.findAll()) {
+            gone.remove(organization.getId());
+            register(organization);
+        }
+        gone.forEach(this::unregister);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.stop();
+    }
+
+    void register(Organization organization) {
+        Duration interval = Duration.ofSeconds(organization.getTickIntervalSeconds());
+        if (intervals.put(organization.getId(), interval) == null) {
+            Duration delay = initialDelay(organization.getId(), interval);
+            scheduleTick(organization.getId(), System.nanoTime() + delay.toNanos());
+        }
+    }
+
+    void unregister(Long organizationId) {
+        intervals.remove(organizationId);
+        HashedWheelTimer.Timeout timeout = timeouts.remove(organizationId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Offset of an organization's first tick within its interval, stable per id.
+     */
+    static Duration initialDelay(Long organizationId, Duration interval) {
+        // Fibonacci hashing spreads sequential ids evenly
+        long hash = (organizationId * 0x9E3779B97F4A7C15L) >>> 1;
+        return Duration.ofMillis(hash % Math.max(1, interval.toMillis()));
+    }
+
+    private void scheduleTick(Long organizationId, long dueAtNanos) {
+        Duration delay = Duration.ofNanos(Math.max(0, dueAtNanos - System.nanoTime()));
+        timeouts.put(organizationId, timer.schedule(() -> tick(organizationId, dueAtNanos), delay));
+    }
+
+    private void tick(Long organizationId, long dueAtNanos) {
+        Duration interval = intervals.get(organizationId);
+        if (interval == null) {
+            // Unregistered after this tick was scheduled
+            return;
+        }
+        try {
+            priceCorrectionJob.correctOrganization(organizationId, interval, dueAtNanos);
+        } finally {
+            // Read again: the interval may have changed, or the organization gone, while this tick ran
+            Duration next = intervals.get(organizationId);
+            if (next != null) {
+                long nextDue = dueAtNanos + next.toNanos();
+                // Behind by more than a whole interval: skip missed ticks rather than burst
+                if (nextDue < System.nanoTime()) {
+                    nextDue = System.nanoTime() + next.toNanos();
+                }
+                scheduleTick(organizationId, nextDue);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Backfills {@code sales_heatmap} from the sales written before it existed.
+ */
+@Service
+@ConditionalOnProperty(name = "app.sales-heatmap.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class SalesHeatmapBackfillJob extends ChunkedBackfillJob {
+
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+
+    public SalesHeatmapBackfillJob(InventoryTransactionRepository inventoryTransactionRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.sales-heatmap.backfill.chunk-size:10000}") int chunkSize) {
+        super("sales heatmap", transactionManager, chunkSize);
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+    }
+
+    @Override
+    protected boolean mergeNextChunk(int chunkSize) {
+        return inventoryTransactionRepository.backfillHeatmap(chunkSize);
+    }
+}
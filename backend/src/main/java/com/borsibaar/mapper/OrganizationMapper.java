@@ -17,6 +17,7 @@ public interface OrganizationMapper {
     @Mapping(target = "updatedAt", ignore = true) // set in service
     @Mapping(target = "priceIncreaseStep", source = "priceIncreaseStep")
     @Mapping(target = "priceDecreaseStep", source = "priceDecreaseStep")
+    @Mapping(target = "tickIntervalSeconds", source = "tickIntervalSeconds", defaultValue = "60")
     Organization toEntity(OrganizationRequestDto request);
 
     OrganizationResponseDto toResponse(Organization organization);
@@ -0,0 +1,69 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.InventoryChangesResponseDto;
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.dto.MenuCategoryDto;
+
+import java.util.List;
+
+/**
+ * Read model for inventory listings, the most frequently polled read.
+ * <p>
+ * Every write to {@code inventory} stamps {@code change_version} with the id
+ * of its transaction, which lets clients fetch only what changed.
+ */
+public interface InventoryListingRepository {
+
+    /**
+     * Lists the inventory of an organization's active products in one query,
+     * sorted by product name. The unit price is the adjusted price, falling
+     * back to the base price.
+     *
+     * @param categoryId restricts the listing to one category; {@code null} for all
+     */
+    List<InventoryResponseDto> findListing(Long organizationId, Long categoryId);
+
+    /**
+     * Lists every category of an organization, in creation order, with the
+     * inventory of its active products as {@link #findListing} would, all in
+     * one query. Categories without such products have an empty list.
+     */
+    List<MenuCategoryDto> findMenu(Long organizationId);
+
+    /**
+     * Returns the organization's inventory rows changed by transactions with
+     * an id of at least {@code since}, or every active row when
+     * {@code since} is {@code null}.
+     * <p>
+     * The returned version is the oldest transaction still running when the
+     * read started: everything below it has finished and is included, and
+     * anything at or above it is returned again by the next call. Rows may
+     * therefore repeat across calls, but no committed change is skipped,
+     * whatever order transactions commit in.
+     */
+    InventoryChangesResponseDto findChanges(Long organizationId, Long since);
+
+    /**
+     * Cursor from which {@link #findChanges} returns every change made after
+     * this call.
+     */
+    long currentChangeVersion();
+
+    /**
+     * Version of everything the organization's listings and menu are built
+     * from, one primary key read. {@code 0} until first bumped.
+     */
+    long catalogVersion(Long organizationId);
+
+    /**
+     * Moves the organization's catalog version on, for a change that has
+     * committed, and returns the new version.
+     */
+    long bumpCatalogVersion(Long organizationId);
+
+    /**
+     * Stamps the product's inventory row as changed, for changes made to the
+     * product itself, such as deactivation.
+     */
+    void markProductChanged(Long productId);
+}
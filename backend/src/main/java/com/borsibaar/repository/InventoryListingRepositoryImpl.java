@@ -0,0 +1,173 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.InventoryChangesResponseDto;
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.dto.MenuCategoryDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+class InventoryListingRepositoryImpl implements InventoryListingRepository {
+
+    private static final String LISTING_SQL = """
+            SELECT i.id, i.organization_id, i.product_id, p.name, i.quantity,
+                   COALESCE(i.adjusted_price, p.base_price) AS unit_price,
+                   p.description, p.base_price, p.min_price, p.max_price, i.updated_at
+            FROM inventory i
+            JOIN products p ON p.id = i.product_id
+            WHERE i.organization_id = :organizationId
+              AND p.is_active = TRUE
+            """;
+
+    // Rows come grouped by category; a category without products yields one row of NULLs
+    private static final String MENU_SQL = """
+            SELECT c.id AS category_id, c.name AS category_name, c.dynamic_pricing,
+                   i.id, i.organization_id, i.product_id, p.name, i.quantity,
+                   COALESCE(i.adjusted_price, p.base_price) AS unit_price,
+                   p.description, p.base_price, p.min_price, p.max_price, i.updated_at
+            FROM categories c
+            LEFT JOIN (products p
+                       JOIN inventory i ON i.product_id = p.id AND p.is_active = TRUE)
+                   ON p.category_id = c.id AND i.organization_id = c.organization_id
+            WHERE c.organization_id = :organizationId
+            ORDER BY c.id, p.name, i.id
+            """;
+
+    private static final String CHANGES_SQL = """
+            SELECT i.id, i.organization_id, i.product_id, p.name, i.quantity,
+                   COALESCE(i.adjusted_price, p.base_price) AS unit_price,
+                   p.description, p.base_price, p.min_price, p.max_price, i.updated_at, p.is_active
+            FROM inventory i
+            JOIN products p ON p.id = i.product_id
+            WHERE i.organization_id = :organizationId
+              AND i.change_version >= :since
+            ORDER BY p.name, i.id
+            """;
+
+    // Oldest transaction still running; all older ones have committed or rolled back
+    private static final String CURSOR_SQL =
+            "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    private static final String CATALOG_VERSION_SQL =
+            "SELECT version FROM catalog_versions WHERE organization_id = :organizationId";
+
+    private static final String BUMP_CATALOG_VERSION_SQL = """
+            INSERT INTO catalog_versions (organization_id, version)
+            VALUES (:organizationId, 1)
+            ON CONFLICT (organization_id) DO UPDATE
+            SET version = catalog_versions.version + 1
+            RETURNING version
+            """;
+
+    private static final String MARK_PRODUCT_SQL = """
+            UPDATE inventory
+            SET change_version = pg_current_xact_id()::text::bigint
+            WHERE product_id = :productId
+            """;
+
+    // Same format as InventoryMapper.toResponse
+    private static final DateTimeFormatter UPDATED_AT_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    private static final RowMapper<InventoryResponseDto> ROW_MAPPER = (rs, rowNum) -> {
+        OffsetDateTime updatedAt = rs.getObject("updated_at", OffsetDateTime.class);
+        return new InventoryResponseDto(
+                rs.getLong("id"),
+                rs.getLong("organization_id"),
+                rs.getLong("product_id"),
+                rs.getString("name"),
+                rs.getBigDecimal("quantity"),
+                rs.getBigDecimal("unit_price"),
+                rs.getString("description"),
+                rs.getBigDecimal("base_price"),
+                rs.getBigDecimal("min_price"),
+                rs.getBigDecimal("max_price"),
+                updatedAt != null ? updatedAt.format(UPDATED_AT_FORMAT) : null);
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<MenuCategoryDto> findMenu(Long organizationId) {
+        List<MenuCategoryDto> menu = new ArrayList<>();
+        jdbcTemplate.query(MENU_SQL, new MapSqlParameterSource("organizationId", organizationId), rs -> {
+            long categoryId = rs.getLong("category_id");
+            MenuCategoryDto category = menu.isEmpty() ? null : menu.getLast();
+            if (category == null || category.id() != categoryId) {
+                category = new MenuCategoryDto(categoryId, rs.getString("category_name"),
+                        rs.getBoolean("dynamic_pricing"), new ArrayList<>());
+                menu.add(category);
+            }
+            if (rs.getObject("id") != null) {
+                category.products().add(ROW_MAPPER.mapRow(rs, 0));
+            }
+        });
+        return menu;
+    }
+
+    @Override
+    public InventoryChangesResponseDto findChanges(Long organizationId, Long since) {
+        // Taken before the rows are read, so the rows include every transaction below it
+        long version = currentChangeVersion();
+        if (since == null) {
+            return new InventoryChangesResponseDto(version, findListing(organizationId, null), List.of());
+        }
+
+        List<InventoryResponseDto> changed = new ArrayList<>();
+        List<Long> removedProductIds = new ArrayList<>();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("organizationId", organizationId)
+                .addValue("since", since);
+        jdbcTemplate.query(CHANGES_SQL, params, rs -> {
+            if (rs.getBoolean("is_active")) {
+                changed.add(ROW_MAPPER.mapRow(rs, 0));
+            } else {
+                removedProductIds.add(rs.getLong("product_id"));
+            }
+        });
+        return new InventoryChangesResponseDto(version, changed, removedProductIds);
+    }
+
+    @Override
+    public long currentChangeVersion() {
+        return jdbcTemplate.getJdbcTemplate().queryForObject(CURSOR_SQL, Long.class);
+    }
+
+    @Override
+    public long catalogVersion(Long organizationId) {
+        List<Long> version = jdbcTemplate.queryForList(CATALOG_VERSION_SQL,
+                new MapSqlParameterSource("organizationId", organizationId), Long.class);
+        return version.isEmpty() ? 0 : version.get(0);
+    }
+
+    @Override
+    public long bumpCatalogVersion(Long organizationId) {
+        return jdbcTemplate.queryForObject(BUMP_CATALOG_VERSION_SQL,
+                new MapSqlParameterSource("organizationId", organizationId), Long.class);
+    }
+
+    @Override
+    public void markProductChanged(Long productId) {
+        jdbcTemplate.update(MARK_PRODUCT_SQL, new MapSqlParameterSource("productId", productId));
+    }
+
+    @Override
+    public List<InventoryResponseDto> findListing(Long organizationId, Long categoryId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("organizationId", organizationId);
+        String sql = LISTING_SQL;
+        // Separate statements rather than "(:categoryId IS NULL OR ...)", so each gets its own plan
+        if (categoryId != null) {
+            sql += "  AND p.category_id = :categoryId\n";
+            params.addValue("categoryId", categoryId);
+        }
+        return jdbcTemplate.query(sql + "ORDER BY p.name, i.id", params, ROW_MAPPER);
+    }
+}
@@ -0,0 +1,28 @@
+package com.borsibaar.repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Set-based price mutations on {@code inventory}.
+ * <p>
+ * Idle products are found through {@code inventory_last_sale}, which holds one
+ * row per sold inventory, rather than by scanning {@code inventory_transactions}.
+ */
+public interface InventoryPriceRepository {
+
+    /**
+     * If the organization sold anything since {@code since}, lowers the
+     * adjusted price of every dynamically priced product in it that has not
+     * been sold since then by the
+     * organization's decrease step, down to the product's min price (or the
+     * step itself when no min price is set). Changed rows get an
+     * {@code ADJUSTMENT} ledger entry with {@code referenceId}.
+     * <p>
+     * Runs as one statement: the update returns the changed rows, which feed a
+     * single multi-row insert into {@code inventory_transactions}, whose rows
+     * in turn are merged into the {@code price_candles} rollup.
+     *
+     * @return number of products whose price changed
+     */
+    int decayPrices(Long organizationId, OffsetDateTime since, String referenceId);
+}
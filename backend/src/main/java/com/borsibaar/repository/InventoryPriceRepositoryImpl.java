@@ -0,0 +1,88 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.OffsetDateTime;
+
+@RequiredArgsConstructor
+class InventoryPriceRepositoryImpl implements InventoryPriceRepository {
+
+    // Candidates are locked in id order, so concurrent runs and sales cannot deadlock
+    private static final String DECAY_SQL = """
+            WITH candidates AS (
+                SELECT i.id, i.adjusted_price
+                FROM inventory i
+                JOIN products p ON p.id = i.product_id
+                JOIN categories c ON c.id = p.category_id
+                LEFT JOIN inventory_last_sale ls ON ls.inventory_id = i.id
+                WHERE i.organization_id = :organizationId
+                  AND c.dynamic_pricing = TRUE
+                  AND (ls.last_sale_at IS NULL OR ls.last_sale_at < :since)
+                  AND EXISTS (
+                    SELECT 1
+                    FROM inventory_last_sale ls_org
+                    WHERE ls_org.organization_id = :organizationId
+                      AND ls_org.last_sale_at >= :since
+                  )
+                ORDER BY i.id
+                FOR UPDATE OF i
+            ),
+            updated AS (
+                UPDATE inventory inv
+                SET adjusted_price = GREATEST(COALESCE(prev.adjusted_price, p.base_price) - o.price_decrease_step,
+                                              COALESCE(p.min_price, o.price_decrease_step)),
+                    updated_at = :now,
+                    change_version = pg_current_xact_id()::text::bigint
+                FROM candidates prev, products p, organizations o
+                WHERE inv.id = prev.id
+                  AND p.id = inv.product_id
+                  AND o.id = p.organization_id
+                  AND GREATEST(COALESCE(prev.adjusted_price, p.base_price) - o.price_decrease_step,
+                               COALESCE(p.min_price, o.price_decrease_step))
+                      <> COALESCE(prev.adjusted_price, p.base_price)
+                RETURNING inv.id,
+                          inv.quantity,
+                          COALESCE(prev.adjusted_price, p.base_price) AS price_before,
+                          inv.adjusted_price AS price_after
+            ),
+            ledger AS (
+                INSERT INTO inventory_transactions (
+                    inventory_id, transaction_type, quantity_change, quantity_before, quantity_after,
+                    price_before, price_after, reference_id, notes, created_by, bar_station_id, created_at)
+                SELECT id, 'ADJUSTMENT', 0, quantity, quantity,
+                       price_before, price_after, :referenceId, 'PriceCorrectionJob', NULL, NULL, :now
+                FROM updated
+                ORDER BY id
+                RETURNING inventory_id, price_before, price_after, created_at
+            ),
+            candles AS (
+                -- One row per product, so each bucket level gets a one-row candle
+                INSERT INTO price_candles AS pc (
+                    inventory_id, bucket_seconds, bucket_start, open_price, high_price, low_price, close_price,
+                    volume, first_at, last_at)
+                SELECT l.inventory_id, b.seconds,
+                       to_timestamp(floor(extract(epoch FROM l.created_at) / b.seconds) * b.seconds),
+                       l.price_before, GREATEST(l.price_before, l.price_after), LEAST(l.price_before, l.price_after),
+                       l.price_after, 0, l.created_at, l.created_at
+                FROM ledger l
+                CROSS JOIN (VALUES (60), (300), (3600)) AS b(seconds)
+                ORDER BY 2, 1
+            """ + PriceCandleRepositoryImpl.MERGE_SET + """
+            )
+            SELECT count(*) FROM ledger
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public int decayPrices(Long organizationId, OffsetDateTime since, String referenceId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("organizationId", organizationId)
+                .addValue("since", since)
+                .addValue("referenceId", referenceId)
+                .addValue("now", OffsetDateTime.now());
+        return jdbcTemplate.queryForObject(DECAY_SQL, params, Integer.class);
+    }
+}
@@ -0,0 +1,89 @@
+package com.borsibaar.repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Atomic stock mutations on {@code inventory}.
+ * <p>
+ * Each method is a single conditional {@code UPDATE ... RETURNING} statement, so
+ * concurrent sales and stock changes on the same row can never both pass a
+ * stock check or overwrite each other's result. The returned {@link StockUpdate}
+ * carries the row state before and after the change for the ledger entry.
+ */
+public interface InventoryStockRepository {
+
+    /**
+     * Removes {@code quantity} from the inventory if at least that much is in
+     * stock. When {@code priceStep} is not null the adjusted price is raised by
+     * it, capped at the product's max price.
+     *
+     * @return the applied change, or, if there was not enough, the stock the
+     *         locked row held; a row that does not exist holds none
+     */
+    StockDecrement decrementStock(Long inventoryId, BigDecimal quantity, BigDecimal priceStep);
+
+    /**
+     * Adds {@code quantity} to the inventory.
+     *
+     * @return the applied change, or empty if the row does not exist
+     */
+    Optional<StockUpdate> incrementStock(Long inventoryId, BigDecimal quantity);
+
+    /**
+     * Sets the inventory quantity to an absolute value.
+     *
+     * @return the applied change, or empty if the row does not exist
+     */
+    Optional<StockUpdate> setStock(Long inventoryId, BigDecimal newQuantity);
+
+    /**
+     * Adds each change's quantity to its row and sets the adjusted price, as one
+     * JDBC batch. Used to persist state held by the market engine: quantities
+     * are applied relative so concurrent stock additions are kept.
+     * <p>
+     * A change that would take a row below zero, because stock was removed
+     * outside the engine while it was pending, takes the row to zero and is
+     * reported rather than failing the batch.
+     *
+     * @return the changes that could not be applied in full
+     */
+    List<StockShortfall> applyChanges(List<StockChange> changes);
+
+    record StockChange(
+            Long inventoryId,
+            BigDecimal quantityChange,
+            BigDecimal adjustedPrice,
+            OffsetDateTime updatedAt) {
+    }
+
+    /**
+     * @param quantityBefore stock the change was applied to
+     * @param missing        quantity that was sold but no longer in stock
+     */
+    record StockShortfall(
+            Long inventoryId,
+            BigDecimal quantityBefore,
+            BigDecimal missing) {
+    }
+
+    /**
+     * @param update    the applied change, or {@code null} if stock was insufficient
+     * @param available stock the decrement was checked against
+     */
+    record StockDecrement(StockUpdate update, BigDecimal available) {
+        public boolean applied() {
+            return update != null;
+        }
+    }
+
+    record StockUpdate(
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter,
+            OffsetDateTime updatedAt) {
+    }
+}
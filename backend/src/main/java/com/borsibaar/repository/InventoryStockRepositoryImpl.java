@@ -0,0 +1,190 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+class InventoryStockRepositoryImpl implements InventoryStockRepository {
+
+    // Every statement stamps change_version with its transaction id, the
+    // cursor of InventoryListingRepository.findChanges.
+    // The FOR UPDATE sub-select exposes the pre-update row to RETURNING; it locks
+    // the same row the UPDATE locks anyway, within the same statement.
+    // DECREMENT_SQL locks the row in "prev" and updates it only if the locked
+    // quantity suffices; the row is returned either way, so a refusal reports
+    // the stock it was checked against (quantity_after is then null).
+    private static final String DECREMENT_SQL = """
+            WITH prev AS (
+                SELECT inv.id, inv.quantity, inv.adjusted_price, p.base_price, p.max_price
+                FROM inventory inv
+                JOIN products p ON p.id = inv.product_id
+                WHERE inv.id = :id
+                FOR UPDATE OF inv
+            ),
+            applied AS (
+                UPDATE inventory inv
+                SET quantity = prev.quantity - :quantity,
+                    adjusted_price = CASE
+                        WHEN CAST(:priceStep AS NUMERIC) IS NULL THEN prev.adjusted_price
+                        ELSE LEAST(COALESCE(prev.adjusted_price, prev.base_price) + :priceStep, prev.max_price)
+                    END,
+                    updated_at = :now,
+                    change_version = pg_current_xact_id()::text::bigint
+                FROM prev
+                WHERE inv.id = prev.id
+                  AND prev.quantity >= :quantity
+                RETURNING inv.quantity, inv.adjusted_price, inv.updated_at
+            )
+            SELECT prev.quantity AS quantity_before,
+                   a.quantity AS quantity_after,
+                   COALESCE(prev.adjusted_price, prev.base_price) AS price_before,
+                   COALESCE(a.adjusted_price, prev.base_price) AS price_after,
+                   a.updated_at
+            FROM prev
+            LEFT JOIN applied a ON true
+            """;
+
+    private static final String INCREMENT_SQL = """
+            UPDATE inventory inv
+            SET quantity = inv.quantity + :quantity,
+                updated_at = :now,
+                change_version = pg_current_xact_id()::text::bigint
+            FROM (SELECT id, quantity FROM inventory WHERE id = :id FOR UPDATE) prev,
+                 products p
+            WHERE inv.id = prev.id
+              AND p.id = inv.product_id
+            RETURNING prev.quantity AS quantity_before,
+                      inv.quantity AS quantity_after,
+                      COALESCE(inv.adjusted_price, p.base_price) AS price_before,
+                      COALESCE(inv.adjusted_price, p.base_price) AS price_after,
+                      inv.updated_at
+            """;
+
+    private static final String SET_SQL = """
+            UPDATE inventory inv
+            SET quantity = :quantity,
+                updated_at = :now,
+                change_version = pg_current_xact_id()::text::bigint
+            FROM (SELECT id, quantity FROM inventory WHERE id = :id FOR UPDATE) prev,
+                 products p
+            WHERE inv.id = prev.id
+              AND p.id = inv.product_id
+            RETURNING prev.quantity AS quantity_before,
+                      inv.quantity AS quantity_after,
+                      COALESCE(inv.adjusted_price, p.base_price) AS price_before,
+                      COALESCE(inv.adjusted_price, p.base_price) AS price_after,
+                      inv.updated_at
+            """;
+
+    // Skips a change that would take the row below zero; see SHORTFALL_SQL
+    private static final String APPLY_SQL = """
+            UPDATE inventory
+            SET quantity = quantity + :quantityChange,
+                adjusted_price = :adjustedPrice,
+                updated_at = :updatedAt,
+                change_version = pg_current_xact_id()::text::bigint
+            WHERE id = :id
+              AND quantity + :quantityChange >= 0
+            """;
+
+    // A change skipped by APPLY_SQL: stock was removed outside the engine while
+    // it was pending. Applied as far as there is stock; the caller records the rest.
+    private static final String SHORTFALL_SQL = """
+            UPDATE inventory inv
+            SET quantity = GREATEST(prev.quantity + :quantityChange, 0),
+                adjusted_price = :adjustedPrice,
+                updated_at = :updatedAt,
+                change_version = pg_current_xact_id()::text::bigint
+            FROM (SELECT id, quantity FROM inventory WHERE id = :id FOR UPDATE) prev
+            WHERE inv.id = prev.id
+            RETURNING prev.quantity AS quantity_before
+            """;
+
+    private static final RowMapper<StockUpdate> STOCK_UPDATE_MAPPER = (rs, rowNum) -> new StockUpdate(
+            rs.getBigDecimal("quantity_before"),
+            rs.getBigDecimal("quantity_after"),
+            rs.getBigDecimal("price_before"),
+            rs.getBigDecimal("price_after"),
+            rs.getObject("updated_at", OffsetDateTime.class));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public StockDecrement decrementStock(Long inventoryId, BigDecimal quantity, BigDecimal priceStep) {
+        MapSqlParameterSource params = params(inventoryId, quantity)
+                .addValue("priceStep", priceStep);
+        List<StockDecrement> rows = jdbcTemplate.query(DECREMENT_SQL, params, (rs, rowNum) -> {
+            BigDecimal quantityBefore = rs.getBigDecimal("quantity_before");
+            if (rs.getBigDecimal("quantity_after") == null) {
+                return new StockDecrement(null, quantityBefore);
+            }
+            return new StockDecrement(STOCK_UPDATE_MAPPER.mapRow(rs, rowNum), quantityBefore);
+        });
+        return rows.isEmpty() ? new StockDecrement(null, BigDecimal.ZERO) : rows.get(0);
+    }
+
+    @Override
+    public Optional<StockUpdate> incrementStock(Long inventoryId, BigDecimal quantity) {
+        return single(jdbcTemplate.query(INCREMENT_SQL, params(inventoryId, quantity), STOCK_UPDATE_MAPPER));
+    }
+
+    @Override
+    public Optional<StockUpdate> setStock(Long inventoryId, BigDecimal newQuantity) {
+        return single(jdbcTemplate.query(SET_SQL, params(inventoryId, newQuantity), STOCK_UPDATE_MAPPER));
+    }
+
+    @Override
+    public List<StockShortfall> applyChanges(List<StockChange> changes) {
+        if (changes.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[changes.size()];
+        for (int i = 0; i < changes.size(); i++) {
+            StockChange change = changes.get(i);
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("id", change.inventoryId())
+                    .addValue("quantityChange", change.quantityChange())
+                    .addValue("adjustedPrice", change.adjustedPrice())
+                    .addValue("updatedAt", change.updatedAt());
+        }
+        int[] updated = jdbcTemplate.batchUpdate(APPLY_SQL, batch);
+
+        List<StockShortfall> shortfalls = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                continue;
+            }
+            StockChange change = changes.get(i);
+            List<BigDecimal> before = jdbcTemplate.query(SHORTFALL_SQL, batch[i],
+                    (rs, rowNum) -> rs.getBigDecimal("quantity_before"));
+            if (before.isEmpty()) {
+                // Inventory deleted meanwhile
+                continue;
+            }
+            BigDecimal missing = before.get(0).add(change.quantityChange()).negate();
+            if (missing.signum() > 0) {
+                shortfalls.add(new StockShortfall(change.inventoryId(), before.get(0), missing));
+            }
+        }
+        return shortfalls;
+    }
+
+    private static MapSqlParameterSource params(Long inventoryId, BigDecimal quantity) {
+        return new MapSqlParameterSource()
+                .addValue("id", inventoryId)
+                .addValue("quantity", quantity)
+                .addValue("now", OffsetDateTime.now());
+    }
+
+    private static Optional<StockUpdate> single(List<StockUpdate> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+}
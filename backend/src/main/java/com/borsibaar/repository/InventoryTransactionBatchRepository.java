@@ -0,0 +1,28 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+
+import java.util.List;
+
+public interface InventoryTransactionBatchRepository {
+
+    /**
+     * Inserts all given ledger rows as a single JDBC batch.
+     * <p>
+     * {@code inventory_transactions} uses an identity key, which stops Hibernate
+     * from batching inserts, so hot paths that write many rows at once go
+     * through here instead of {@code saveAll}. Generated ids are not written
+     * back to the entities.
+     * <p>
+     * Only the ledger is written; callers merge the rows into the rollups
+     * through {@link com.borsibaar.service.SalesRollupService}.
+     */
+    void insertAll(List<InventoryTransaction> transactions);
+
+    /**
+     * Advances {@code inventory_last_sale}, the per-inventory last-sale index
+     * used to find idle products without scanning the ledger, for the
+     * {@code SALE} rows among {@code transactions}.
+     */
+    void touchLastSale(List<InventoryTransaction> transactions);
+}
@@ -0,0 +1,80 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RequiredArgsConstructor
+class InventoryTransactionBatchRepositoryImpl implements InventoryTransactionBatchRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO inventory_transactions (
+                inventory_id, transaction_type, quantity_change, quantity_before, quantity_after,
+                price_before, price_after, reference_id, notes, created_by, bar_station_id, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String TOUCH_LAST_SALE_SQL = """
+            INSERT INTO inventory_last_sale (inventory_id, organization_id, last_sale_at)
+            SELECT id, organization_id, ? FROM inventory WHERE id = ?
+            ON CONFLICT (inventory_id) DO UPDATE
+            SET last_sale_at = GREATEST(inventory_last_sale.last_sale_at, EXCLUDED.last_sale_at)
+            """;
+
+    static final int BATCH_SIZE = 100;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<InventoryTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_SQL, transactions, BATCH_SIZE, (ps, transaction) -> {
+            ps.setLong(1, inventoryId(transaction));
+            ps.setString(2, transaction.getTransactionType());
+            ps.setBigDecimal(3, transaction.getQuantityChange());
+            ps.setBigDecimal(4, transaction.getQuantityBefore());
+            ps.setBigDecimal(5, transaction.getQuantityAfter());
+            ps.setBigDecimal(6, transaction.getPriceBefore());
+            ps.setBigDecimal(7, transaction.getPriceAfter());
+            ps.setString(8, transaction.getReferenceId());
+            ps.setString(9, transaction.getNotes());
+            ps.setObject(10, transaction.getCreatedBy());
+            ps.setObject(11, transaction.getBarStationId());
+            ps.setObject(12, transaction.getCreatedAt());
+        });
+    }
+
+    @Override
+    public void touchLastSale(List<InventoryTransaction> transactions) {
+        // Latest sale per inventory, in id order so concurrent batches lock rows consistently
+        Map<Long, OffsetDateTime> lastSales = new TreeMap<>();
+        for (InventoryTransaction transaction : transactions) {
+            if ("SALE".equals(transaction.getTransactionType()) && transaction.getCreatedAt() != null) {
+                lastSales.merge(inventoryId(transaction), transaction.getCreatedAt(),
+                        (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        if (lastSales.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(TOUCH_LAST_SALE_SQL, new ArrayList<>(lastSales.entrySet()),
+                BATCH_SIZE, (ps, lastSale) -> {
+                    ps.setObject(1, lastSale.getValue());
+                    ps.setLong(2, lastSale.getKey());
+                });
+    }
+
+    static Long inventoryId(InventoryTransaction transaction) {
+        return transaction.getInventory() != null
+                ? transaction.getInventory().getId()
+                : transaction.getInventoryId();
+    }
+}
@@ -6,33 +6,42 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
+public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long>,
+        InventoryTransactionBatchRepository, PriceCandleRepository, SalesStatsRepository,
+        SalesHeatmapRepository {
 
-    List<InventoryTransaction> findByInventoryIdOrderByCreatedAtDesc(Long inventoryId);
+    // Newest page of an inventory's ledger; read from idx_inventory_trans_history
+    @Query(value = """
+            SELECT * FROM inventory_transactions
+            WHERE inventory_id = :inventoryId
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<InventoryTransaction> findLatestByInventoryId(@Param("inventoryId") Long inventoryId,
+            @Param("limit") int limit);
+
+    // Keyset page: rows strictly older than (beforeCreatedAt, beforeId), without counting skipped rows
+    @Query(value = """
+            SELECT * FROM inventory_transactions
+            WHERE inventory_id = :inventoryId
+              AND (created_at, id) < (:beforeCreatedAt, :beforeId)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<InventoryTransaction> findByInventoryIdBefore(@Param("inventoryId") Long inventoryId,
+            @Param("beforeCreatedAt") OffsetDateTime beforeCreatedAt,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") int limit);
 
     Optional<InventoryTransaction> findFirstByInventoryIdOrderByCreatedAtDesc(Long inventoryId);
 
     List<InventoryTransaction> findByReferenceId(String referenceId);
 
-    @Query("""
-            SELECT it FROM InventoryTransaction it
-            JOIN Inventory i ON it.inventoryId = i.id
-            WHERE i.organizationId = :organizationId
-            AND it.transactionType = 'SALE'
-            ORDER BY it.createdAt DESC
-            """)
-    List<InventoryTransaction> findSaleTransactionsByOrganizationId(@Param("organizationId") Long organizationId);
-
-    @Query(value = """
-              SELECT DISTINCT i.organizationId
-              FROM InventoryTransaction it
-              JOIN Inventory i ON i.id = it.inventoryId
-              WHERE it.transactionType = 'SALE'
-                AND it.createdAt >= (CURRENT_TIMESTAMP - 60 SECOND)
-            """)
-    List<Long> findOrganizationIdsWithSalesInLastMinute();
+    // Index lookup on idx_inventory_trans_reference
+    boolean existsByReferenceId(String referenceId);
 }
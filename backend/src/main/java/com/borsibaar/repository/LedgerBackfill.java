@@ -0,0 +1,51 @@
+package com.borsibaar.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Steps a rollup backfill through the ledger. The progress table holds one
+ * row ({@code id = 1}) with the last merged ledger id and the id the
+ * backfill stops at, which is the ledger's end when the rollup was created.
+ * The row is locked while a chunk is merged, so concurrent nodes never
+ * merge the same chunk twice.
+ */
+final class LedgerBackfill {
+
+    private final String progressSql;
+    private final String advanceSql;
+    private final String chunkSql;
+
+    /**
+     * @param chunkSql merges the ledger rows with {@code :afterId < id <= :untilId}
+     */
+    LedgerBackfill(String progressTable, String chunkSql) {
+        this.progressSql = "SELECT last_transaction_id, until_transaction_id FROM " + progressTable
+                + " WHERE id = 1 FOR UPDATE";
+        this.advanceSql = "UPDATE " + progressTable + " SET last_transaction_id = :lastId WHERE id = 1";
+        this.chunkSql = chunkSql;
+    }
+
+    /**
+     * Merges the next chunk of at most {@code chunkSize} ledger ids and
+     * records the progress. Must run inside a transaction.
+     *
+     * @return {@code false} once the backfill is complete
+     */
+    boolean mergeNextChunk(NamedParameterJdbcTemplate jdbcTemplate, int chunkSize) {
+        List<long[]> progress = jdbcTemplate.getJdbcTemplate().query(progressSql,
+                (rs, rowNum) -> new long[] { rs.getLong("last_transaction_id"), rs.getLong("until_transaction_id") });
+        if (progress.isEmpty() || progress.get(0)[0] >= progress.get(0)[1]) {
+            return false;
+        }
+        long afterId = progress.get(0)[0];
+        long untilId = Math.min(afterId + chunkSize, progress.get(0)[1]);
+        jdbcTemplate.update(chunkSql, new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("untilId", untilId));
+        jdbcTemplate.update(advanceSql, new MapSqlParameterSource("lastId", untilId));
+        return true;
+    }
+}
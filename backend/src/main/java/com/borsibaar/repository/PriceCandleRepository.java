@@ -0,0 +1,49 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.entity.InventoryTransaction;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Reads and backfills {@code price_candles}, the OHLC rollup of the ledger.
+ * <p>
+ * Candles are kept for 1 minute, 5 minute and 1 hour buckets, aligned to the
+ * epoch. Only sales and price changes contribute: stock-only rows leave the
+ * price where it was. Writers merge each batch's rows into the rollup as they
+ * insert them; see {@link #mergeCandles} and
+ * {@link InventoryPriceRepository#decayPrices}.
+ */
+public interface PriceCandleRepository {
+
+    /**
+     * Returns an inventory's candles of {@code interval} for the buckets
+     * overlapping {@code [from, to)}, oldest first.
+     * <p>
+     * Open is the price before the bucket's first row, close the price after
+     * its last; high and low span every price before and after. Volume is the
+     * quantity sold. Buckets without sales or price changes are absent: the
+     * price is the previous close.
+     *
+     * @param interval 1 minute, 5 minutes or 1 hour
+     */
+    List<PriceCandleDto> findCandles(Long inventoryId, OffsetDateTime from, OffsetDateTime to, Duration interval);
+
+    /**
+     * Merges the sales and price changes among ledger rows just inserted into
+     * the candles of every bucket level, locking candle rows in a fixed order.
+     * Must run in the transaction that inserted the rows.
+     */
+    void mergeCandles(List<InventoryTransaction> transactions);
+
+    /**
+     * Merges the next {@code chunkSize} ledger ids written before the rollup
+     * existed into it and records the progress. Must run in a transaction;
+     * it locks the progress row, so concurrent callers take turns.
+     *
+     * @return {@code false} once the whole earlier ledger has been merged
+     */
+    boolean backfillCandles(int chunkSize);
+}
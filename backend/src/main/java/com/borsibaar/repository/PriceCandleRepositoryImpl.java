@@ -0,0 +1,244 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.entity.InventoryTransaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+@RequiredArgsConstructor
+class PriceCandleRepositoryImpl implements PriceCandleRepository {
+
+    // Finest first; each is rolled up from the one before it
+    static final long[] BUCKET_SECONDS = { 60, 300, 3600 };
+
+    /**
+     * Folds an incoming candle into the stored one. Merging is associative and
+     * commutative, so batches may land in any order, concurrently, or split
+     * across bucket levels, and still give the same candle.
+     */
+    static final String MERGE_SET = """
+            ON CONFLICT (inventory_id, bucket_seconds, bucket_start) DO UPDATE SET
+                open_price = CASE WHEN EXCLUDED.first_at < pc.first_at THEN EXCLUDED.open_price ELSE pc.open_price END,
+                high_price = GREATEST(pc.high_price, EXCLUDED.high_price),
+                low_price = LEAST(pc.low_price, EXCLUDED.low_price),
+                close_price = CASE WHEN EXCLUDED.last_at >= pc.last_at THEN EXCLUDED.close_price ELSE pc.close_price END,
+                volume = pc.volume + EXCLUDED.volume,
+                first_at = LEAST(pc.first_at, EXCLUDED.first_at),
+                last_at = GREATEST(pc.last_at, EXCLUDED.last_at)
+            """;
+
+    static final String MERGE_SQL = """
+            INSERT INTO price_candles AS pc (
+                inventory_id, bucket_seconds, bucket_start, open_price, high_price, low_price, close_price, volume,
+                first_at, last_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """ + MERGE_SET;
+
+    // Primary key range scan
+    private static final String CANDLES_SQL = """
+            SELECT bucket_start, open_price, high_price, low_price, close_price, volume
+            FROM price_candles
+            WHERE inventory_id = :inventoryId
+              AND bucket_seconds = :bucketSeconds
+              AND bucket_start >= :from
+              AND bucket_start < :to
+            ORDER BY bucket_start
+            """;
+
+    // Minute candles from ledger rows, then each coarser level from the level below
+    private static final String BACKFILL_SQL = """
+            WITH moved AS (
+                SELECT id, inventory_id, price_before, price_after, created_at,
+                       CASE WHEN transaction_type = 'SALE' THEN -quantity_change ELSE 0 END AS sold
+                FROM inventory_transactions
+                WHERE id > :afterId AND id <= :untilId
+                  AND created_at IS NOT NULL
+                  AND (transaction_type = 'SALE' OR price_before <> price_after)
+            ),
+            minute AS (
+                SELECT inventory_id, to_timestamp(floor(extract(epoch FROM created_at) / 60) * 60) AS bucket_start,
+                       (array_agg(price_before ORDER BY created_at, id))[1] AS open_price,
+                       MAX(GREATEST(price_before, price_after)) AS high_price,
+                       MIN(LEAST(price_before, price_after)) AS low_price,
+                       (array_agg(price_after ORDER BY created_at DESC, id DESC))[1] AS close_price,
+                       SUM(sold) AS volume, MIN(created_at) AS first_at, MAX(created_at) AS last_at
+                FROM moved
+                GROUP BY 1, 2
+            ),
+            five AS (
+                SELECT inventory_id, to_timestamp(floor(extract(epoch FROM bucket_start) / 300) * 300) AS bucket_start,
+                       (array_agg(open_price ORDER BY first_at, bucket_start))[1] AS open_price,
+                       MAX(high_price) AS high_price, MIN(low_price) AS low_price,
+                       (array_agg(close_price ORDER BY last_at DESC, bucket_start DESC))[1] AS close_price,
+                       SUM(volume) AS volume, MIN(first_at) AS first_at, MAX(last_at) AS last_at
+                FROM minute
+                GROUP BY 1, 2
+            ),
+            hour AS (
+                SELECT inventory_id, to_timestamp(floor(extract(epoch FROM bucket_start) / 3600) * 3600) AS bucket_start,
+                       (array_agg(open_price ORDER BY first_at, bucket_start))[1] AS open_price,
+                       MAX(high_price) AS high_price, MIN(low_price) AS low_price,
+                       (array_agg(close_price ORDER BY last_at DESC, bucket_start DESC))[1] AS close_price,
+                       SUM(volume) AS volume, MIN(first_at) AS first_at, MAX(last_at) AS last_at
+                FROM five
+                GROUP BY 1, 2
+            )
+            INSERT INTO price_candles AS pc (
+                inventory_id, bucket_seconds, bucket_start, open_price, high_price, low_price, close_price, volume,
+                first_at, last_at)
+            SELECT inventory_id, 60, bucket_start, open_price, high_price, low_price, close_price, volume,
+                   first_at, last_at FROM minute
+            UNION ALL
+            SELECT inventory_id, 300, bucket_start, open_price, high_price, low_price, close_price, volume,
+                   first_at, last_at FROM five
+            UNION ALL
+            SELECT inventory_id, 3600, bucket_start, open_price, high_price, low_price, close_price, volume,
+                   first_at, last_at FROM hour
+            ORDER BY 2, 1, 3
+            """ + MERGE_SET;
+
+    private static final LedgerBackfill BACKFILL = new LedgerBackfill("price_candle_backfill", BACKFILL_SQL);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<PriceCandleDto> findCandles(Long inventoryId, OffsetDateTime from, OffsetDateTime to,
+            Duration interval) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("inventoryId", inventoryId)
+                .addValue("bucketSeconds", interval.toSeconds())
+                // Include the bucket that "from" falls in
+                .addValue("from", bucketStart(from, interval.toSeconds()))
+                .addValue("to", to);
+        return jdbcTemplate.query(CANDLES_SQL, params, (rs, rowNum) -> new PriceCandleDto(
+                rs.getObject("bucket_start", OffsetDateTime.class).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                rs.getBigDecimal("open_price"),
+                rs.getBigDecimal("high_price"),
+                rs.getBigDecimal("low_price"),
+                rs.getBigDecimal("close_price"),
+                rs.getBigDecimal("volume")));
+    }
+
+    @Override
+    public boolean backfillCandles(int chunkSize) {
+        return BACKFILL.mergeNextChunk(jdbcTemplate, chunkSize);
+    }
+
+    @Override
+    public void mergeCandles(List<InventoryTransaction> transactions) {
+        List<Candle> candles = candlesOf(transactions, InventoryTransactionBatchRepositoryImpl::inventoryId);
+        if (candles.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(MERGE_SQL, candles,
+                InventoryTransactionBatchRepositoryImpl.BATCH_SIZE, (ps, candle) -> {
+                    ps.setLong(1, candle.key().inventoryId());
+                    ps.setInt(2, (int) candle.key().bucketSeconds());
+                    ps.setObject(3, candle.key().bucketStart());
+                    ps.setBigDecimal(4, candle.open());
+                    ps.setBigDecimal(5, candle.high());
+                    ps.setBigDecimal(6, candle.low());
+                    ps.setBigDecimal(7, candle.close());
+                    ps.setBigDecimal(8, candle.volume());
+                    ps.setObject(9, candle.firstAt());
+                    ps.setObject(10, candle.lastAt());
+                });
+    }
+
+    /**
+     * Candles of every bucket level for the given ledger rows, in key order so
+     * that concurrent writers lock candle rows in the same order.
+     */
+    static List<Candle> candlesOf(List<InventoryTransaction> transactions,
+            ToLongFunction<InventoryTransaction> inventoryId) {
+        Map<Key, Candle> minute = new TreeMap<>();
+        for (InventoryTransaction transaction : transactions) {
+            if (!movesCandle(transaction)) {
+                continue;
+            }
+            OffsetDateTime at = transaction.getCreatedAt();
+            BigDecimal before = transaction.getPriceBefore();
+            BigDecimal after = transaction.getPriceAfter();
+            BigDecimal sold = "SALE".equals(transaction.getTransactionType())
+                    ? transaction.getQuantityChange().negate()
+                    : BigDecimal.ZERO;
+            Key key = new Key(BUCKET_SECONDS[0], inventoryId.applyAsLong(transaction),
+                    bucketStart(at, BUCKET_SECONDS[0]));
+            minute.merge(key, new Candle(key, before, before.max(after), before.min(after), after, sold, at, at),
+                    Candle::merge);
+        }
+
+        List<Candle> candles = new ArrayList<>(minute.values());
+        Map<Key, Candle> finer = minute;
+        for (int level = 1; level < BUCKET_SECONDS.length; level++) {
+            Map<Key, Candle> coarser = new TreeMap<>();
+            for (Candle candle : finer.values()) {
+                Key key = new Key(BUCKET_SECONDS[level], candle.key().inventoryId(),
+                        bucketStart(candle.key().bucketStart(), BUCKET_SECONDS[level]));
+                coarser.merge(key, candle.withKey(key), Candle::merge);
+            }
+            candles.addAll(coarser.values());
+            finer = coarser;
+        }
+        return candles;
+    }
+
+    private static boolean movesCandle(InventoryTransaction transaction) {
+        if (transaction.getCreatedAt() == null || transaction.getPriceBefore() == null
+                || transaction.getPriceAfter() == null) {
+            return false;
+        }
+        return "SALE".equals(transaction.getTransactionType())
+                || transaction.getPriceBefore().compareTo(transaction.getPriceAfter()) != 0;
+    }
+
+    static OffsetDateTime bucketStart(OffsetDateTime at, long bucketSeconds) {
+        long epochSecond = Math.floorDiv(at.toEpochSecond(), bucketSeconds) * bucketSeconds;
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    record Key(long bucketSeconds, long inventoryId, OffsetDateTime bucketStart) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparingLong(Key::bucketSeconds)
+                .thenComparingLong(Key::inventoryId)
+                .thenComparing(Key::bucketStart);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    // Same merge as MERGE_SET; "later" is the candle of rows written after this one's
+    record Candle(Key key, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, BigDecimal volume,
+            OffsetDateTime firstAt, OffsetDateTime lastAt) {
+
+        Candle merge(Candle later) {
+            return new Candle(key,
+                    later.firstAt.isBefore(firstAt) ? later.open : open,
+                    high.max(later.high),
+                    low.min(later.low),
+                    later.lastAt.isBefore(lastAt) ? close : later.close,
+                    volume.add(later.volume),
+                    later.firstAt.isBefore(firstAt) ? later.firstAt : firstAt,
+                    later.lastAt.isBefore(lastAt) ? lastAt : later.lastAt);
+        }
+
+        Candle withKey(Key key) {
+            return new Candle(key, open, high, low, close, volume, firstAt, lastAt);
+        }
+    }
+}
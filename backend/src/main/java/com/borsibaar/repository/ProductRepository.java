@@ -3,36 +3,65 @@ package com.borsibaar.repository;
 import com.borsibaar.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
   boolean existsByOrganizationIdAndNameIgnoreCase(Long organizationId, String name);
 
+  /**
+   * Loads a set of products together with their inventory, category and
+   * organization in a single query. Used by the sale path to validate a whole
+   * basket without a round trip per line item.
+   */
+  @Query("""
+        SELECT p FROM Product p
+        LEFT JOIN FETCH p.inventory
+        LEFT JOIN FETCH p.category
+        LEFT JOIN FETCH p.organization
+        WHERE p.id IN :ids
+      """)
+  List<Product> findAllWithInventoryByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Loads every product of an organization with its inventory, category and
+   * organization. Used to build the in-memory market book.
+   */
+  @Query("""
+        SELECT p FROM Product p
+        LEFT JOIN FETCH p.inventory
+        LEFT JOIN FETCH p.category
+        LEFT JOIN FETCH p.organization
+        WHERE p.organizationId = :organizationId
+      """)
+  List<Product> findAllWithInventoryByOrganizationId(@Param("organizationId") Long organizationId);
+
+  /**
+   * Dynamically priced products of an organization that have not been sold
+   * since {@code since}, provided the organization sold anything since then.
+   */
   @Query(value = """
-        SELECT DISTINCT p.*
+        SELECT p.*
         FROM products p
         JOIN inventory inv ON inv.product_id = p.id
         JOIN categories cat ON p.category_id = cat.id
+        LEFT JOIN inventory_last_sale ls ON ls.inventory_id = inv.id
         WHERE
-          cat.dynamic_pricing = TRUE
-          -- Org had at least one SALE in the last minute
+          inv.organization_id = :organizationId
+          AND cat.dynamic_pricing = TRUE
+          -- Org had at least one SALE in the window
           AND EXISTS (
             SELECT 1
-            FROM inventory_transactions it_org
-            JOIN inventory i_org ON i_org.id = it_org.inventory_id
-            WHERE i_org.organization_id = inv.organization_id
-              AND it_org.transaction_type = 'SALE'
-              AND it_org.created_at >= (CURRENT_TIMESTAMP - INTERVAL '1 minute')
-          )
-          -- This product had no SALE in the last minute
-          AND NOT EXISTS (
-            SELECT 1
-            FROM inventory_transactions it_self
-            WHERE it_self.inventory_id = inv.id
-              AND it_self.transaction_type = 'SALE'
-              AND it_self.created_at >= (CURRENT_TIMESTAMP - INTERVAL '1 minute')
+            FROM inventory_last_sale ls_org
+            WHERE ls_org.organization_id = :organizationId
+              AND ls_org.last_sale_at >= :since
           )
+          -- This product had no SALE in the window
+          AND (ls.last_sale_at IS NULL OR ls.last_sale_at < :since)
       """, nativeQuery = true)
-  List<Product> findByActiveOrgAndInactiveSalesLastMinute();
+  List<Product> findIdleDynamicProducts(@Param("organizationId") Long organizationId,
+      @Param("since") OffsetDateTime since);
 }
@@ -0,0 +1,25 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.SaleIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+public interface SaleIdempotencyKeyRepository extends JpaRepository<SaleIdempotencyKey, Long> {
+    Optional<SaleIdempotencyKey> findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(
+            Long organizationId, String idempotencyKey, OffsetDateTime createdAfter);
+
+    @Modifying
+    @Query("DELETE FROM SaleIdempotencyKey k WHERE k.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") OffsetDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM SaleIdempotencyKey k WHERE k.organizationId = :organizationId"
+            + " AND k.idempotencyKey = :idempotencyKey AND k.createdAt < :cutoff")
+    int deleteKeyCreatedBefore(@Param("organizationId") Long organizationId,
+            @Param("idempotencyKey") String idempotencyKey, @Param("cutoff") OffsetDateTime cutoff);
+}
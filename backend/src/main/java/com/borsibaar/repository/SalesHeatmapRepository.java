@@ -0,0 +1,45 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.SalesHeatmapCellDto;
+import com.borsibaar.entity.InventoryTransaction;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Reads and backfills {@code sales_heatmap}, the quantity sold and revenue
+ * per station, category and UTC hour.
+ * <p>
+ * Writers merge each batch's sales into it as they insert them, see
+ * {@link #mergeHeatmap}, so reading a range
+ * costs one row per station, category and hour however many sales it holds.
+ */
+public interface SalesHeatmapRepository {
+
+    /**
+     * Returns the organization's cells of {@code granularity} for the buckets
+     * overlapping {@code [from, to)}, oldest first. Cells without sales are
+     * absent.
+     *
+     * @param granularity 1 hour, or 1 day summed from the hours of a UTC day
+     */
+    List<SalesHeatmapCellDto> findHeatmap(Long organizationId, OffsetDateTime from, OffsetDateTime to,
+            Duration granularity);
+
+    /**
+     * Merges the sale rows among ledger rows just inserted into their hourly
+     * cells, locking cells in a fixed order. Rows of inventories without a
+     * category are skipped. Must run in the transaction that inserted the rows.
+     */
+    void mergeHeatmap(List<InventoryTransaction> transactions);
+
+    /**
+     * Merges the next {@code chunkSize} ledger ids written before the rollup
+     * existed into it and records the progress. Must run in a transaction;
+     * it locks the progress row, so concurrent callers take turns.
+     *
+     * @return {@code false} once the whole earlier ledger has been merged
+     */
+    boolean backfillHeatmap(int chunkSize);
+}
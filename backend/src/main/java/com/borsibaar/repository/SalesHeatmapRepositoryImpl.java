@@ -0,0 +1,180 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.SalesHeatmapCellDto;
+import com.borsibaar.entity.InventoryTransaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+@RequiredArgsConstructor
+class SalesHeatmapRepositoryImpl implements SalesHeatmapRepository {
+
+    static final long HOUR_SECONDS = 3600;
+
+    // Organization and current category of each inventory in a batch
+    static final String PLACEMENTS_SQL = """
+            SELECT i.id, i.organization_id, p.category_id
+            FROM inventory i
+            JOIN products p ON p.id = i.product_id
+            WHERE i.id IN (:inventoryIds)
+            """;
+
+    // Adds to the stored cell; order and concurrency do not matter
+    static final String MERGE_SET = """
+            ON CONFLICT (organization_id, bucket_start, bar_station_id, category_id) DO UPDATE SET
+                quantity = sh.quantity + EXCLUDED.quantity,
+                revenue = sh.revenue + EXCLUDED.revenue
+            """;
+
+    static final String MERGE_SQL = """
+            INSERT INTO sales_heatmap AS sh (organization_id, bucket_start, bar_station_id, category_id, quantity, revenue)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """ + MERGE_SET;
+
+    // Range scan of uq_sales_heatmap; hours are summed into days when asked
+    private static final String HEATMAP_SQL = """
+            SELECT to_timestamp(floor(extract(epoch FROM h.bucket_start) / :bucketSeconds) * :bucketSeconds)
+                       AS bucket_start,
+                   h.bar_station_id, s.name AS bar_station_name, h.category_id, c.name AS category_name,
+                   SUM(h.quantity) AS quantity, SUM(h.revenue) AS revenue
+            FROM sales_heatmap h
+            JOIN categories c ON c.id = h.category_id
+            LEFT JOIN bar_stations s ON s.id = h.bar_station_id
+            WHERE h.organization_id = :organizationId
+              AND h.bucket_start >= :from
+              AND h.bucket_start < :to
+            GROUP BY 1, h.bar_station_id, s.name, h.category_id, c.name
+            ORDER BY 1, h.bar_station_id NULLS FIRST, h.category_id
+            """;
+
+    // Cells in merge order, like cellsOf, so the backfill and sales lock cells consistently
+    private static final String BACKFILL_SQL = """
+            INSERT INTO sales_heatmap AS sh (organization_id, bucket_start, bar_station_id, category_id, quantity, revenue)
+            SELECT i.organization_id, to_timestamp(floor(extract(epoch FROM t.created_at) / 3600) * 3600),
+                   t.bar_station_id, p.category_id,
+                   SUM(-t.quantity_change), SUM(t.price_before * -t.quantity_change)
+            FROM inventory_transactions t
+            JOIN inventory i ON i.id = t.inventory_id
+            JOIN products p ON p.id = i.product_id
+            WHERE t.id > :afterId AND t.id <= :untilId
+              AND t.transaction_type = 'SALE'
+              AND t.created_at IS NOT NULL
+            GROUP BY 1, 2, 3, 4
+            ORDER BY 1, 2, 3 NULLS FIRST, 4
+            """ + MERGE_SET;
+
+    private static final LedgerBackfill BACKFILL = new LedgerBackfill("sales_heatmap_backfill", BACKFILL_SQL);
+
+    private static final Comparator<Cell> CELL_ORDER = Comparator.comparingLong(Cell::organizationId)
+            .thenComparing(Cell::bucketStart)
+            .thenComparing(Cell::barStationId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(Cell::categoryId);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<SalesHeatmapCellDto> findHeatmap(Long organizationId, OffsetDateTime from, OffsetDateTime to,
+            Duration granularity) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("organizationId", organizationId)
+                .addValue("bucketSeconds", granularity.toSeconds())
+                // Include the bucket that "from" falls in
+                .addValue("from", PriceCandleRepositoryImpl.bucketStart(from, granularity.toSeconds()))
+                .addValue("to", to);
+        return jdbcTemplate.query(HEATMAP_SQL, params, (rs, rowNum) -> new SalesHeatmapCellDto(
+                rs.getObject("bucket_start", OffsetDateTime.class).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                rs.getObject("bar_station_id", Long.class),
+                rs.getString("bar_station_name"),
+                rs.getLong("category_id"),
+                rs.getString("category_name"),
+                rs.getBigDecimal("quantity"),
+                rs.getBigDecimal("revenue")));
+    }
+
+    @Override
+    public boolean backfillHeatmap(int chunkSize) {
+        return BACKFILL.mergeNextChunk(jdbcTemplate, chunkSize);
+    }
+
+    @Override
+    public void mergeHeatmap(List<InventoryTransaction> transactions) {
+        Set<Long> soldInventoryIds = new HashSet<>();
+        for (InventoryTransaction transaction : transactions) {
+            if ("SALE".equals(transaction.getTransactionType())) {
+                soldInventoryIds.add(InventoryTransactionBatchRepositoryImpl.inventoryId(transaction));
+            }
+        }
+        if (soldInventoryIds.isEmpty()) {
+            return;
+        }
+        // Categories are resolved first, so cells can be merged in a consistent order
+        Map<Long, Placement> placements = new HashMap<>();
+        jdbcTemplate.query(PLACEMENTS_SQL, new MapSqlParameterSource("inventoryIds", soldInventoryIds),
+                (RowCallbackHandler) rs -> placements.put(rs.getLong("id"),
+                        new Placement(rs.getLong("organization_id"), rs.getLong("category_id"))));
+        List<Cell> cells = cellsOf(transactions, InventoryTransactionBatchRepositoryImpl::inventoryId, placements);
+        jdbcTemplate.getJdbcTemplate().batchUpdate(MERGE_SQL, cells,
+                InventoryTransactionBatchRepositoryImpl.BATCH_SIZE, (ps, cell) -> {
+                    ps.setLong(1, cell.organizationId());
+                    ps.setObject(2, cell.bucketStart());
+                    ps.setObject(3, cell.barStationId());
+                    ps.setLong(4, cell.categoryId());
+                    ps.setBigDecimal(5, cell.quantity());
+                    ps.setBigDecimal(6, cell.revenue());
+                });
+    }
+
+    /**
+     * Sums the sale rows of a batch into hourly cells, in merge order so that
+     * concurrent writers lock cells in the same order. Rows of inventories
+     * without a placement, and rows other than sales, are ignored.
+     *
+     * @param placements organization and category per inventory id
+     */
+    static List<Cell> cellsOf(List<InventoryTransaction> transactions,
+            ToLongFunction<InventoryTransaction> inventoryId, Map<Long, Placement> placements) {
+        Map<Cell, Cell> cells = new TreeMap<>(CELL_ORDER);
+        for (InventoryTransaction transaction : transactions) {
+            if (!"SALE".equals(transaction.getTransactionType()) || transaction.getCreatedAt() == null) {
+                continue;
+            }
+            Placement placement = placements.get(inventoryId.applyAsLong(transaction));
+            if (placement == null) {
+                continue;
+            }
+            BigDecimal quantity = transaction.getQuantityChange().negate();
+            Cell cell = new Cell(placement.organizationId(),
+                    PriceCandleRepositoryImpl.bucketStart(transaction.getCreatedAt(), HOUR_SECONDS),
+                    transaction.getBarStationId(), placement.categoryId(), quantity,
+                    transaction.getPriceBefore().multiply(quantity));
+            cells.merge(cell, cell, Cell::plus);
+        }
+        return new ArrayList<>(cells.values());
+    }
+
+    record Placement(long organizationId, long categoryId) {
+    }
+
+    record Cell(long organizationId, OffsetDateTime bucketStart, Long barStationId, long categoryId,
+            BigDecimal quantity, BigDecimal revenue) {
+        Cell plus(Cell other) {
+            return new Cell(organizationId, bucketStart, barStationId, categoryId, quantity.add(other.quantity),
+                    revenue.add(other.revenue));
+        }
+    }
+}
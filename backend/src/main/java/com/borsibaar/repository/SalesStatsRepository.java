@@ -0,0 +1,76 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sales totals per seller and station, from the {@code sales_counters}
+ * rollup for all time or from the ledger for a time window.
+ * <p>
+ * The rollup holds the sales of each seller, station and product per UTC
+ * day, merged in as sale rows are inserted, see
+ * {@link #mergeSalesCounters}; all-time totals cost
+ * one row per seller, station, product and day rather than one per sale. A
+ * sale with several products is counted once, on the row of its lowest
+ * inventory id, so sales counts add up across products.
+ * <p>
+ * Windowed totals read only the window's sale rows, through
+ * {@code idx_inventory_trans_type_created}. Revenue is the recorded sale
+ * price times the quantity sold.
+ */
+public interface SalesStatsRepository {
+
+    /**
+     * All-time sales and revenue per seller and station; busiest first. Sales
+     * without a seller are left out.
+     */
+    List<UserSalesTotals> findUserSalesTotals(Long organizationId);
+
+    /**
+     * Sales and revenue per seller and station within {@code [from, to)};
+     * busiest first. Sales without a seller are left out.
+     */
+    List<UserSalesTotals> findUserSalesTotals(Long organizationId, OffsetDateTime from, OffsetDateTime to);
+
+    /**
+     * All-time sales and revenue per station; busiest first. Sales without a
+     * station are left out.
+     */
+    List<StationSalesTotals> findStationSalesTotals(Long organizationId);
+
+    /**
+     * Sales and revenue per station within {@code [from, to)}; busiest first.
+     * Sales without a station are left out.
+     */
+    List<StationSalesTotals> findStationSalesTotals(Long organizationId, OffsetDateTime from, OffsetDateTime to);
+
+    /**
+     * Merges the sale rows among ledger rows just inserted into their daily
+     * counters. Must run in the transaction that inserted the rows.
+     */
+    void mergeSalesCounters(List<InventoryTransaction> transactions);
+
+    // Sales of one seller at one station
+    interface UserSalesTotals {
+        UUID getUserId();
+
+        Long getBarStationId();
+
+        Long getSalesCount();
+
+        BigDecimal getTotalRevenue();
+    }
+
+    // Sales of one station
+    interface StationSalesTotals {
+        Long getBarStationId();
+
+        Long getSalesCount();
+
+        BigDecimal getTotalRevenue();
+    }
+}
@@ -0,0 +1,241 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+@RequiredArgsConstructor
+class SalesStatsRepositoryImpl implements SalesStatsRepository {
+
+    // Adds a batch's counts to the stored ones; order and concurrency do not matter
+    static final String MERGE_SQL = """
+            INSERT INTO sales_counters AS sc (
+                organization_id, user_id, bar_station_id, product_id, sale_date, sales_count, quantity, revenue)
+            SELECT organization_id, ?, ?, product_id, ?, ?, ?, ? FROM inventory WHERE id = ?
+            ON CONFLICT (organization_id, user_id, bar_station_id, product_id, sale_date) DO UPDATE SET
+                sales_count = sc.sales_count + EXCLUDED.sales_count,
+                quantity = sc.quantity + EXCLUDED.quantity,
+                revenue = sc.revenue + EXCLUDED.revenue
+            """;
+
+    private static final String USER_TOTALS_SQL = """
+            SELECT user_id, bar_station_id, SUM(sales_count) AS sales_count, SUM(revenue) AS revenue
+            FROM sales_counters
+            WHERE organization_id = :organizationId
+              AND user_id IS NOT NULL
+            GROUP BY user_id, bar_station_id
+            ORDER BY sales_count DESC
+            """;
+
+    private static final String STATION_TOTALS_SQL = """
+            SELECT bar_station_id, SUM(sales_count) AS sales_count, SUM(revenue) AS revenue
+            FROM sales_counters
+            WHERE organization_id = :organizationId
+              AND bar_station_id IS NOT NULL
+            GROUP BY bar_station_id
+            ORDER BY sales_count DESC
+            """;
+
+    // Only the window's sales are read, by a range scan of idx_inventory_trans_type_created
+    static final String LEDGER_USER_TOTALS_SQL = """
+            SELECT t.created_by AS user_id, t.bar_station_id, COUNT(DISTINCT t.reference_id) AS sales_count,
+                   SUM(t.price_before * -t.quantity_change) AS revenue
+            FROM inventory_transactions t
+            JOIN inventory i ON i.id = t.inventory_id
+            WHERE t.transaction_type = 'SALE'
+              AND t.created_at >= :from
+              AND t.created_at < :to
+              AND i.organization_id = :organizationId
+              AND t.created_by IS NOT NULL
+            GROUP BY t.created_by, t.bar_station_id
+            ORDER BY sales_count DESC
+            """;
+
+    static final String LEDGER_STATION_TOTALS_SQL = """
+            SELECT t.bar_station_id, COUNT(DISTINCT t.reference_id) AS sales_count,
+                   SUM(t.price_before * -t.quantity_change) AS revenue
+            FROM inventory_transactions t
+            JOIN inventory i ON i.id = t.inventory_id
+            WHERE t.transaction_type = 'SALE'
+              AND t.created_at >= :from
+              AND t.created_at < :to
+              AND i.organization_id = :organizationId
+              AND t.bar_station_id IS NOT NULL
+            GROUP BY t.bar_station_id
+            ORDER BY sales_count DESC
+            """;
+
+    // Merge order, so concurrent batches lock counter rows consistently
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::inventoryId)
+            .thenComparing(Key::saleDate)
+            .thenComparing(Key::userId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Key::barStationId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<UserSalesTotals> findUserSalesTotals(Long organizationId) {
+        return jdbcTemplate.query(USER_TOTALS_SQL, new MapSqlParameterSource("organizationId", organizationId),
+                SalesStatsRepositoryImpl::userTotals);
+    }
+
+    @Override
+    public List<UserSalesTotals> findUserSalesTotals(Long organizationId, OffsetDateTime from, OffsetDateTime to) {
+        return jdbcTemplate.query(LEDGER_USER_TOTALS_SQL, window(organizationId, from, to),
+                SalesStatsRepositoryImpl::userTotals);
+    }
+
+    @Override
+    public List<StationSalesTotals> findStationSalesTotals(Long organizationId) {
+        return jdbcTemplate.query(STATION_TOTALS_SQL, new MapSqlParameterSource("organizationId", organizationId),
+                SalesStatsRepositoryImpl::stationTotals);
+    }
+
+    @Override
+    public List<StationSalesTotals> findStationSalesTotals(Long organizationId, OffsetDateTime from,
+            OffsetDateTime to) {
+        return jdbcTemplate.query(LEDGER_STATION_TOTALS_SQL, window(organizationId, from, to),
+                SalesStatsRepositoryImpl::stationTotals);
+    }
+
+    @Override
+    public void mergeSalesCounters(List<InventoryTransaction> transactions) {
+        List<Counter> counters = countersOf(transactions, InventoryTransactionBatchRepositoryImpl::inventoryId);
+        if (counters.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(MERGE_SQL, counters,
+                InventoryTransactionBatchRepositoryImpl.BATCH_SIZE, (ps, counter) -> {
+                    ps.setObject(1, counter.key().userId());
+                    ps.setObject(2, counter.key().barStationId());
+                    ps.setObject(3, counter.key().saleDate());
+                    ps.setLong(4, counter.salesCount());
+                    ps.setBigDecimal(5, counter.quantity());
+                    ps.setBigDecimal(6, counter.revenue());
+                    ps.setLong(7, counter.key().inventoryId());
+                });
+    }
+
+    private static MapSqlParameterSource window(Long organizationId, OffsetDateTime from, OffsetDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("organizationId", organizationId)
+                .addValue("from", from)
+                .addValue("to", to);
+    }
+
+    private static UserSalesTotals userTotals(ResultSet rs, int rowNum) throws SQLException {
+        return new UserTotals(
+                rs.getObject("user_id", UUID.class),
+                rs.getObject("bar_station_id", Long.class),
+                rs.getLong("sales_count"),
+                rs.getBigDecimal("revenue"));
+    }
+
+    private static StationSalesTotals stationTotals(ResultSet rs, int rowNum) throws SQLException {
+        return new StationTotals(
+                rs.getLong("bar_station_id"),
+                rs.getLong("sales_count"),
+                rs.getBigDecimal("revenue"));
+    }
+
+    /**
+     * Sums the sale rows of a batch into counters, in merge order. Each sale,
+     * told apart by its reference id, counts once: on its line with the
+     * lowest inventory id. Other rows are ignored.
+     */
+    static List<Counter> countersOf(List<InventoryTransaction> transactions,
+            ToLongFunction<InventoryTransaction> inventoryId) {
+        Map<Key, Counter> counters = new TreeMap<>(KEY_ORDER);
+        Map<Sale, Key> firstLines = new HashMap<>();
+        for (InventoryTransaction transaction : transactions) {
+            if (!"SALE".equals(transaction.getTransactionType())) {
+                continue;
+            }
+            LocalDate saleDate = transaction.getCreatedAt().withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+            Key key = new Key(inventoryId.applyAsLong(transaction), transaction.getCreatedBy(),
+                    transaction.getBarStationId(), saleDate);
+            BigDecimal quantity = transaction.getQuantityChange().negate();
+            counters.merge(key, new Counter(key, 0, quantity, transaction.getPriceBefore().multiply(quantity)),
+                    Counter::plus);
+            if (transaction.getReferenceId() != null) {
+                firstLines.merge(new Sale(transaction.getReferenceId(), key.userId(), key.barStationId(), saleDate),
+                        key, (a, b) -> a.inventoryId() <= b.inventoryId() ? a : b);
+            }
+        }
+        for (Key key : firstLines.values()) {
+            counters.computeIfPresent(key, (k, counter) -> counter.plus(new Counter(k, 1, BigDecimal.ZERO,
+                    BigDecimal.ZERO)));
+        }
+        return new ArrayList<>(counters.values());
+    }
+
+    record Key(long inventoryId, UUID userId, Long barStationId, LocalDate saleDate) {
+    }
+
+    record Counter(Key key, long salesCount, BigDecimal quantity, BigDecimal revenue) {
+        Counter plus(Counter other) {
+            return new Counter(key, salesCount + other.salesCount, quantity.add(other.quantity),
+                    revenue.add(other.revenue));
+        }
+    }
+
+    private record Sale(String referenceId, UUID userId, Long barStationId, LocalDate saleDate) {
+    }
+
+    private record UserTotals(UUID userId, Long barStationId, Long salesCount, BigDecimal totalRevenue)
+            implements UserSalesTotals {
+        @Override
+        public UUID getUserId() {
+            return userId;
+        }
+
+        @Override
+        public Long getBarStationId() {
+            return barStationId;
+        }
+
+        @Override
+        public Long getSalesCount() {
+            return salesCount;
+        }
+
+        @Override
+        public BigDecimal getTotalRevenue() {
+            return totalRevenue;
+        }
+    }
+
+    private record StationTotals(Long barStationId, Long salesCount, BigDecimal totalRevenue)
+            implements StationSalesTotals {
+        @Override
+        public Long getBarStationId() {
+            return barStationId;
+        }
+
+        @Override
+        public Long getSalesCount() {
+            return salesCount;
+        }
+
+        @Override
+        public BigDecimal getTotalRevenue() {
+            return totalRevenue;
+        }
+    }
+}
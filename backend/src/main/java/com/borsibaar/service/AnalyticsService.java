@@ -0,0 +1,55 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SalesHeatmapCellDto;
+import com.borsibaar.dto.SalesHeatmapResponseDto;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the sales heatmap, volume and revenue per station, category and
+ * hour or day, from the {@code sales_heatmap} rollup, so a read costs the
+ * same however many sales the range holds.
+ * <p>
+ * A response covers at most {@link #MAX_BUCKETS} buckets, chosen by
+ * {@link BucketRange}: longer ranges are served by day instead of by hour.
+ * Days are UTC days.
+ */
+@Service
+@RequiredArgsConstructor
+public class AnalyticsService {
+
+    static final int MAX_BUCKETS = 31 * 24;
+    static final Duration DEFAULT_RANGE = Duration.ofDays(7);
+
+    private static final BucketRange GRANULARITIES = new BucketRange("Granularity", List.of(
+            Map.entry("hour", Duration.ofHours(1)),
+            Map.entry("day", Duration.ofDays(1))), MAX_BUCKETS, DEFAULT_RANGE);
+
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+
+    /**
+     * @param granularity {@code hour} or {@code day}; {@code null} for {@code hour}
+     * @param from        start of the range; {@code null} for a week before {@code to}
+     * @param to          end of the range, exclusive; {@code null} for now
+     */
+    @Transactional(readOnly = true)
+    public SalesHeatmapResponseDto getHeatmap(Long organizationId, String granularity, OffsetDateTime from,
+            OffsetDateTime to) {
+        BucketRange.Selection selection = GRANULARITIES.select(granularity, from, to);
+
+        List<SalesHeatmapCellDto> cells = inventoryTransactionRepository.findHeatmap(organizationId,
+                selection.start(), selection.end(), selection.bucket());
+        return new SalesHeatmapResponseDto(selection.size(),
+                selection.start().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                selection.end().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                cells);
+    }
+}
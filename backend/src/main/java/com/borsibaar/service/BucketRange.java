@@ -0,0 +1,81 @@
+package com.borsibaar.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses the bucket size and range of a time-series read, so a response
+ * never holds more than {@code maxBuckets} buckets.
+ * <p>
+ * When the range holds more buckets of the requested size, the next coarser
+ * size is used; beyond the coarsest, the range is cut to its most recent
+ * part.
+ */
+final class BucketRange {
+
+    private final String parameter;
+    private final List<Map.Entry<String, Duration>> sizes;
+    private final int maxBuckets;
+    private final Duration defaultRange;
+
+    /**
+     * @param parameter    request parameter naming the size, for error messages
+     * @param sizes        bucket sizes by name, finest first; the finest is the default
+     * @param defaultRange range ending at {@code to} when {@code from} is not given
+     */
+    BucketRange(String parameter, List<Map.Entry<String, Duration>> sizes, int maxBuckets, Duration defaultRange) {
+        this.parameter = parameter;
+        this.sizes = sizes;
+        this.maxBuckets = maxBuckets;
+        this.defaultRange = defaultRange;
+    }
+
+    /**
+     * @param size bucket size by name; {@code null} for the finest
+     * @param from start of the range; {@code null} for the default range before {@code to}
+     * @param to   end of the range, exclusive; {@code null} for now
+     */
+    Selection select(String size, OffsetDateTime from, OffsetDateTime to) {
+        int chosen = size == null ? 0 : indexOf(size);
+        OffsetDateTime end = to != null ? to : OffsetDateTime.now();
+        OffsetDateTime start = from != null ? from : end.minus(defaultRange);
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+
+        Duration range = Duration.between(start, end);
+        while (chosen < sizes.size() - 1 && bucketCount(range, sizes.get(chosen).getValue()) > maxBuckets) {
+            chosen++;
+        }
+        Duration bucket = sizes.get(chosen).getValue();
+        if (bucketCount(range, bucket) > maxBuckets) {
+            // Keep the latest buckets; one is reserved for the partial bucket at the start
+            start = end.minus(bucket.multipliedBy(maxBuckets - 1));
+        }
+        return new Selection(sizes.get(chosen).getKey(), bucket, start, end);
+    }
+
+    private int indexOf(String size) {
+        for (int i = 0; i < sizes.size(); i++) {
+            if (sizes.get(i).getKey().equals(size)) {
+                return i;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, parameter + " must be one of "
+                + sizes.stream().map(Map.Entry::getKey).collect(Collectors.joining(", ")));
+    }
+
+    // Epoch-aligned buckets touched by a range: a partial one at each end
+    private static long bucketCount(Duration range, Duration bucket) {
+        return range.toNanos() / bucket.toNanos() + 1;
+    }
+
+    record Selection(String size, Duration bucket, OffsetDateTime start, OffsetDateTime end) {
+    }
+}
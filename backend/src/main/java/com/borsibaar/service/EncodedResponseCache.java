@@ -0,0 +1,168 @@
+package com.borsibaar.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps hot public GET responses as encoded JSON bytes, so a poll is
+ * answered without serializing anything.
+ * <p>
+ * Bodies are keyed by the organization's catalog version from
+ * {@link MenuCache}, which moves on every change to its categories,
+ * products, stock or prices and is the same on every node. Bodies of at
+ * least {@link #GZIP_MIN_BYTES} are also kept gzip-compressed and sent that
+ * way to clients accepting gzip.
+ * <p>
+ * Responses carry a strong ETag naming the resource, organization, category
+ * and catalog version, so a tag is only ever current for the listing it was
+ * issued for. A request whose {@code If-None-Match} holds the current tag
+ * gets {@code 304 Not Modified} before anything is loaded or encoded.
+ */
+@Service
+public class EncodedResponseCache {
+
+    static final int GZIP_MIN_BYTES = 1024;
+
+    private final MenuCache menuCache;
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, Encoded> bodies;
+
+    public EncodedResponseCache(MenuCache menuCache,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.response-cache.max-entries:1000}") long maxEntries,
+            @Value("${app.response-cache.ttl:PT5M}") Duration ttl) {
+        this.menuCache = menuCache;
+        this.objectMapper = objectMapper;
+        this.bodies = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, bodies, "response.encoded");
+    }
+
+    /**
+     * Answers with the cached body of {@code resource} for the organization,
+     * calling {@code body} and encoding its result on a miss, or with
+     * {@code 304} when the client already has the current version.
+     *
+     * @param categoryId part of the key; {@code null} when not filtered
+     */
+    public ResponseEntity<byte[]> respond(String resource, Long organizationId, Long categoryId,
+            WebRequest request, Supplier<?> body) {
+        long version = menuCache.version(organizationId);
+        boolean gzipAccepted = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        // Identity and gzip bodies differ, so they get different strong tags
+        String eTag = "\"" + resource + "." + organizationId + "." + (categoryId != null ? categoryId : "all")
+                + "." + version + (gzipAccepted ? "-gz" : "") + "\"";
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        Encoded encoded = bodies.get(new Key(resource, organizationId, categoryId, version),
+                key -> encode(body.get()));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(eTag)
+                // Clients may keep the body but must revalidate before reuse
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (encoded.gzip() != null && gzipAccepted) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.gzip());
+        }
+        return response.body(encoded.json());
+    }
+
+    /**
+     * {@code If-None-Match} uses weak comparison, so a {@code W/} prefix
+     * added by an intermediary still matches.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            // "gzip;q=0" explicitly refuses gzip
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim().replace(" ", "");
+                if (parameter.matches("q=0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Encoded encode(Object body) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+        return new Encoded(json, json.length >= GZIP_MIN_BYTES ? gzip(json) : null);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private record Key(String resource, Long organizationId, Long categoryId, long version) {
+    }
+
+    private record Encoded(byte[] json, byte[] gzip) {
+    }
+}
@@ -6,20 +6,28 @@ import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
 import com.borsibaar.entity.User;
+import com.borsibaar.event.InventoryChangedEvent;
 import com.borsibaar.mapper.InventoryMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryStockRepository.StockDecrement;
+import com.borsibaar.repository.InventoryStockRepository.StockUpdate;
 import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.SalesStatsRepository.StationSalesTotals;
+import com.borsibaar.repository.SalesStatsRepository.UserSalesTotals;
 import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -28,60 +36,37 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class InventoryService {
 
+    static final int DEFAULT_HISTORY_LIMIT = 100;
+    static final int MAX_HISTORY_LIMIT = 500;
+
     private final InventoryRepository inventoryRepository;
     private final InventoryTransactionRepository inventoryTransactionRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final BarStationRepository barStationRepository;
     private final InventoryMapper inventoryMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MenuCache menuCache;
 
-    @Transactional(readOnly = true)
     public List<InventoryResponseDto> getByOrganization(Long organizationId) {
         return getByOrganization(organizationId, null);
     }
 
-    @Transactional(readOnly = true)
+    // Not transactional: a cache hit at most reads the version row, once per refresh
     public List<InventoryResponseDto> getByOrganization(Long organizationId, Long categoryId) {
-        List<Inventory> inventories;
+        // Single query: joins products, drops inactive ones and sorts by name in SQL
+        return menuCache.get(organizationId, categoryId,
+                () -> inventoryRepository.findListing(organizationId, categoryId));
+    }
 
-        if (categoryId != null) {
-            inventories = inventoryRepository.findByOrganizationIdAndCategoryId(organizationId, categoryId);
-        } else {
-            inventories = inventoryRepository.findByOrganizationId(organizationId);
-        }
+    // Cached as encoded bytes by EncodedResponseCache, keyed by the catalog version
+    public List<MenuCategoryDto> getMenu(Long organizationId) {
+        return inventoryRepository.findMenu(organizationId);
+    }
 
-        return inventories.stream()
-                .map(inv -> {
-                    InventoryResponseDto base = inventoryMapper.toResponse(inv);
-                    Product product = productRepository.findById(inv.getProductId())
-                            .orElse(null);
-
-                    if (product == null)
-                        return null;
-                    if (!product.isActive()) {
-                        return null;
-                    }
-
-                    String productName = product.getName();
-                    BigDecimal unitPrice = Optional.ofNullable(inv.getAdjustedPrice())
-                            .orElse(product.getBasePrice());
-
-                    return new InventoryResponseDto(
-                            base.id(),
-                            base.organizationId(),
-                            base.productId(),
-                            productName,
-                            base.quantity(),
-                            unitPrice,
-                            product.getDescription(),
-                            product.getBasePrice(),
-                            product.getMinPrice(),
-                            product.getMaxPrice(),
-                            base.updatedAt());
-                })
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(InventoryResponseDto::productName))
-                .toList();
+    // Not cached: the cursor moves with every transaction in the database
+    public InventoryChangesResponseDto getChanges(Long organizationId, Long since) {
+        return inventoryRepository.findChanges(organizationId, since);
     }
 
     @Transactional(readOnly = true)
@@ -136,32 +121,17 @@ public class InventoryService {
                     return inventoryRepository.save(newInv);
                 });
 
-        BigDecimal oldQuantity = inventory.getQuantity();
-        BigDecimal newQuantity = oldQuantity.add(request.quantity());
-
-        inventory.setQuantity(newQuantity);
-        inventory.setUpdatedAt(OffsetDateTime.now());
-        inventory = inventoryRepository.save(inventory);
-
-        BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
+        StockUpdate update = inventoryRepository.incrementStock(inventory.getId(), request.quantity())
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
         // Create transaction record
         createTransaction(inventory, "PURCHASE", request.quantity(),
-                oldQuantity, newQuantity, currentPrice, currentPrice, null, request.notes(), userId);
+                update.quantityBefore(), update.quantityAfter(), update.priceBefore(), update.priceAfter(),
+                null, request.notes(), userId);
 
-        InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        return new InventoryResponseDto(
-                base.id(),
-                base.organizationId(),
-                base.productId(),
-                product.getName(),
-                base.quantity(),
-                currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
-                base.updatedAt());
+        eventPublisher.publishEvent(new InventoryChangedEvent(organizationId));
+        return toStockResponse(inventory, product, update);
     }
 
     @Transactional
@@ -173,40 +143,23 @@ public class InventoryService {
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
-        BigDecimal oldQuantity = inventory.getQuantity();
-        BigDecimal newQuantity = oldQuantity.subtract(request.quantity());
-
-        if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
+        // Check stock and subtract in one conditional statement
+        StockDecrement decrement = inventoryRepository.decrementStock(inventory.getId(), request.quantity(), null);
+        if (!decrement.applied()) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST,
-                    "Insufficient stock. Available: " + oldQuantity + ", Requested: "
+                    "Insufficient stock. Available: " + decrement.available() + ", Requested: "
                             + request.quantity());
         }
-
-        inventory.setQuantity(newQuantity);
-        inventory.setUpdatedAt(OffsetDateTime.now());
-        inventory = inventoryRepository.save(inventory);
-
-        BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
+        StockUpdate update = decrement.update();
 
         // Create transaction record (negative quantity change)
         createTransaction(inventory, "ADJUSTMENT", request.quantity().negate(),
-                oldQuantity, newQuantity, currentPrice, currentPrice, request.referenceId(),
-                request.notes(), userId);
+                update.quantityBefore(), update.quantityAfter(), update.priceBefore(), update.priceAfter(),
+                request.referenceId(), request.notes(), userId);
 
-        InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        return new InventoryResponseDto(
-                base.id(),
-                base.organizationId(),
-                base.productId(),
-                product.getName(),
-                base.quantity(),
-                currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
-                base.updatedAt());
+        eventPublisher.publishEvent(new InventoryChangedEvent(organizationId));
+        return toStockResponse(inventory, product, update);
     }
 
     @Transactional
@@ -218,44 +171,62 @@ public class InventoryService {
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
-        BigDecimal oldQuantity = inventory.getQuantity();
-        BigDecimal quantityChange = request.newQuantity().subtract(oldQuantity);
-
-        inventory.setQuantity(request.newQuantity());
-        inventory.setUpdatedAt(OffsetDateTime.now());
-        inventory = inventoryRepository.save(inventory);
-
-        BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
+        StockUpdate update = inventoryRepository.setStock(inventory.getId(), request.newQuantity())
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "No inventory found for this product"));
+        BigDecimal quantityChange = update.quantityAfter().subtract(update.quantityBefore());
 
         // Create transaction record
         createTransaction(inventory, "ADJUSTMENT", quantityChange,
-                oldQuantity, request.newQuantity(), currentPrice, currentPrice, null, request.notes(),
-                userId);
+                update.quantityBefore(), update.quantityAfter(), update.priceBefore(), update.priceAfter(),
+                null, request.notes(), userId);
 
-        InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        return new InventoryResponseDto(
-                base.id(),
-                base.organizationId(),
-                base.productId(),
-                product.getName(),
-                base.quantity(),
-                currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
-                base.updatedAt());
+        eventPublisher.publishEvent(new InventoryChangedEvent(organizationId));
+        return toStockResponse(inventory, product, update);
     }
 
+    /**
+     * Returns one page of a product's ledger, newest first.
+     * <p>
+     * {@code before} is {@code "<createdAt>,<id>"} of the last row of the
+     * previous page, or {@code null} for the first page. Pages are read by
+     * keyset from the {@code (inventory_id, created_at, id)} index, so a page
+     * costs the same however far back it is.
+     *
+     * @param limit page size; {@code null} for {@value #DEFAULT_HISTORY_LIMIT},
+     *              capped at {@value #MAX_HISTORY_LIMIT}
+     */
     @Transactional(readOnly = true)
-    public List<InventoryTransactionResponseDto> getTransactionHistory(Long productId, Long organizationId) {
+    public List<InventoryTransactionResponseDto> getTransactionHistory(Long productId, Long organizationId,
+            String before, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be positive");
+        }
+        int pageSize = limit == null ? DEFAULT_HISTORY_LIMIT : Math.min(limit, MAX_HISTORY_LIMIT);
+
         Inventory inventory = inventoryRepository
                 .findByOrganizationIdAndProductId(organizationId, productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
-        List<InventoryTransaction> transactions = inventoryTransactionRepository
-                .findByInventoryIdOrderByCreatedAtDesc(inventory.getId());
+        List<InventoryTransaction> transactions;
+        if (before == null || before.isBlank()) {
+            transactions = inventoryTransactionRepository.findLatestByInventoryId(inventory.getId(), pageSize);
+        } else {
+            int comma = before.lastIndexOf(',');
+            OffsetDateTime beforeCreatedAt;
+            Long beforeId;
+            try {
+                // An unencoded "+" in the offset arrives as a space
+                beforeCreatedAt = OffsetDateTime.parse(before.substring(0, comma).trim().replace(' ', '+'));
+                beforeId = Long.valueOf(before.substring(comma + 1).trim());
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Invalid cursor, expected <createdAt>,<id>");
+            }
+            transactions = inventoryTransactionRepository.findByInventoryIdBefore(inventory.getId(),
+                    beforeCreatedAt, beforeId, pageSize);
+        }
 
         // Get all unique user IDs (filter out nulls)
         List<UUID> userIds = transactions.stream()
@@ -295,130 +266,92 @@ public class InventoryService {
                 .toList();
     }
 
+    /**
+     * Sales per seller and station, busiest first. Without {@code from} and
+     * {@code to} covers all time; with either, only sales in {@code [from, to)},
+     * where a missing {@code from} means since the first sale and a missing
+     * {@code to} means until now.
+     */
     @Transactional(readOnly = true)
-    public List<UserSalesStatsResponseDto> getUserSalesStats(Long organizationId) {
-        // Get all sale transactions for the organization
-        List<InventoryTransaction> saleTransactions = inventoryTransactionRepository
-                .findSaleTransactionsByOrganizationId(organizationId);
-
-        // Group transactions by user and station
-        Map<String, List<InventoryTransaction>> transactionsByUserAndStation = saleTransactions.stream()
-                .filter(t -> t.getCreatedBy() != null)
-                .collect(Collectors.groupingBy(transaction -> {
-                    UUID userId = transaction.getCreatedBy();
-                    Long stationId = transaction.getBarStationId();
-                    return userId.toString() + "|"
-                            + (stationId != null ? stationId.toString() : "null");
-                }));
-
-        // Get all unique user IDs and station IDs
-        Set<UUID> userIds = saleTransactions.stream()
-                .map(InventoryTransaction::getCreatedBy)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+    public List<UserSalesStatsResponseDto> getUserSalesStats(Long organizationId, OffsetDateTime from,
+            OffsetDateTime to) {
+        // All time from the sales counters, a window from its slice of the ledger
+        List<UserSalesTotals> totals = from == null && to == null
+                ? inventoryTransactionRepository.findUserSalesTotals(organizationId)
+                : inventoryTransactionRepository.findUserSalesTotals(organizationId, windowStart(from, to),
+                        windowEnd(to));
 
-        Set<Long> stationIds = saleTransactions.stream()
-                .map(InventoryTransaction::getBarStationId)
+        // Fetch all users and stations at once
+        Set<UUID> userIds = totals.stream().map(UserSalesTotals::getUserId).collect(Collectors.toSet());
+        Set<Long> stationIds = totals.stream()
+                .map(UserSalesTotals::getBarStationId)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
-        // Fetch all users and stations at once
-        Map<UUID, User> userMap = userRepository.findAllById(new ArrayList<>(userIds)).stream()
+        Map<UUID, User> userMap = userRepository.findAllById(userIds).stream()
                 .collect(Collectors.toMap(User::getId, user -> user));
-
-        Map<Long, BarStation> stationMap = barStationRepository.findAllById(new ArrayList<>(stationIds))
-                .stream()
+        Map<Long, BarStation> stationMap = barStationRepository.findAllById(stationIds).stream()
                 .collect(Collectors.toMap(BarStation::getId, station -> station));
 
-        // Calculate statistics for each user-station combination
-        return transactionsByUserAndStation.entrySet().stream()
-                .map(entry -> {
-                    String[] parts = entry.getKey().split("\\|");
-                    UUID userId = UUID.fromString(parts[0]);
-                    Long stationId = null;
-                    if (parts.length > 1 && !parts[1].equals("null")) {
-                        try {
-                            stationId = Long.parseLong(parts[1]);
-                        } catch (NumberFormatException e) {
-                            stationId = null;
-                        }
-                    }
-
-                    List<InventoryTransaction> userStationTransactions = entry.getValue();
-                    User user = userMap.get(userId);
-                    BarStation station = stationId != null ? stationMap.get(stationId) : null;
-
-                    // Count unique sales (by referenceId)
-                    long salesCount = userStationTransactions.stream()
-                            .map(InventoryTransaction::getReferenceId)
-                            .filter(Objects::nonNull)
-                            .distinct()
-                            .count();
-
-                    // Calculate total revenue by getting all products and their prices
-                    BigDecimal totalRevenue = calculateTotalRevenue(userStationTransactions);
-
+        return totals.stream()
+                .map(row -> {
+                    User user = userMap.get(row.getUserId());
+                    BarStation station = row.getBarStationId() != null
+                            ? stationMap.get(row.getBarStationId())
+                            : null;
                     return new UserSalesStatsResponseDto(
-                            userId.toString(),
+                            row.getUserId().toString(),
                             user != null ? user.getName() : "Unknown User",
                             user != null ? user.getEmail() : "unknown@email.com",
-                            salesCount,
-                            totalRevenue,
-                            stationId,
+                            row.getSalesCount(),
+                            row.getTotalRevenue(),
+                            row.getBarStationId(),
                             station != null ? station.getName() : null);
                 })
-                .sorted((a, b) -> Long.compare(b.salesCount(), a.salesCount())) // Sort by sales count
-                // desc
                 .toList();
     }
 
+    /**
+     * Sales per station, busiest first, over all time or a window as in
+     * {@link #getUserSalesStats}.
+     */
     @Transactional(readOnly = true)
-    public List<StationSalesStatsResponseDto> getStationSalesStats(Long organizationId) {
-        // Get all sale transactions for the organization
-        List<InventoryTransaction> saleTransactions = inventoryTransactionRepository
-                .findSaleTransactionsByOrganizationId(organizationId);
-
-        // Group transactions by station
-        Map<Long, List<InventoryTransaction>> transactionsByStation = saleTransactions.stream()
-                .filter(t -> t.getBarStationId() != null)
-                .collect(Collectors.groupingBy(InventoryTransaction::getBarStationId));
-
-        // Get all unique station IDs
-        Set<Long> stationIds = transactionsByStation.keySet();
+    public List<StationSalesStatsResponseDto> getStationSalesStats(Long organizationId, OffsetDateTime from,
+            OffsetDateTime to) {
+        List<StationSalesTotals> totals = from == null && to == null
+                ? inventoryTransactionRepository.findStationSalesTotals(organizationId)
+                : inventoryTransactionRepository.findStationSalesTotals(organizationId, windowStart(from, to),
+                        windowEnd(to));
 
         // Fetch all stations at once
-        Map<Long, BarStation> stationMap = barStationRepository.findAllById(new ArrayList<>(stationIds))
-                .stream()
+        Set<Long> stationIds = totals.stream().map(StationSalesTotals::getBarStationId).collect(Collectors.toSet());
+        Map<Long, BarStation> stationMap = barStationRepository.findAllById(stationIds).stream()
                 .collect(Collectors.toMap(BarStation::getId, station -> station));
 
-        // Calculate statistics for each station
-        return transactionsByStation.entrySet().stream()
-                .map(entry -> {
-                    Long stationId = entry.getKey();
-                    List<InventoryTransaction> stationTransactions = entry.getValue();
-                    BarStation station = stationMap.get(stationId);
-
-                    // Count unique sales (by referenceId)
-                    long salesCount = stationTransactions.stream()
-                            .map(InventoryTransaction::getReferenceId)
-                            .filter(Objects::nonNull)
-                            .distinct()
-                            .count();
-
-                    // Calculate total revenue by getting all products and their prices
-                    BigDecimal totalRevenue = calculateTotalRevenue(stationTransactions);
-
+        return totals.stream()
+                .map(row -> {
+                    BarStation station = stationMap.get(row.getBarStationId());
                     return new StationSalesStatsResponseDto(
-                            stationId,
+                            row.getBarStationId(),
                             station != null ? station.getName() : null,
-                            salesCount,
-                            totalRevenue);
+                            row.getSalesCount(),
+                            row.getTotalRevenue());
                 })
-                .sorted((a, b) -> Long.compare(b.salesCount(), a.salesCount())) // Sort by sales count
-                // desc
                 .toList();
     }
 
+    private static OffsetDateTime windowStart(OffsetDateTime from, OffsetDateTime to) {
+        OffsetDateTime start = from != null ? from : Instant.EPOCH.atOffset(ZoneOffset.UTC);
+        if (!start.isBefore(windowEnd(to))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+        return start;
+    }
+
+    private static OffsetDateTime windowEnd(OffsetDateTime to) {
+        return to != null ? to : OffsetDateTime.now();
+    }
+
     private void createTransaction(Inventory inventory, String type, BigDecimal quantityChange,
                                    BigDecimal quantityBefore, BigDecimal quantityAfter,
                                    BigDecimal priceBefore, BigDecimal priceAfter,
@@ -438,6 +371,25 @@ public class InventoryService {
         inventoryTransactionRepository.save(transaction);
     }
 
+    /**
+     * Builds the stock mutation response from the values returned by the atomic
+     * update, since the loaded entity still holds the pre-update state.
+     */
+    private InventoryResponseDto toStockResponse(Inventory inventory, Product product, StockUpdate update) {
+        InventoryResponseDto base = inventoryMapper.toResponse(inventory);
+        return new InventoryResponseDto(
+                base.id(),
+                base.organizationId(),
+                base.productId(),
+                product.getName(),
+                update.quantityAfter(),
+                update.priceAfter(),
+                product.getDescription(), null,
+                product.getMinPrice(),
+                product.getMaxPrice(),
+                inventoryMapper.map(update.updatedAt()));
+    }
+
     private Product getOrganizationProduct(Long organizationId, Long productId) {
         // Verify product exists and belongs to organization
         Product product = productRepository.findById(productId)
@@ -454,27 +406,4 @@ public class InventoryService {
         return product;
     }
 
-
-    private BigDecimal calculateTotalRevenue(List<InventoryTransaction> userStationTransactions) {
-        return userStationTransactions.stream()
-                .map(transaction -> {
-                    // Get inventory to find product
-                    return inventoryRepository
-                            .findById(transaction.getInventoryId())
-                            .flatMap(inventory -> productRepository
-                                    .findById(inventory
-                                            .getProductId()))
-                            .map(product -> {
-                                // Calculate revenue for this
-                                // transaction
-                                BigDecimal quantitySold = transaction
-                                        .getQuantityChange()
-                                        .abs();
-                                return product.getBasePrice()
-                                        .multiply(quantitySold);
-                            })
-                            .orElse(BigDecimal.ZERO);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
 }
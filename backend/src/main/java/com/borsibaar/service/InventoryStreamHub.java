@@ -0,0 +1,340 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryChangesResponseDto;
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes inventory changes to connected screens over Server-Sent Events.
+ * <p>
+ * Every organization with subscribers has a feed holding a change cursor.
+ * Change events mark the feed dirty, and a single load of the changes since
+ * the cursor fans out to all its subscribers, so a burst of sales costs a
+ * few queries however many screens are connected. A feed is dropped with
+ * its last subscriber, so a later one starts from a current cursor.
+ * Replays for reconnecting clients run on the same load, so a replay never
+ * lands after newer changes. Connections are async
+ * servlet requests and hold no thread while idle; sends run on virtual
+ * threads, so a slow client only delays itself.
+ * <p>
+ * A subscriber buffers at most {@code buffer-size} products, coalescing
+ * repeated changes to a product into the latest. One that falls further
+ * behind gets a {@code resync} event instead and should reload the listing.
+ */
+@Slf4j
+@Service
+public class InventoryStreamHub {
+
+    static final String CHANGES_EVENT = "changes";
+    static final String RESYNC_EVENT = "resync";
+
+    private final InventoryRepository inventoryRepository;
+    private final Executor executor;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final Map<Long, Feed> feeds = new ConcurrentHashMap<>();
+
+    public InventoryStreamHub(InventoryRepository inventoryRepository,
+            @Qualifier("inventoryStreamExecutor") Executor executor,
+            MeterRegistry meterRegistry,
+            @Value("${app.inventory-stream.buffer-size:256}") int bufferSize,
+            @Value("${app.inventory-stream.timeout:PT30M}") Duration timeout) {
+        this.inventoryRepository = inventoryRepository;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        Gauge.builder("inventory_stream.subscribers", feeds,
+                        all -> all.values().stream().mapToInt(feed -> feed.subscribers.size()).sum())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the organization's inventory changes. With
+     * {@code since}, the version of an earlier listing or event, changes
+     * after it are sent first, so a reconnecting client misses nothing.
+     */
+    public SseEmitter subscribe(Long organizationId, Long since) {
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter);
+        Feed feed = join(organizationId, subscriber);
+        emitter.onCompletion(() -> leave(feed, subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> leave(feed, subscriber));
+
+        // Sent at once, so clients and proxies see the stream open
+        subscriber.heartbeat();
+        if (since != null) {
+            feed.replays.add(new Replay(subscriber, since));
+            startLoad(feed);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarketMoved(MarketMovedEvent event) {
+        publish(event.organizationId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        publish(event.organizationId());
+    }
+
+    // Keeps idle connections from being closed by proxies
+    @Scheduled(fixedDelayString = "${app.inventory-stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Feed feed : feeds.values()) {
+            feed.subscribers.forEach(Subscriber::heartbeat);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Feed feed : feeds.values()) {
+            feed.subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeout.toMillis());
+    }
+
+    private Feed join(Long organizationId, Subscriber subscriber) {
+        while (true) {
+            Feed feed = feeds.computeIfAbsent(organizationId, Feed::new);
+            synchronized (feed) {
+                // A closed feed lost its last subscriber meanwhile; start a new one
+                if (!feed.closed) {
+                    if (feed.cursor == null) {
+                        feed.cursor = inventoryRepository.currentChangeVersion();
+                    }
+                    feed.subscribers.add(subscriber);
+                    return feed;
+                }
+            }
+        }
+    }
+
+    private void leave(Feed feed, Subscriber subscriber) {
+        synchronized (feed) {
+            if (feed.subscribers.remove(subscriber) && feed.subscribers.isEmpty()) {
+                feed.closed = true;
+                feeds.remove(feed.organizationId, feed);
+            }
+        }
+    }
+
+    private void publish(Long organizationId) {
+        Feed feed = feeds.get(organizationId);
+        if (feed == null || feed.subscribers.isEmpty()) {
+            return;
+        }
+        feed.dirty.set(true);
+        startLoad(feed);
+    }
+
+    private void startLoad(Feed feed) {
+        if (feed.loading.compareAndSet(false, true)) {
+            executor.execute(() -> load(feed));
+        }
+    }
+
+    private void load(Feed feed) {
+        try {
+            // Events and replays arriving meanwhile are folded into the next round
+            while (feed.pending()) {
+                Replay replay;
+                while ((replay = feed.replays.poll()) != null) {
+                    replay(feed, replay);
+                }
+                if (feed.dirty.getAndSet(false)) {
+                    InventoryChangesResponseDto changes = inventoryRepository.findChanges(feed.organizationId,
+                            feed.cursor);
+                    feed.cursor = changes.version();
+                    if (!changes.changed().isEmpty() || !changes.removedProductIds().isEmpty()) {
+                        feed.subscribers.forEach(subscriber -> subscriber.offer(changes));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // The cursor did not move, so the next event retries these changes
+            log.warn("Inventory stream load failed for organization {}", feed.organizationId, e);
+        } finally {
+            feed.loading.set(false);
+            if (feed.pending()) {
+                startLoad(feed);
+            }
+        }
+    }
+
+    private void replay(Feed feed, Replay replay) {
+        try {
+            replay.subscriber().offer(inventoryRepository.findChanges(feed.organizationId, replay.since()));
+        } catch (RuntimeException e) {
+            // Its missed changes are unknown, so the client has to reload the listing
+            log.warn("Inventory stream replay failed for organization {}", feed.organizationId, e);
+            replay.subscriber().resync();
+        }
+    }
+
+    private static final class Feed {
+        final Long organizationId;
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        final Queue<Replay> replays = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        final AtomicBoolean loading = new AtomicBoolean();
+        // Only written by the single running load, or once under the feed lock
+        volatile Long cursor;
+        // Guarded by this; a closed feed is out of the map and takes no subscribers
+        boolean closed;
+
+        Feed(Long organizationId) {
+            this.organizationId = organizationId;
+        }
+
+        boolean pending() {
+            return dirty.get() || !replays.isEmpty();
+        }
+    }
+
+    private record Replay(Subscriber subscriber, Long since) {
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+
+        // Pending changes, latest per product; guarded by this
+        private final Map<Long, InventoryResponseDto> changed = new LinkedHashMap<>();
+        private final Set<Long> removed = new LinkedHashSet<>();
+        private long version;
+        private boolean resync;
+        private boolean heartbeat;
+        private boolean draining;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(InventoryChangesResponseDto changes) {
+            synchronized (this) {
+                for (InventoryResponseDto row : changes.changed()) {
+                    removed.remove(row.productId());
+                    changed.remove(row.productId());
+                    changed.put(row.productId(), row);
+                }
+                for (Long productId : changes.removedProductIds()) {
+                    changed.remove(productId);
+                    removed.add(productId);
+                }
+                version = Math.max(version, changes.version());
+                if (changed.size() + removed.size() > bufferSize) {
+                    changed.clear();
+                    removed.clear();
+                    resync = true;
+                }
+                if (!startDraining()) {
+                    return;
+                }
+            }
+            executor.execute(this::drain);
+        }
+
+        void resync() {
+            synchronized (this) {
+                changed.clear();
+                removed.clear();
+                resync = true;
+                if (!startDraining()) {
+                    return;
+                }
+            }
+            executor.execute(this::drain);
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                heartbeat = true;
+                if (!startDraining()) {
+                    return;
+                }
+            }
+            executor.execute(this::drain);
+        }
+
+        private boolean startDraining() {
+            if (draining) {
+                return false;
+            }
+            draining = true;
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                SseEventBuilder event;
+                synchronized (this) {
+                    event = nextEvent();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; completion removes the subscriber
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+
+        private SseEventBuilder nextEvent() {
+            String id = String.valueOf(version);
+            if (resync) {
+                resync = false;
+                return SseEmitter.event().name(RESYNC_EVENT).id(id).data(version);
+            }
+            if (!changed.isEmpty() || !removed.isEmpty()) {
+                InventoryChangesResponseDto batch = new InventoryChangesResponseDto(version,
+                        new ArrayList<>(changed.values()), new ArrayList<>(removed));
+                changed.clear();
+                removed.clear();
+                heartbeat = false;
+                return SseEmitter.event().name(CHANGES_EVENT).id(id).data(batch, MediaType.APPLICATION_JSON);
+            }
+            if (heartbeat) {
+                heartbeat = false;
+                return SseEmitter.event().comment("heartbeat");
+            }
+            return null;
+        }
+    }
+}
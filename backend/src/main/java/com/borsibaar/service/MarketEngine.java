@@ -0,0 +1,603 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleItemResponseDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryStockRepository.StockChange;
+import com.borsibaar.repository.InventoryStockRepository.StockShortfall;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.MarketJournal.Entry;
+import com.borsibaar.service.MarketJournal.Segment;
+import com.borsibaar.util.ReferenceIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Optional in-memory market: holds the current price and stock of every
+ * product per organization and applies sales and price ticks there instead
+ * of in the database. Enabled with {@code app.market-engine.enabled=true}.
+ * <p>
+ * Each organization's book has a single writer at a time (its monitor), so
+ * sales in one organization never wait for another's book; journal fsyncs
+ * are group-committed, so concurrent sales across organizations share one
+ * instead of queueing behind each other. Every change is written
+ * to a {@link MarketJournal} before it is acknowledged and persisted to
+ * {@code inventory} and {@code inventory_transactions} in batches by
+ * {@link #flush()}. Quantities are persisted as relative changes, so stock
+ * added through the inventory endpoints in the meantime is kept; prices are
+ * owned by the engine while it is enabled.
+ * <p>
+ * A sale made inside a transaction, such as one that also records its
+ * Idempotency-Key, holds its stock in the book but is only journaled once
+ * that transaction commits; if it rolls back the sale is taken out of the
+ * book again. A sale whose savepoint is rolled back is taken out with
+ * {@link #cancel(String)}.
+ * <p>
+ * Changes made outside the engine publish an {@link InventoryChangedEvent},
+ * which drops the organization's book; it is reloaded from the database,
+ * after a flush, on the next sale.
+ * <p>
+ * The engine must run on a single backend node. Each node keeps its own
+ * book, and stock is checked only against it, so two nodes selling from
+ * the same organization would oversell.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.market-engine.enabled", havingValue = "true")
+public class MarketEngine {
+
+    private final ProductRepository productRepository;
+    private final InventoryRepository inventoryRepository;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final SalesRollupService salesRollupService;
+    private final ReferenceIdGenerator referenceIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MarketJournal journal;
+
+    private final Map<Long, OrgBook> books = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final Deque<Segment> unflushed = new ArrayDeque<>();
+    // Sales held in a book until their transaction completes, by sale id
+    private final Map<String, PendingSale> pendingSales = new ConcurrentHashMap<>();
+    // Committed sales the journal could not take; persisted by the next flush
+    private final Queue<List<Entry>> unjournaled = new ConcurrentLinkedQueue<>();
+
+    public MarketEngine(ProductRepository productRepository,
+            InventoryRepository inventoryRepository,
+            InventoryTransactionRepository inventoryTransactionRepository,
+            SalesRollupService salesRollupService,
+            ReferenceIdGenerator referenceIdGenerator,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${app.market-engine.journal-dir:data/market-journal}") Path journalDir,
+            @Value("${app.market-engine.fsync:true}") boolean fsync) {
+        this.productRepository = productRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.salesRollupService = salesRollupService;
+        this.referenceIdGenerator = referenceIdGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Flushes and reloads never join the transaction of the sale that triggered them
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.journal = new MarketJournal(journalDir, fsync, objectMapper);
+        // Changes journaled before a crash or shutdown go out with the first flush
+        this.unflushed.addAll(journal.recovered());
+    }
+
+    /**
+     * Applies a sale to the organization's book. Either every line is applied
+     * or, if a product is unknown, inactive or short on stock, none is.
+     */
+    public SaleResponseDto sell(SaleRequestDto request, UUID userId, Long organizationId, OffsetDateTime soldAt) {
+        String saleId = referenceIdGenerator.next("SALE");
+        OrgBook book = books.computeIfAbsent(organizationId, OrgBook::new);
+
+        synchronized (book) {
+            ensureLoaded(book);
+            if (request.items().stream().anyMatch(item -> !book.slots.containsKey(item.productId()))) {
+                // Product created since the book was loaded
+                load(book);
+            }
+
+            // Validate the whole basket, including total stock per product, before changing anything
+            Map<Long, BigDecimal> requested = new HashMap<>();
+            for (SaleItemRequestDto item : request.items()) {
+                Slot slot = book.slots.get(item.productId());
+                if (slot == null) {
+                    throw new ResponseStatusException(
+                            HttpStatus.NOT_FOUND, "Product not found: " + item.productId());
+                }
+                if (!slot.active) {
+                    throw new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST, "Product is not active: " + slot.name);
+                }
+                if (slot.inventoryId == null) {
+                    throw new ResponseStatusException(
+                            HttpStatus.NOT_FOUND, "No inventory found for product: " + slot.name);
+                }
+                BigDecimal total = requested.merge(item.productId(), item.quantity(), BigDecimal::add);
+                if (slot.quantity.compareTo(total) < 0) {
+                    throw new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST,
+                            "Insufficient stock for " + slot.name +
+                                    ". Available: " + slot.quantity
+                                    + ", Requested: " + total);
+                }
+            }
+
+            List<SlotChange> changes = new ArrayList<>(request.items().size());
+            List<Entry> entries = new ArrayList<>(request.items().size());
+            List<SaleItemResponseDto> saleItems = new ArrayList<>(request.items().size());
+            BigDecimal totalAmount = BigDecimal.ZERO;
+            for (SaleItemRequestDto item : request.items()) {
+                Slot slot = book.slots.get(item.productId());
+                changes.add(slot.track(item.quantity().negate()));
+
+                BigDecimal quantityBefore = slot.quantity;
+                BigDecimal priceBefore = slot.price;
+                slot.quantity = slot.quantity.subtract(item.quantity());
+                if (slot.dynamicPricing && book.priceIncreaseStep != null) {
+                    BigDecimal raised = slot.price.add(book.priceIncreaseStep);
+                    slot.price = slot.maxPrice != null ? raised.min(slot.maxPrice) : raised;
+                }
+                slot.lastSaleAt = soldAt;
+
+                entries.add(new Entry(organizationId, slot.inventoryId, "SALE", item.quantity().negate(),
+                        quantityBefore, slot.quantity, priceBefore, slot.price,
+                        saleId, "POS Sale", userId, request.barStationId(), soldAt));
+
+                BigDecimal totalPrice = priceBefore.multiply(item.quantity());
+                saleItems.add(new SaleItemResponseDto(item.productId(), slot.name, item.quantity(),
+                        priceBefore, totalPrice));
+                totalAmount = totalAmount.add(totalPrice);
+            }
+
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                // Journaled when the caller's transaction commits, taken back out if it rolls back
+                PendingSale pending = new PendingSale(saleId, book, entries, changes);
+                book.pending.add(pending);
+                pendingSales.put(saleId, pending);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        complete(pending, status == STATUS_COMMITTED);
+                    }
+                });
+            } else {
+                try {
+                    journal.append(entries);
+                } catch (RuntimeException e) {
+                    // Not durable, so not applied
+                    changes.forEach(SlotChange::rollBack);
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Could not record sale", e);
+                }
+                changes.forEach(SlotChange::commit);
+            }
+
+            return new SaleResponseDto(saleId, saleItems, totalAmount, request.notes(), soldAt);
+        }
+    }
+
+    /**
+     * Takes a sale made inside a transaction back out of the book before that
+     * transaction completes, for a sale whose savepoint was rolled back. Does
+     * nothing for a sale that is not pending.
+     */
+    public void cancel(String saleId) {
+        PendingSale pending = pendingSales.get(saleId);
+        if (pending != null) {
+            complete(pending, false);
+        }
+    }
+
+    /**
+     * Lowers the price of each candidate by its organization's decrease step,
+     * down to the product's min price. Products sold in the engine since
+     * {@code since} are skipped even if the database has not seen the sale yet.
+     *
+     * @return number of products whose price changed
+     */
+    public int applyPriceTicks(List<Product> candidates, OffsetDateTime since) {
+        Map<Long, List<Product>> byOrganization = new LinkedHashMap<>();
+        for (Product product : candidates) {
+            byOrganization.computeIfAbsent(product.getOrganizationId(), id -> new ArrayList<>()).add(product);
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        int updatedCount = 0;
+        for (Map.Entry<Long, List<Product>> organization : byOrganization.entrySet()) {
+            OrgBook book = books.computeIfAbsent(organization.getKey(), OrgBook::new);
+            synchronized (book) {
+                ensureLoaded(book);
+                BigDecimal decreaseAmount = book.priceDecreaseStep;
+                if (decreaseAmount == null) {
+                    continue;
+                }
+
+                List<Entry> entries = new ArrayList<>();
+                List<Slot> changed = new ArrayList<>();
+                List<BigDecimal> previousPrices = new ArrayList<>();
+                for (Product product : organization.getValue()) {
+                    Slot slot = book.slots.get(product.getId());
+                    if (slot == null || slot.inventoryId == null
+                            || (slot.lastSaleAt != null && !slot.lastSaleAt.isBefore(since))) {
+                        continue;
+                    }
+
+                    BigDecimal minPrice = Optional.ofNullable(slot.minPrice).orElse(decreaseAmount);
+                    BigDecimal newPrice = slot.price.subtract(decreaseAmount).max(minPrice);
+                    if (newPrice.compareTo(slot.price) == 0) {
+                        // already at lowest price
+                        continue;
+                    }
+
+                    entries.add(new Entry(organization.getKey(), slot.inventoryId, "ADJUSTMENT", BigDecimal.ZERO,
+                            slot.quantity, slot.quantity, slot.price, newPrice,
+                            referenceIdGenerator.next("REDUCE"), "PriceCorrectionJob", null, null, now));
+                    changed.add(slot);
+                    previousPrices.add(slot.price);
+                    slot.price = newPrice;
+                }
+
+                if (entries.isEmpty()) {
+                    continue;
+                }
+                try {
+                    journal.append(entries);
+                } catch (RuntimeException e) {
+                    for (int i = 0; i < changed.size(); i++) {
+                        changed.get(i).price = previousPrices.get(i);
+                    }
+                    throw e;
+                }
+                // Persisted after any pending sale, so a rollback must not restore over it
+                changed.forEach(slot -> slot.changes.clear());
+                updatedCount += entries.size();
+            }
+        }
+        return updatedCount;
+    }
+
+    /**
+     * Persists everything journaled so far: one transaction per segment, with
+     * the inventory rows and ledger rows each written as a JDBC batch.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            journal.seal().ifPresent(unflushed::addLast);
+            for (List<Entry> entries; (entries = unjournaled.poll()) != null; ) {
+                unflushed.addLast(new Segment(null, entries));
+            }
+            while (!unflushed.isEmpty()) {
+                Segment segment = unflushed.peekFirst();
+                transactionTemplate.executeWithoutResult(status -> persist(segment.entries()));
+                journal.delete(segment);
+                unflushed.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Drops the organization's book so the next sale reloads it from the database.
+     */
+    public void evict(Long organizationId) {
+        OrgBook book = books.get(organizationId);
+        if (book == null) {
+            return;
+        }
+        synchronized (book) {
+            book.loaded = false;
+            book.slots.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        evict(event.organizationId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } finally {
+            journal.close();
+        }
+    }
+
+    private void persist(List<Entry> entries) {
+        // A segment is persisted in one transaction, so one committed row means all were
+        if (inventoryTransactionRepository.existsByReferenceId(entries.get(0).referenceId())) {
+            return;
+        }
+
+        Map<Long, StockChange> changes = new HashMap<>();
+        List<InventoryTransaction> transactions = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            changes.merge(entry.inventoryId(),
+                    new StockChange(entry.inventoryId(), entry.quantityChange(), entry.priceAfter(), entry.createdAt()),
+                    (previous, next) -> new StockChange(entry.inventoryId(),
+                            previous.quantityChange().add(next.quantityChange()),
+                            next.adjustedPrice(),
+                            next.updatedAt().isAfter(previous.updatedAt()) ? next.updatedAt() : previous.updatedAt()));
+            transactions.add(toTransaction(entry));
+        }
+
+        // Fixed row order, so concurrent flushes and sales never deadlock
+        List<StockChange> ordered = new ArrayList<>(changes.values());
+        ordered.sort(Comparator.comparing(StockChange::inventoryId));
+        for (StockShortfall shortfall : inventoryRepository.applyChanges(ordered)) {
+            // Recorded in the ledger so it still adds up to the stock on hand
+            log.warn("Inventory {} oversold by {}: stock was removed outside the market engine",
+                    shortfall.inventoryId(), shortfall.missing());
+            transactions.add(shortfallTransaction(shortfall, changes.get(shortfall.inventoryId())));
+        }
+        inventoryTransactionRepository.insertAll(transactions);
+        salesRollupService.merge(transactions);
+        // Delivered once the segment has committed
+        entries.stream().map(Entry::organizationId).distinct()
+                .forEach(organizationId -> eventPublisher.publishEvent(new MarketMovedEvent(organizationId)));
+    }
+
+    private void complete(PendingSale pending, boolean committed) {
+        OrgBook book = pending.book;
+        synchronized (book) {
+            if (!book.pending.remove(pending)) {
+                // Already cancelled
+                return;
+            }
+            pendingSales.remove(pending.saleId);
+            if (!committed) {
+                pending.changes.forEach(SlotChange::rollBack);
+                return;
+            }
+            pending.changes.forEach(SlotChange::commit);
+            try {
+                journal.append(pending.entries);
+            } catch (RuntimeException e) {
+                // The sale is committed with its transaction, so it is kept, but only in memory until flushed
+                log.error("Could not journal committed sale {}; persisting it from memory", pending.saleId, e);
+                unjournaled.add(pending.entries);
+            }
+        }
+    }
+
+    private void ensureLoaded(OrgBook book) {
+        if (!book.loaded) {
+            load(book);
+        }
+    }
+
+    private void load(OrgBook book) {
+        // The database must include every journaled change before it is read back
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Market state is not available", e);
+        }
+
+        List<Product> products = transactionTemplate.execute(status ->
+                productRepository.findAllWithInventoryByOrganizationId(book.organizationId));
+        book.slots.clear();
+        book.priceIncreaseStep = null;
+        book.priceDecreaseStep = null;
+        for (Product product : products) {
+            Organization organization = product.getOrganization();
+            if (organization != null) {
+                book.priceIncreaseStep = organization.getPriceIncreaseStep();
+                book.priceDecreaseStep = organization.getPriceDecreaseStep();
+            }
+            book.slots.put(product.getId(), Slot.of(product));
+        }
+        // Sales still waiting for their transaction are not in the database yet
+        for (PendingSale pending : book.pending) {
+            pending.changes.clear();
+            for (Entry entry : pending.entries) {
+                Slot slot = book.slotOf(entry.inventoryId());
+                if (slot != null) {
+                    pending.changes.add(slot.apply(entry));
+                }
+            }
+        }
+        book.loaded = true;
+    }
+
+    private InventoryTransaction shortfallTransaction(StockShortfall shortfall, StockChange change) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventoryId(shortfall.inventoryId());
+        transaction.setTransactionType("ADJUSTMENT");
+        transaction.setQuantityChange(shortfall.missing());
+        transaction.setQuantityBefore(shortfall.missing().negate());
+        transaction.setQuantityAfter(BigDecimal.ZERO);
+        transaction.setPriceBefore(change.adjustedPrice());
+        transaction.setPriceAfter(change.adjustedPrice());
+        transaction.setReferenceId(referenceIdGenerator.next("OVERSOLD"));
+        transaction.setNotes("Oversold by " + shortfall.missing() + " while stock changed outside the market engine");
+        transaction.setCreatedAt(change.updatedAt());
+        return transaction;
+    }
+
+    private static InventoryTransaction toTransaction(Entry entry) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventoryId(entry.inventoryId());
+        transaction.setTransactionType(entry.transactionType());
+        transaction.setQuantityChange(entry.quantityChange());
+        transaction.setQuantityBefore(entry.quantityBefore());
+        transaction.setQuantityAfter(entry.quantityAfter());
+        transaction.setPriceBefore(entry.priceBefore());
+        transaction.setPriceAfter(entry.priceAfter());
+        transaction.setReferenceId(entry.referenceId());
+        transaction.setNotes(entry.notes());
+        transaction.setCreatedBy(entry.createdBy());
+        transaction.setBarStationId(entry.barStationId());
+        transaction.setCreatedAt(entry.createdAt());
+        return transaction;
+    }
+
+    private static final class OrgBook {
+        final Long organizationId;
+        final Map<Long, Slot> slots = new HashMap<>();
+        final List<PendingSale> pending = new ArrayList<>();
+        boolean loaded;
+        BigDecimal priceIncreaseStep;
+        BigDecimal priceDecreaseStep;
+
+        OrgBook(Long organizationId) {
+            this.organizationId = organizationId;
+        }
+
+        Slot slotOf(Long inventoryId) {
+            for (Slot slot : slots.values()) {
+                if (inventoryId.equals(slot.inventoryId)) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+    }
+
+    // The changes are rebuilt against the new slots when the book is reloaded
+    private record PendingSale(String saleId, OrgBook book, List<Entry> entries, List<SlotChange> changes) {
+    }
+
+    private static final class Slot {
+        String name;
+        boolean active;
+        boolean dynamicPricing;
+        Long inventoryId;
+        BigDecimal quantity;
+        BigDecimal price;
+        BigDecimal minPrice;
+        BigDecimal maxPrice;
+        OffsetDateTime lastSaleAt;
+        // Sale changes since the last committed one, oldest first; a rolled-back one stays while a later sale sits on it
+        final Deque<SlotChange> changes = new ArrayDeque<>();
+
+        static Slot of(Product product) {
+            Slot slot = new Slot();
+            slot.name = product.getName();
+            slot.active = product.isActive();
+            Category category = product.getCategory();
+            slot.dynamicPricing = category != null && category.isDynamicPricing();
+            slot.minPrice = product.getMinPrice();
+            slot.maxPrice = product.getMaxPrice();
+            if (product.getInventory() != null) {
+                slot.inventoryId = product.getInventory().getId();
+                slot.quantity = product.getInventory().getQuantity();
+                slot.price = Optional.ofNullable(product.getInventory().getAdjustedPrice())
+                        .orElse(product.getBasePrice());
+            }
+            return slot;
+        }
+
+        /**
+         * Records the slot's price and last sale before a sale changes them.
+         */
+        SlotChange track(BigDecimal quantityChange) {
+            SlotChange change = new SlotChange(this, quantityChange, price, lastSaleAt);
+            changes.addLast(change);
+            return change;
+        }
+
+        // Relative, so changes applied to the slot since the entry are kept
+        SlotChange apply(Entry entry) {
+            SlotChange change = track(entry.quantityChange());
+            quantity = quantity.add(entry.quantityChange());
+            price = price.add(entry.priceAfter().subtract(entry.priceBefore()));
+            lastSaleAt = entry.createdAt();
+            return change;
+        }
+
+        /**
+         * Restores the price and last sale of rolled-back sales that no later
+         * sale was priced on top of. A later surviving sale keeps its price,
+         * capped or not, since that is the price that gets persisted.
+         */
+        private void settle() {
+            while (!changes.isEmpty() && changes.peekLast().rolledBack) {
+                SlotChange undone = changes.removeLast();
+                price = undone.priceBefore;
+                lastSaleAt = undone.lastSaleBefore;
+            }
+            // Nothing before a committed change can be restored any more
+            boolean committedAfter = false;
+            for (Iterator<SlotChange> it = changes.descendingIterator(); it.hasNext(); ) {
+                committedAfter |= it.next().committed;
+                if (committedAfter) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static final class SlotChange {
+        final Slot slot;
+        final BigDecimal quantityChange;
+        final BigDecimal priceBefore;
+        final OffsetDateTime lastSaleBefore;
+        boolean committed;
+        boolean rolledBack;
+
+        SlotChange(Slot slot, BigDecimal quantityChange, BigDecimal priceBefore, OffsetDateTime lastSaleBefore) {
+            this.slot = slot;
+            this.quantityChange = quantityChange;
+            this.priceBefore = priceBefore;
+            this.lastSaleBefore = lastSaleBefore;
+        }
+
+        void commit() {
+            committed = true;
+            slot.settle();
+        }
+
+        void rollBack() {
+            // Stock is additive, so it is returned whatever happened since
+            slot.quantity = slot.quantity.subtract(quantityChange);
+            rolledBack = true;
+            slot.settle();
+        }
+    }
+}
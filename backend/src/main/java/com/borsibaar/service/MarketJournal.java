@@ -0,0 +1,268 @@
+package com.borsibaar.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of market engine changes, one JSON line per ledger row.
+ * <p>
+ * Entries are appended to the active segment file and, with {@code fsync},
+ * forced to disk before the sale is acknowledged. The flusher seals the
+ * active segment, persists its entries to the database and then deletes the
+ * file, so segments left on disk at startup are exactly the changes that may
+ * not have reached the database yet.
+ * <p>
+ * Writes are serialized, but fsyncs are group-committed: an appender waits
+ * for one {@code force} that covers every write made before it started, so
+ * concurrent sales share a single fsync instead of queueing one each.
+ */
+final class MarketJournal implements Closeable {
+
+    private static final String PREFIX = "market-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    private final List<Segment> recovered;
+    // Held while forcing; taken before the write lock whenever both are needed
+    private final Object syncLock = new Object();
+
+    private long sequence;
+    private Path activePath;
+    private FileChannel active;
+    private List<Entry> activeEntries = new ArrayList<>();
+    private long written;
+    private long synced;
+
+    MarketJournal(Path directory, boolean fsync, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(directory);
+            this.recovered = readSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open market journal in " + directory, e);
+        }
+        this.sequence = recovered.isEmpty() ? 0 : sequenceOf(recovered.get(recovered.size() - 1).path());
+        openNext();
+    }
+
+    /**
+     * Segments found on disk when the journal was opened, oldest first.
+     */
+    List<Segment> recovered() {
+        return recovered;
+    }
+
+    void append(List<Entry> entries) {
+        long position = write(entries);
+        if (fsync) {
+            sync(position);
+        }
+    }
+
+    private synchronized long write(List<Entry> entries) {
+        StringBuilder lines = new StringBuilder();
+        for (Entry entry : entries) {
+            try {
+                lines.append(objectMapper.writeValueAsString(entry)).append('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not serialize journal entry", e);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                active.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write market journal", e);
+        }
+        activeEntries.addAll(entries);
+        return ++written;
+    }
+
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                // Covered by a force that started after this write
+                return;
+            }
+            long upTo;
+            FileChannel channel;
+            synchronized (this) {
+                upTo = written;
+                channel = active;
+            }
+            // Appenders keep writing meanwhile; seal() waits for syncLock, so the channel stays open
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not sync market journal", e);
+            }
+            synced = upTo;
+        }
+    }
+
+    /**
+     * Closes the active segment and starts a new one.
+     *
+     * @return the closed segment, or empty if nothing was appended to it
+     */
+    Optional<Segment> seal() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (activeEntries.isEmpty()) {
+                    return Optional.empty();
+                }
+                Segment segment = new Segment(activePath, List.copyOf(activeEntries));
+                // Writes not yet forced would otherwise be synced on the next segment's channel
+                forceActive();
+                synced = written;
+                closeActive();
+                openNext();
+                return Optional.of(segment);
+            }
+        }
+    }
+
+    void delete(Segment segment) {
+        if (segment.path() == null) {
+            // Held in memory only
+            return;
+        }
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete journal segment " + segment.path(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                forceActive();
+                synced = written;
+                closeActive();
+                deleteIfEmpty();
+            }
+        }
+    }
+
+    private void deleteIfEmpty() {
+        try {
+            // Nothing was appended since the last seal
+            if (activeEntries.isEmpty()) {
+                Files.deleteIfExists(activePath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close market journal", e);
+        }
+    }
+
+    private void openNext() {
+        sequence++;
+        activePath = directory.resolve(PREFIX + String.format("%019d", sequence) + SUFFIX);
+        activeEntries = new ArrayList<>();
+        try {
+            active = FileChannel.open(activePath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal segment " + activePath, e);
+        }
+    }
+
+    private void forceActive() {
+        if (!fsync) {
+            return;
+        }
+        try {
+            active.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync journal segment " + activePath, e);
+        }
+    }
+
+    private void closeActive() {
+        try {
+            active.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close journal segment " + activePath, e);
+        }
+    }
+
+    private List<Segment> readSegments() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        for (Path path : paths) {
+            List<Entry> entries = new ArrayList<>();
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                try {
+                    entries.add(objectMapper.readValue(line, Entry.class));
+                } catch (JsonProcessingException e) {
+                    // Torn write at the tail of the segment; the sale was never acknowledged
+                    break;
+                }
+            }
+            if (entries.isEmpty()) {
+                Files.delete(path);
+            } else {
+                segments.add(new Segment(path, entries));
+            }
+        }
+        return segments;
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // No path for entries that could not be journaled and are held in memory only
+    record Segment(Path path, List<Entry> entries) {
+    }
+
+    record Entry(
+            Long organizationId,
+            Long inventoryId,
+            String transactionType,
+            BigDecimal quantityChange,
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter,
+            String referenceId,
+            String notes,
+            UUID createdBy,
+            Long barStationId,
+            OffsetDateTime createdAt) {
+    }
+}
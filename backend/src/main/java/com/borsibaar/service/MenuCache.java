@@ -0,0 +1,127 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches inventory listings per (organization, category), so display screens
+ * polling the same menu are served from memory.
+ * <p>
+ * Each organization has a catalog version that is part of the cache key.
+ * Any change to its categories, products, stock or prices bumps the version
+ * once the change has committed, so every listing of that organization
+ * misses on the next read. A listing still being loaded while the version
+ * moves is stored under the old version and never served. Superseded
+ * entries age out through the size and TTL bounds. Hits and misses are
+ * exported as {@code cache.*} metrics tagged {@code cache=inventory.menu}.
+ * <p>
+ * The version lives in one {@code catalog_versions} row per organization, so
+ * every node derives the same value, and is held in memory between reads.
+ * A bump made here is seen at once; one made through another node is read
+ * back by primary key within {@code app.menu-cache.version-refresh}.
+ */
+@Slf4j
+@Service
+public class MenuCache {
+
+    private final InventoryRepository inventoryRepository;
+    private final TransactionTemplate bumpTransaction;
+    private final long refreshNanos;
+    private final Cache<Key, List<InventoryResponseDto>> listings;
+    private final Map<Long, Version> versions = new ConcurrentHashMap<>();
+
+    public MenuCache(InventoryRepository inventoryRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.menu-cache.max-entries:1000}") long maxEntries,
+            @Value("${app.menu-cache.ttl:PT30S}") Duration ttl,
+            @Value("${app.menu-cache.version-refresh:PT1S}") Duration versionRefresh) {
+        this.inventoryRepository = inventoryRepository;
+        // Listeners run after the change committed, so the bump needs a transaction of its own
+        this.bumpTransaction = new TransactionTemplate(transactionManager);
+        this.bumpTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.refreshNanos = versionRefresh.toNanos();
+        this.listings = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, listings, "inventory.menu");
+    }
+
+    /**
+     * Returns the cached listing, calling {@code loader} on a miss.
+     *
+     * @param categoryId {@code null} for the listing of all categories
+     */
+    public List<InventoryResponseDto> get(Long organizationId, Long categoryId,
+            Supplier<List<InventoryResponseDto>> loader) {
+        long version = version(organizationId);
+        return listings.get(new Key(organizationId, categoryId, version), key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Current version of the organization's catalog, for caches of anything
+     * derived from its categories, products, stock or prices.
+     */
+    public long version(Long organizationId) {
+        Version cached = versions.get(organizationId);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.readAt() < refreshNanos) {
+            return cached.value();
+        }
+        return remember(organizationId, inventoryRepository.catalogVersion(organizationId), now);
+    }
+
+    public void invalidate(Long organizationId) {
+        try {
+            long version = bumpTransaction.execute(status -> inventoryRepository.bumpCatalogVersion(organizationId));
+            remember(organizationId, version, System.nanoTime());
+        } catch (RuntimeException e) {
+            // The change itself has committed; stale listings still age out through the TTL
+            log.warn("Could not bump catalog version of organization {}", organizationId, e);
+            versions.remove(organizationId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        invalidate(event.organizationId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarketMoved(MarketMovedEvent event) {
+        invalidate(event.organizationId());
+    }
+
+    // Versions only move forward, so a read that raced a bump never takes it back
+    private long remember(Long organizationId, long value, long readAt) {
+        return versions.merge(organizationId, new Version(value, readAt),
+                (previous, next) -> new Version(Math.max(previous.value(), next.value()), next.readAt())).value();
+    }
+
+    private record Version(long value, long readAt) {
+    }
+
+    private record Key(Long organizationId, Long categoryId, long version) {
+    }
+}
@@ -3,8 +3,10 @@ package com.borsibaar.service;
 import com.borsibaar.dto.OrganizationRequestDto;
 import com.borsibaar.dto.OrganizationResponseDto;
 import com.borsibaar.entity.Organization;
+import com.borsibaar.event.OrganizationChangedEvent;
 import com.borsibaar.mapper.OrganizationMapper;
 import com.borsibaar.repository.OrganizationRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,10 +20,13 @@ public class OrganizationService {
 
     private final OrganizationRepository organizationRepository;
     private final OrganizationMapper organizationMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public OrganizationService(OrganizationRepository organizationRepository, OrganizationMapper organizationMapper) {
+    public OrganizationService(OrganizationRepository organizationRepository, OrganizationMapper organizationMapper,
+            ApplicationEventPublisher eventPublisher) {
         this.organizationRepository = organizationRepository;
         this.organizationMapper = organizationMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -30,6 +35,7 @@ public class OrganizationService {
         organization.setCreatedAt(OffsetDateTime.now());
         organization.setUpdatedAt(organization.getCreatedAt());
         Organization saved = organizationRepository.save(organization);
+        eventPublisher.publishEvent(new OrganizationChangedEvent(saved.getId()));
         return organizationMapper.toResponse(saved);
     }
 
@@ -56,6 +62,7 @@ public class OrganizationService {
         organizationMapper.updateEntity(organization, request);
         organization.setUpdatedAt(OffsetDateTime.now());
         Organization saved = organizationRepository.save(organization);
+        eventPublisher.publishEvent(new OrganizationChangedEvent(saved.getId()));
         return organizationMapper.toResponse(saved);
     }
 }
@@ -0,0 +1,65 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.dto.PriceCandlesResponseDto;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves a product's price history as OHLC candles from the
+ * {@code price_candles} rollup, so neither the chart payload nor the read
+ * grows with the ledger.
+ * <p>
+ * A response has at most {@link #MAX_CANDLES} candles, chosen by
+ * {@link BucketRange}.
+ */
+@Service
+@RequiredArgsConstructor
+public class PriceCandleService {
+
+    static final int MAX_CANDLES = 300;
+    static final Duration DEFAULT_RANGE = Duration.ofHours(1);
+
+    private static final BucketRange INTERVALS = new BucketRange("Interval", List.of(
+            Map.entry("1m", Duration.ofMinutes(1)),
+            Map.entry("5m", Duration.ofMinutes(5)),
+            Map.entry("1h", Duration.ofHours(1))), MAX_CANDLES, DEFAULT_RANGE);
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+
+    /**
+     * @param interval {@code 1m}, {@code 5m} or {@code 1h}; {@code null} for {@code 1m}
+     * @param from     start of the range; {@code null} for one hour before {@code to}
+     * @param to       end of the range, exclusive; {@code null} for now
+     */
+    @Transactional(readOnly = true)
+    public PriceCandlesResponseDto getCandles(Long productId, Long organizationId, String interval,
+            OffsetDateTime from, OffsetDateTime to) {
+        BucketRange.Selection selection = INTERVALS.select(interval, from, to);
+
+        Inventory inventory = inventoryRepository
+                .findByOrganizationIdAndProductId(organizationId, productId)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "No inventory found for this product"));
+
+        List<PriceCandleDto> candles = inventoryTransactionRepository.findCandles(inventory.getId(),
+                selection.start(), selection.end(), selection.bucket());
+        return new PriceCandlesResponseDto(selection.size(),
+                selection.start().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                selection.end().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                candles);
+    }
+}
@@ -6,6 +6,7 @@ import com.borsibaar.entity.Category;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
+import com.borsibaar.event.InventoryChangedEvent;
 import com.borsibaar.mapper.ProductMapper;
 import com.borsibaar.repository.CategoryRepository;
 import com.borsibaar.repository.InventoryRepository;
@@ -13,6 +14,7 @@ import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -31,6 +33,7 @@ public class ProductService {
     private final UserRepository userRepository;
     private final InventoryRepository inventoryRepository;
     private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public ProductResponseDto create(ProductRequestDto request, Long orgId) {
@@ -63,6 +66,7 @@ public class ProductService {
 
         // Automatically create inventory record with 0 quantity
         createInitialInventory(saved, orgId);
+        eventPublisher.publishEvent(new InventoryChangedEvent(orgId));
 
         ProductResponseDto base = productMapper.toResponse(saved);
         return new ProductResponseDto(
@@ -125,5 +129,8 @@ public class ProductService {
         product.setActive(false);
         product.setUpdatedAt(OffsetDateTime.now());
         productRepository.save(product);
+        // Delta sync reports the deactivation through the inventory row
+        inventoryRepository.markProductChanged(product.getId());
+        eventPublisher.publishEvent(new InventoryChangedEvent(product.getOrganizationId()));
     }
 }
@@ -0,0 +1,157 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.OfflineSaleRequestDto;
+import com.borsibaar.dto.SaleBatchResponseDto;
+import com.borsibaar.dto.SaleBatchResultDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Product;
+import com.borsibaar.exception.BadRequestException;
+import com.borsibaar.exception.NotFoundException;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Replays sales queued by a station while it was offline.
+ * <p>
+ * Sales are applied in order, {@code chunkSize} per transaction. Each sale
+ * runs under its own savepoint so a rejected sale (unknown product, not
+ * enough stock, ...) is reported and skipped without undoing the rest of
+ * the chunk. Products for the whole chunk are loaded in one query and the
+ * ledger rows of the chunk are written as one JDBC batch.
+ * <p>
+ * A sale with a {@code clientSaleId} is stored under that Idempotency-Key,
+ * so replaying the same queue again after a dropped response reports
+ * duplicates instead of selling twice. If the same client sale is committed
+ * concurrently by another request, the unique key fails the current chunk.
+ * The failed insert leaves the persistence context unusable, so the chunk is
+ * rolled back and replayed once in a new transaction, which finds the
+ * committed key up front and reports the sale as a duplicate.
+ */
+@Service
+public class SaleBatchService {
+
+    static final String CREATED = "CREATED";
+    static final String DUPLICATE = "DUPLICATE";
+    static final String FAILED = "FAILED";
+
+    private final SalesService salesService;
+    private final SaleIdempotencyService saleIdempotencyService;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final SalesRollupService salesRollupService;
+    private final TransactionTemplate chunkTransaction;
+    private final TransactionTemplate saleSavepoint;
+    private final int chunkSize;
+
+    public SaleBatchService(SalesService salesService,
+            SaleIdempotencyService saleIdempotencyService,
+            InventoryTransactionRepository inventoryTransactionRepository,
+            SalesRollupService salesRollupService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.sales.batch.chunk-size:50}") int chunkSize) {
+        this.salesService = salesService;
+        this.saleIdempotencyService = saleIdempotencyService;
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.salesRollupService = salesRollupService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.saleSavepoint = new TransactionTemplate(transactionManager);
+        this.saleSavepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.chunkSize = chunkSize;
+    }
+
+    public SaleBatchResponseDto replay(List<OfflineSaleRequestDto> sales, UUID userId, Long organizationId) {
+        List<SaleBatchResultDto> results = new ArrayList<>(sales.size());
+        for (int from = 0; from < sales.size(); from += chunkSize) {
+            int start = from;
+            List<OfflineSaleRequestDto> chunk = sales.subList(from, Math.min(from + chunkSize, sales.size()));
+            List<SaleBatchResultDto> chunkResults;
+            try {
+                chunkResults = chunkTransaction.execute(status -> replayChunk(chunk, start, userId, organizationId));
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent upload of one of these sales committed first
+                chunkResults = chunkTransaction.execute(status -> replayChunk(chunk, start, userId, organizationId));
+            }
+            results.addAll(chunkResults);
+        }
+
+        int created = 0;
+        int duplicates = 0;
+        for (SaleBatchResultDto result : results) {
+            if (CREATED.equals(result.status())) {
+                created++;
+            } else if (DUPLICATE.equals(result.status())) {
+                duplicates++;
+            }
+        }
+        return new SaleBatchResponseDto(created, duplicates, results.size() - created - duplicates, results);
+    }
+
+    private List<SaleBatchResultDto> replayChunk(List<OfflineSaleRequestDto> chunk, int offset,
+            UUID userId, Long organizationId) {
+        Set<Long> productIds = new HashSet<>();
+        for (OfflineSaleRequestDto offlineSale : chunk) {
+            productIds.addAll(SalesService.productIds(offlineSale.sale().items()));
+        }
+        Map<Long, Product> products = salesService.loadProducts(productIds);
+
+        List<SaleBatchResultDto> results = new ArrayList<>(chunk.size());
+        List<InventoryTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(replaySale(chunk.get(i), offset + i, products, userId, organizationId, transactions));
+        }
+
+        // Ledger rows of every accepted sale in the chunk, as one JDBC batch
+        inventoryTransactionRepository.insertAll(transactions);
+        salesRollupService.merge(transactions);
+        return results;
+    }
+
+    private SaleBatchResultDto replaySale(OfflineSaleRequestDto offlineSale, int index, Map<Long, Product> products,
+            UUID userId, Long organizationId, List<InventoryTransaction> transactions) {
+        String clientSaleId = offlineSale.clientSaleId();
+        try {
+            if (clientSaleId != null) {
+                Optional<SaleResponseDto> previous = saleIdempotencyService.findProcessed(organizationId, clientSaleId);
+                if (previous.isPresent()) {
+                    return new SaleBatchResultDto(index, clientSaleId, DUPLICATE, previous.get(), null);
+                }
+            }
+
+            List<InventoryTransaction> saleTransactions = new ArrayList<>();
+            SaleResponseDto response = saleSavepoint.execute(status -> {
+                SaleResponseDto sale = salesService.executeSale(offlineSale.sale(), products, userId,
+                        organizationId, offlineSale.soldAt(), saleTransactions);
+                if (clientSaleId != null) {
+                    try {
+                        saleIdempotencyService.record(organizationId, clientSaleId, sale);
+                    } catch (RuntimeException e) {
+                        // The savepoint rolls back, so the sale must not go ahead anywhere
+                        salesService.cancelSale(sale);
+                        throw e;
+                    }
+                }
+                return sale;
+            });
+            transactions.addAll(saleTransactions);
+            return new SaleBatchResultDto(index, clientSaleId, CREATED, response, null);
+        } catch (ResponseStatusException e) {
+            return new SaleBatchResultDto(index, clientSaleId, FAILED, null, e.getReason());
+        } catch (BadRequestException | NotFoundException e) {
+            return new SaleBatchResultDto(index, clientSaleId, FAILED, null, e.getMessage());
+        }
+    }
+}
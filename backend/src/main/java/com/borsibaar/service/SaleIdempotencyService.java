@@ -0,0 +1,169 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.SaleIdempotencyKey;
+import com.borsibaar.exception.BadRequestException;
+import com.borsibaar.repository.SaleIdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Makes {@code POST /api/sales} safe to retry.
+ * <p>
+ * Responses are remembered per (organization, Idempotency-Key) in a bounded
+ * in-memory cache, so a retry is answered without entering the sale
+ * transaction. The same response is also stored in
+ * {@code sale_idempotency_keys} inside the sale transaction, which covers
+ * the window after a restart and makes a concurrent duplicate fail on the
+ * unique key instead of selling twice. The cache only learns a response
+ * once the transaction that stored or read it has committed, so a sale that
+ * rolls back is never answered from memory.
+ */
+@Service
+public class SaleIdempotencyService {
+
+    static final int MAX_KEY_LENGTH = 100;
+
+    private final SaleIdempotencyKeyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration window;
+    private final Cache<CacheKey, SaleResponseDto> recent;
+
+    public SaleIdempotencyService(SaleIdempotencyKeyRepository repository,
+            ObjectMapper objectMapper,
+            @Value("${app.sales.idempotency.window:PT24H}") Duration window,
+            @Value("${app.sales.idempotency.max-entries:10000}") long maxEntries) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.window = window;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /**
+     * Runs {@code sale} unless a sale with the same key was already processed
+     * for this organization, in which case the original response is returned.
+     */
+    public SaleResponseDto processOnce(Long organizationId, String idempotencyKey,
+            Supplier<SaleResponseDto> sale) {
+        validateKey(idempotencyKey);
+
+        Optional<SaleResponseDto> previous = findPrevious(organizationId, idempotencyKey);
+        if (previous.isPresent()) {
+            return previous.get();
+        }
+
+        try {
+            // record() caches the response once the sale commits
+            return sale.get();
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same key committed first
+            return findPrevious(organizationId, idempotencyKey).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Returns the original response if a sale with this key was already
+     * processed for the organization within the window.
+     */
+    public Optional<SaleResponseDto> findProcessed(Long organizationId, String idempotencyKey) {
+        validateKey(idempotencyKey);
+        return findPrevious(organizationId, idempotencyKey);
+    }
+
+    /**
+     * Stores the response of a sale under its key. Must run inside the sale
+     * transaction so the key is only persisted if the sale commits.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long organizationId, String idempotencyKey, SaleResponseDto response) {
+        OffsetDateTime now = OffsetDateTime.now();
+        // A reused key outside the window is a new sale; drop its row if not purged yet
+        repository.deleteKeyCreatedBefore(organizationId, idempotencyKey, now.minus(window));
+
+        SaleIdempotencyKey entry = new SaleIdempotencyKey();
+        entry.setOrganizationId(organizationId);
+        entry.setIdempotencyKey(idempotencyKey);
+        entry.setSaleId(response.saleId());
+        entry.setResponse(serialize(response));
+        entry.setCreatedAt(now);
+        // Flush now so a duplicate key fails before the sale commits
+        repository.saveAndFlush(entry);
+        remember(new CacheKey(organizationId, idempotencyKey), response);
+    }
+
+    @Transactional
+    public int purgeExpired() {
+        return repository.deleteCreatedBefore(OffsetDateTime.now().minus(window));
+    }
+
+    private Optional<SaleResponseDto> findPrevious(Long organizationId, String idempotencyKey) {
+        CacheKey cacheKey = new CacheKey(organizationId, idempotencyKey);
+        SaleResponseDto cached = recent.getIfPresent(cacheKey);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<SaleResponseDto> stored = repository
+                .findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(
+                        organizationId, idempotencyKey, OffsetDateTime.now().minus(window))
+                .map(entry -> deserialize(entry.getResponse()));
+        stored.ifPresent(response -> remember(cacheKey, response));
+        return stored;
+    }
+
+    private void remember(CacheKey cacheKey, SaleResponseDto response) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recent.put(cacheKey, response);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recent.put(cacheKey, response);
+            }
+        });
+    }
+
+    private static void validateKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(
+                    "Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    private String serialize(SaleResponseDto response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize sale response", e);
+        }
+    }
+
+    private SaleResponseDto deserialize(String json) {
+        try {
+            return objectMapper.readValue(json, SaleResponseDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read stored sale response", e);
+        }
+    }
+
+    private record CacheKey(Long organizationId, String idempotencyKey) {
+    }
+}
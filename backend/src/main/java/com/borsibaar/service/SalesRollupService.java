@@ -0,0 +1,39 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Keeps the ledger rollups in step with the ledger: the last-sale index,
+ * {@code price_candles}, {@code sales_counters} and {@code sales_heatmap}.
+ * <p>
+ * Every path that batch-inserts ledger rows calls {@link #merge} right
+ * after, in the same transaction, so a rollup never counts a row that
+ * rolled back.
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+
+    /**
+     * Merges ledger rows just inserted into every rollup.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void merge(List<InventoryTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        inventoryTransactionRepository.touchLastSale(transactions);
+        inventoryTransactionRepository.mergeCandles(transactions);
+        inventoryTransactionRepository.mergeSalesCounters(transactions);
+        inventoryTransactionRepository.mergeHeatmap(transactions);
+    }
+}
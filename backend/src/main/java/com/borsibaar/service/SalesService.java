@@ -5,10 +5,16 @@ import com.borsibaar.entity.Category;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
+import com.borsibaar.event.MarketMovedEvent;
 import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryStockRepository.StockDecrement;
+import com.borsibaar.repository.InventoryStockRepository.StockUpdate;
 import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.util.ReferenceIdGenerator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,8 +23,13 @@ import org.springframework.web.server.ResponseStatusException;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -27,100 +38,188 @@ public class SalesService {
 
         private final InventoryRepository inventoryRepository;
         private final InventoryTransactionRepository inventoryTransactionRepository;
+        private final SalesRollupService salesRollupService;
         private final ProductRepository productRepository;
+        private final ReferenceIdGenerator referenceIdGenerator;
+        private final SaleIdempotencyService saleIdempotencyService;
+        private final ObjectProvider<MarketEngine> marketEngine;
+        private final ApplicationEventPublisher eventPublisher;
 
         @Transactional
         public SaleResponseDto processSale(SaleRequestDto request, UUID userId, Long organizationId) {
+                return processSale(request, userId, organizationId, null);
+        }
+
+        /**
+         * Processes a sale and, when {@code idempotencyKey} is given, stores the
+         * response under that key in the same transaction.
+         */
+        @Transactional
+        public SaleResponseDto processSale(SaleRequestDto request, UUID userId, Long organizationId,
+                        String idempotencyKey) {
+                Map<Long, Product> products = loadProducts(productIds(request.items()));
+
+                List<InventoryTransaction> transactions = new ArrayList<>(request.items().size());
+                SaleResponseDto response = executeSale(request, products, userId, organizationId,
+                                OffsetDateTime.now(), transactions);
+
+                // Write all ledger rows as one JDBC batch
+                inventoryTransactionRepository.insertAll(transactions);
+                salesRollupService.merge(transactions);
+
+                if (idempotencyKey != null) {
+                        saleIdempotencyService.record(organizationId, idempotencyKey, response);
+                }
+                return response;
+        }
+
+        /**
+         * Validates the basket against {@code products} and decrements stock for
+         * each line. Ledger rows are appended to {@code transactions} for the
+         * caller to insert; must run inside a transaction. With the market engine
+         * enabled the sale is applied there and persisted by its write-behind instead.
+         */
+        SaleResponseDto executeSale(SaleRequestDto request, Map<Long, Product> products, UUID userId,
+                        Long organizationId, OffsetDateTime soldAt, List<InventoryTransaction> transactions) {
+                MarketEngine engine = marketEngine.getIfAvailable();
+                if (engine != null) {
+                        return engine.sell(request, userId, organizationId, soldAt);
+                }
+
                 // Generate unique sale reference ID
-                String saleId = "SALE-" + System.currentTimeMillis();
+                String saleId = referenceIdGenerator.next("SALE");
+
+                // Validate the whole basket before touching any stock;
+                // stock itself is checked atomically per line in processSaleItem
+                validateBasket(request.items(), products, organizationId);
 
-                List<SaleItemResponseDto> saleItems = new ArrayList<>();
+                // Decrement in inventory id order, so concurrent baskets lock rows in the
+                // same order and cannot deadlock; lines of one product keep their order
+                List<Integer> lockOrder = new ArrayList<>(request.items().size());
+                for (int i = 0; i < request.items().size(); i++) {
+                        lockOrder.add(i);
+                }
+                lockOrder.sort(Comparator.comparing(
+                                i -> products.get(request.items().get(i).productId()).getInventory().getId()));
+
+                SaleItemResponseDto[] saleItems = new SaleItemResponseDto[request.items().size()];
                 BigDecimal totalAmount = BigDecimal.ZERO;
 
                 // Process each item in the sale
-                for (SaleItemRequestDto item : request.items()) {
-                        SaleItemResponseDto saleItem = processSaleItem(item, userId, organizationId, saleId,
-                                        request.barStationId());
-                        saleItems.add(saleItem);
+                for (int i : lockOrder) {
+                        SaleItemRequestDto item = request.items().get(i);
+                        Product product = products.get(item.productId());
+                        SaleItemResponseDto saleItem = processSaleItem(item, product, userId, saleId,
+                                        request.barStationId(), soldAt, transactions);
+                        saleItems[i] = saleItem;
                         totalAmount = totalAmount.add(saleItem.totalPrice());
                 }
+                eventPublisher.publishEvent(new MarketMovedEvent(organizationId));
 
                 return new SaleResponseDto(
                                 saleId,
-                                saleItems,
+                                List.of(saleItems),
                                 totalAmount,
                                 request.notes(),
-                                OffsetDateTime.now());
+                                soldAt);
         }
 
-        private SaleItemResponseDto processSaleItem(SaleItemRequestDto item, UUID userId, Long organizationId,
-                        String saleId, Long barStationId) {
-                // Verify product exists and belongs to organization
-                Product product = productRepository.findById(item.productId())
-                                .orElseThrow(() -> new ResponseStatusException(
-                                                HttpStatus.NOT_FOUND, "Product not found: " + item.productId()));
+        /**
+         * Undoes a sale made by {@link #executeSale} whose savepoint is rolled
+         * back. Database changes roll back with the savepoint; a sale applied by
+         * the market engine is taken back out of its book.
+         */
+        void cancelSale(SaleResponseDto sale) {
+                MarketEngine engine = marketEngine.getIfAvailable();
+                if (engine != null) {
+                        engine.cancel(sale.saleId());
+                }
+        }
 
-                if (!product.getOrganizationId().equals(organizationId)) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.FORBIDDEN, "Product does not belong to your organization");
+        /**
+         * Loads products with their inventory, category and organization in one
+         * query, keyed by id. Unknown ids are simply absent from the map.
+         */
+        Map<Long, Product> loadProducts(Collection<Long> productIds) {
+                Map<Long, Product> products = new HashMap<>();
+                if (marketEngine.getIfAvailable() != null) {
+                        // The market engine validates against its own book
+                        return products;
+                }
+                for (Product product : productRepository.findAllWithInventoryByIdIn(productIds)) {
+                        products.put(product.getId(), product);
                 }
+                return products;
+        }
 
-                if (!product.isActive()) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.BAD_REQUEST, "Product is not active: " + product.getName());
+        static Set<Long> productIds(List<SaleItemRequestDto> items) {
+                Set<Long> productIds = new HashSet<>();
+                for (SaleItemRequestDto item : items) {
+                        productIds.add(item.productId());
                 }
+                return productIds;
+        }
 
-                // Get inventory for this product
-                /*
-                 * Inventory inventory = inventoryRepository
-                 * .findByOrganizationIdAndProductId(organizationId, item.productId())
-                 * .orElseThrow(() -> new ResponseStatusException(
-                 * HttpStatus.NOT_FOUND, "No inventory found for product: " +
-                 * product.getName()));
-                 */
-                Inventory inventory = Optional.ofNullable(product.getInventory())
-                                .orElseThrow(() -> new ResponseStatusException(
-                                                HttpStatus.NOT_FOUND,
-                                                "No inventory found for product: " + product.getName()));
+        private void validateBasket(List<SaleItemRequestDto> items, Map<Long, Product> products,
+                        Long organizationId) {
+                for (SaleItemRequestDto item : items) {
+                        // Verify product exists and belongs to organization
+                        Product product = products.get(item.productId());
+                        if (product == null) {
+                                throw new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND, "Product not found: " + item.productId());
+                        }
 
-                // Check stock availability
-                BigDecimal oldQuantity = inventory.getQuantity();
-                BigDecimal newQuantity = oldQuantity.subtract(item.quantity());
+                        if (!product.getOrganizationId().equals(organizationId)) {
+                                throw new ResponseStatusException(
+                                                HttpStatus.FORBIDDEN, "Product does not belong to your organization");
+                        }
 
-                if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.BAD_REQUEST,
-                                        "Insufficient stock for " + product.getName() +
-                                                        ". Available: " + oldQuantity + ", Requested: "
-                                                        + item.quantity());
+                        if (!product.isActive()) {
+                                throw new ResponseStatusException(
+                                                HttpStatus.BAD_REQUEST, "Product is not active: " + product.getName());
+                        }
+
+                        if (product.getInventory() == null) {
+                                throw new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND,
+                                                "No inventory found for product: " + product.getName());
+                        }
                 }
+        }
 
-                // Calculate pricing
-                BigDecimal priceBeforeSale = Optional.ofNullable(inventory.getAdjustedPrice())
-                                .orElse(product.getBasePrice());
-                BigDecimal totalPrice = priceBeforeSale.multiply(item.quantity());
+        private SaleItemResponseDto processSaleItem(SaleItemRequestDto item, Product product, UUID userId,
+                        String saleId, Long barStationId, OffsetDateTime soldAt,
+                        List<InventoryTransaction> transactions) {
+                Inventory inventory = product.getInventory();
 
-                BigDecimal priceAfterSale = priceBeforeSale;
+                // Dynamic pricing raises the price by the organization step, capped at max price
+                BigDecimal priceStep = null;
                 Category category = product.getCategory();
                 if (category != null && category.isDynamicPricing()) {
-                        priceAfterSale = priceBeforeSale.add(product.getOrganization().getPriceIncreaseStep());
-                        if (product.getMaxPrice() != null && priceAfterSale.compareTo(product.getMaxPrice()) > 0) {
-                                priceAfterSale = product.getMaxPrice();
-                        }
+                        priceStep = product.getOrganization().getPriceIncreaseStep();
                 }
 
+                // Check stock and update quantity/price in one conditional statement
+                StockDecrement decrement = inventoryRepository
+                                .decrementStock(inventory.getId(), item.quantity(), priceStep);
+                if (!decrement.applied()) {
+                        throw new ResponseStatusException(
+                                        HttpStatus.BAD_REQUEST,
+                                        "Insufficient stock for " + product.getName() +
+                                                        ". Available: " + decrement.available()
+                                                        + ", Requested: " + item.quantity());
+                }
+                StockUpdate update = decrement.update();
 
-                // Update inventory
-                inventory.setQuantity(newQuantity);
-                inventory.setUpdatedAt(OffsetDateTime.now());
-                inventory.setAdjustedPrice(priceAfterSale);
-
-                inventory = inventoryRepository.save(inventory);
+                BigDecimal priceBeforeSale = update.priceBefore();
+                BigDecimal totalPrice = priceBeforeSale.multiply(item.quantity());
 
                 // Create sale transaction
-                createSaleTransaction(inventory, item.quantity(),
-                                oldQuantity, newQuantity, priceBeforeSale, priceAfterSale,
-                                saleId, userId, barStationId);
+                transactions.add(createSaleTransaction(inventory, item.quantity(),
+                                update.quantityBefore(), update.quantityAfter(),
+                                priceBeforeSale, update.priceAfter(),
+                                saleId, userId, barStationId, soldAt));
 
                 return new SaleItemResponseDto(
                                 item.productId(),
@@ -130,12 +229,13 @@ public class SalesService {
                                 totalPrice);
         }
 
-        private void createSaleTransaction(Inventory inventory, BigDecimal quantity,
+        private InventoryTransaction createSaleTransaction(Inventory inventory, BigDecimal quantity,
                         BigDecimal quantityBefore, BigDecimal quantityAfter,
                         BigDecimal priceBefore, BigDecimal priceAfter,
-                        String saleId, UUID userId, Long barStationId) {
+                        String saleId, UUID userId, Long barStationId, OffsetDateTime createdAt) {
                 InventoryTransaction transaction = new InventoryTransaction();
                 transaction.setInventory(inventory);
+                transaction.setInventoryId(inventory.getId());
                 transaction.setTransactionType("SALE");
                 transaction.setQuantityChange(quantity.negate()); // Negative for sales
                 transaction.setQuantityBefore(quantityBefore);
@@ -146,7 +246,7 @@ public class SalesService {
                 transaction.setNotes("POS Sale");
                 transaction.setCreatedBy(userId);
                 transaction.setBarStationId(barStationId);
-                transaction.setCreatedAt(OffsetDateTime.now());
-                inventoryTransactionRepository.save(transaction);
+                transaction.setCreatedAt(createdAt);
+                return transaction;
         }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package com.borsibaar.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel for large numbers of recurring timeouts.
+ * <p>
+ * Time is divided into ticks of {@code tickDuration}; a timeout is placed in
+ * the bucket of its deadline tick (modulo the wheel size) together with the
+ * number of full rotations still to wait. Scheduling and cancelling are O(1)
+ * regardless of how many timeouts are pending, and a single worker thread
+ * visits one bucket per tick. Deadlines are accurate to one tick.
+ * <p>
+ * Expired tasks are handed to {@code taskExecutor}, so a slow task never
+ * delays the wheel itself.
+ */
+public class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<List<WheelTimeout>> wheel;
+    private final Queue<WheelTimeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Executor taskExecutor;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+
+    private long tick;
+    private volatile Thread worker;
+
+    public HashedWheelTimer(Duration tickDuration, int wheelSize, Executor taskExecutor) {
+        this(tickDuration, wheelSize, taskExecutor, System::nanoTime);
+    }
+
+    HashedWheelTimer(Duration tickDuration, int wheelSize, Executor taskExecutor, LongSupplier nanoClock) {
+        if (tickDuration.isZero() || tickDuration.isNegative()) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        // Power of two, so the bucket index is a mask instead of a modulo
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = tickDuration.toNanos();
+        this.mask = size - 1;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.taskExecutor = taskExecutor;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Runs {@code task} once, no earlier than {@code delay} from now.
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        long deadline = nanoClock.getAsLong() - startNanos + Math.max(0, delay.toNanos());
+        // Round up: a task never fires before its deadline
+        long deadlineTick = (deadline + tickNanos - 1) / tickNanos;
+        WheelTimeout timeout = new WheelTimeout(task, deadlineTick);
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = Thread.ofPlatform().daemon().name("wheel-timer").start(this::run);
+    }
+
+    public synchronized void stop() {
+        Thread current = worker;
+        worker = null;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    /**
+     * Processes every tick up to and including {@code targetTick}. Called by the
+     * worker thread; exposed for tests that drive the wheel by hand.
+     */
+    void advanceTo(long targetTick) {
+        while (tick <= targetTick) {
+            transferIncoming();
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    private void run() {
+        while (worker == Thread.currentThread()) {
+            long nextTickAt = startNanos + tick * tickNanos;
+            long sleepNanos = nextTickAt - nanoClock.getAsLong();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            advanceTo((nanoClock.getAsLong() - startNanos) / tickNanos);
+        }
+    }
+
+    private void transferIncoming() {
+        WheelTimeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Overdue timeouts go into the current bucket
+            long dueTick = Math.max(timeout.deadlineTick, tick);
+            timeout.remainingRounds = (dueTick - tick) / wheel.size();
+            wheel.get((int) (dueTick & mask)).add(timeout);
+        }
+    }
+
+    private void expire(List<WheelTimeout> bucket) {
+        Iterator<WheelTimeout> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            WheelTimeout timeout = timeouts.next();
+            if (timeout.cancelled) {
+                timeouts.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                timeouts.remove();
+                taskExecutor.execute(timeout.task);
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    public interface Timeout {
+        void cancel();
+    }
+
+    private static final class WheelTimeout implements Timeout {
+        final Runnable task;
+        final long deadlineTick;
+        long remainingRounds;
+        volatile boolean cancelled;
+
+        WheelTimeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.borsibaar.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates unique, time-ordered reference IDs for inventory transactions
+ * (e.g. {@code SALE-...}, {@code REDUCE-...}).
+ * <p>
+ * IDs follow the Snowflake layout: 41 bits of milliseconds since
+ * {@link #EPOCH_MILLIS}, 10 bits of node id and a 12-bit per-millisecond
+ * sequence, so every backend node can hand out 4096 IDs per millisecond
+ * without coordination. The timestamp and sequence are kept in a single
+ * {@link AtomicLong} and advanced with compare-and-set, so callers never block.
+ * If the sequence runs out, or the wall clock moves backwards, the generator
+ * keeps counting on the last used millisecond instead of waiting, which keeps
+ * IDs strictly increasing per node.
+ */
+@Component
+public class ReferenceIdGenerator {
+
+    /** 2025-01-01T00:00:00Z */
+    static final long EPOCH_MILLIS = 1735689600000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong state = new AtomicLong();
+
+    @Autowired
+    public ReferenceIdGenerator(@Value("${app.node-id:0}") long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    ReferenceIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("app.node-id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the next ID as a number.
+     */
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastMillis = last >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                // Sequence exhausted for this millisecond: borrow the next one
+                next = (lastMillis + 1) << SEQUENCE_BITS;
+            }
+
+            if (state.compareAndSet(last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Returns the next ID as a reference string, e.g. {@code SALE-81272380354994176}.
+     */
+    public String next(String prefix) {
+        return prefix + '-' + nextId();
+    }
+}
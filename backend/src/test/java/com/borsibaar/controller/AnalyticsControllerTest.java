@@ -0,0 +1,100 @@
+package com.borsibaar.controller;
+
+import com.borsibaar.dto.SalesHeatmapCellDto;
+import com.borsibaar.dto.SalesHeatmapResponseDto;
+import com.borsibaar.entity.Role;
+import com.borsibaar.entity.User;
+import com.borsibaar.service.AnalyticsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class AnalyticsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private AnalyticsService analyticsService;
+
+    @MockitoBean
+    private ClientRegistrationRepository clientRegistrationRepository;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getHeatmap_ReturnsCellsForCurrentOrganization() throws Exception {
+        setAuth(userWithOrg(3L));
+        OffsetDateTime from = OffsetDateTime.parse("2026-03-01T18:00:00+02:00");
+        OffsetDateTime to = OffsetDateTime.parse("2026-03-01T22:00:00+02:00");
+        when(analyticsService.getHeatmap(3L, "hour", from, to)).thenReturn(new SalesHeatmapResponseDto("hour",
+                "2026-03-01T18:00:00+02:00", "2026-03-01T22:00:00+02:00",
+                List.of(new SalesHeatmapCellDto("2026-03-01T17:00:00Z", 7L, "Main", 2L, "Beer",
+                        new BigDecimal("4"), new BigDecimal("14.00")))));
+
+        mockMvc.perform(get("/api/analytics/heatmap")
+                        .param("granularity", "hour")
+                        .param("from", "2026-03-01T18:00:00+02:00")
+                        .param("to", "2026-03-01T22:00:00+02:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("hour"))
+                .andExpect(jsonPath("$.cells", hasSize(1)))
+                .andExpect(jsonPath("$.cells[0].barStationName").value("Main"))
+                .andExpect(jsonPath("$.cells[0].volume").value(4))
+                .andExpect(jsonPath("$.cells[0].revenue").value(14.00));
+    }
+
+    @Test
+    void getHeatmap_UnknownGranularity_BadRequest() throws Exception {
+        setAuth(userWithOrg(3L));
+        when(analyticsService.getHeatmap(3L, "minute", null, null))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Granularity must be one of hour, day"));
+
+        mockMvc.perform(get("/api/analytics/heatmap").param("granularity", "minute"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static User userWithOrg(Long orgId) {
+        Role role = new Role();
+        role.setId(1L);
+        role.setName("USER");
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("user@test.com");
+        user.setName("Test User");
+        user.setOrganizationId(orgId);
+        user.setRole(role);
+        return user;
+    }
+
+    private static void setAuth(User user) {
+        Authentication auth = new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList());
+        SecurityContextHolder.getContext().setAuthentication(auth);
+    }
+}
@@ -4,9 +4,11 @@ import com.borsibaar.dto.CategoryRequestDto;
 import com.borsibaar.dto.CategoryResponseDto;
 import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
+import com.borsibaar.repository.InventoryRepository;
 import com.borsibaar.service.CategoryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -46,6 +48,14 @@ class CategoryControllerTest {
     @MockitoBean
     private ClientRegistrationRepository clientRegistrationRepository;
 
+    @MockitoBean
+    private InventoryRepository inventoryRepository;
+
+    @BeforeEach
+    void setUp() {
+            when(inventoryRepository.catalogVersion(any())).thenReturn(1L);
+    }
+
     @AfterEach
     void tearDown() {
         SecurityContextHolder.clearContext();
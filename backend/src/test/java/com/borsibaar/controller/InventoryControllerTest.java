@@ -3,9 +3,13 @@ package com.borsibaar.controller;
 import com.borsibaar.dto.*;
 import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
+import com.borsibaar.repository.InventoryRepository;
 import com.borsibaar.service.InventoryService;
+import com.borsibaar.service.InventoryStreamHub;
+import com.borsibaar.service.PriceCandleService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -17,6 +21,8 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
@@ -26,6 +32,7 @@ import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -44,9 +51,23 @@ class InventoryControllerTest {
         @MockitoBean
         private InventoryService inventoryService;
 
+        @MockitoBean
+        private InventoryStreamHub inventoryStreamHub;
+
+        @MockitoBean
+        private PriceCandleService priceCandleService;
+
         @MockitoBean
         private ClientRegistrationRepository clientRegistrationRepository;
 
+        @MockitoBean
+        private InventoryRepository inventoryRepository;
+
+        @BeforeEach
+        void setUp() {
+                when(inventoryRepository.catalogVersion(any())).thenReturn(1L);
+        }
+
         @AfterEach
         void tearDown() {
                 SecurityContextHolder.clearContext();
@@ -109,6 +130,54 @@ class InventoryControllerTest {
                 verify(inventoryService).getByOrganization(99L, 7L);
         }
 
+        @Test
+        void getOrganizationInventory_MatchingETag_NotModifiedWithoutLoading() throws Exception {
+                when(inventoryService.getByOrganization(77L, null)).thenReturn(List.of());
+
+                String eTag = mockMvc.perform(get("/api/inventory").param("organizationId", "77"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().exists("ETag"))
+                                .andReturn().getResponse().getHeader("ETag");
+
+                mockMvc.perform(get("/api/inventory").param("organizationId", "77").header("If-None-Match", eTag))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", eTag));
+
+                verify(inventoryService, times(1)).getByOrganization(77L, null);
+        }
+
+        @Test
+        void getInventoryChanges_ReturnsDeltaAndCursor() throws Exception {
+                when(inventoryService.getChanges(99L, 740L)).thenReturn(new InventoryChangesResponseDto(752L,
+                                List.of(new InventoryResponseDto(1L, 99L, 10L, "Cola", BigDecimal.ONE, BigDecimal.TEN,
+                                                null, BigDecimal.TEN, null, null, OffsetDateTime.now().toString())),
+                                List.of(11L)));
+
+                mockMvc.perform(get("/api/inventory/changes").param("organizationId", "99").param("since", "740"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.version").value(752))
+                                .andExpect(jsonPath("$.changed", hasSize(1)))
+                                .andExpect(jsonPath("$.changed[0].productName").value("Cola"))
+                                .andExpect(jsonPath("$.removedProductIds[0]").value(11));
+        }
+
+        @Test
+        void streamInventory_ResumesFromLastEventId() throws Exception {
+                SseEmitter emitter = new SseEmitter();
+                when(inventoryStreamHub.subscribe(99L, 760L)).thenReturn(emitter);
+
+                MvcResult result = mockMvc.perform(get("/api/inventory/stream").param("organizationId", "99")
+                                .param("since", "740").header("Last-Event-ID", "760"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                emitter.complete();
+
+                mockMvc.perform(asyncDispatch(result))
+                                .andExpect(header().string("X-Accel-Buffering", "no"));
+
+                verify(inventoryStreamHub).subscribe(99L, 760L);
+        }
+
         @Test
         void getProductInventory_DelegatesToService() throws Exception {
                 User user = userWithOrg(5L, "USER");
@@ -168,24 +237,48 @@ class InventoryControllerTest {
         void getTransactionHistory_ReturnsList() throws Exception {
                 User user = userWithOrg(4L, "USER");
                 setAuth(user);
-                when(inventoryService.getTransactionHistory(40L, 4L)).thenReturn(List.of(
+                when(inventoryService.getTransactionHistory(40L, 4L, "2026-03-01T20:15:30.123+02:00,981", 50))
+                                .thenReturn(List.of(
                                 new InventoryTransactionResponseDto(1L, 99L, "SALE", BigDecimal.ONE.negate(),
                                                 BigDecimal.TEN, new BigDecimal("9"), BigDecimal.TEN, BigDecimal.TEN,
                                                 "ref", "n", UUID.randomUUID().toString(), "Alice", "a@b.c",
                                                 OffsetDateTime.now().toString())));
 
-                mockMvc.perform(get("/api/inventory/product/{productId}/history", 40L))
+                mockMvc.perform(get("/api/inventory/product/{productId}/history", 40L)
+                                .param("before", "2026-03-01T20:15:30.123+02:00,981")
+                                .param("limit", "50"))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$", hasSize(1)));
 
-                verify(inventoryService).getTransactionHistory(40L, 4L);
+                verify(inventoryService).getTransactionHistory(40L, 4L, "2026-03-01T20:15:30.123+02:00,981", 50);
+        }
+
+        @Test
+        void getPriceCandles_ParsesRangeAndDelegates() throws Exception {
+                OffsetDateTime from = OffsetDateTime.parse("2026-03-01T18:00:00+02:00");
+                OffsetDateTime to = OffsetDateTime.parse("2026-03-01T20:00:00+02:00");
+                when(priceCandleService.getCandles(40L, 99L, "5m", from, to)).thenReturn(
+                                new PriceCandlesResponseDto("5m", from.toString(), to.toString(), List.of(
+                                                new PriceCandleDto("2026-03-01T18:05:00+02:00", BigDecimal.ONE,
+                                                                BigDecimal.TEN, BigDecimal.ONE, BigDecimal.TEN,
+                                                                new BigDecimal("4")))));
+
+                mockMvc.perform(get("/api/inventory/product/{productId}/candles", 40L)
+                                .param("organizationId", "99")
+                                .param("interval", "5m")
+                                .param("from", "2026-03-01T18:00:00+02:00")
+                                .param("to", "2026-03-01T20:00:00+02:00"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.interval").value("5m"))
+                                .andExpect(jsonPath("$.candles", hasSize(1)))
+                                .andExpect(jsonPath("$.candles[0].volume").value(4));
         }
 
         @Test
         void getUserSalesStats_ReturnsList() throws Exception {
                 User user = userWithOrg(6L, "USER");
                 setAuth(user);
-                when(inventoryService.getUserSalesStats(6L)).thenReturn(List.of(
+                when(inventoryService.getUserSalesStats(6L, null, null)).thenReturn(List.of(
                                 new UserSalesStatsResponseDto(UUID.randomUUID().toString(), "U", "u@x", 2L,
                                                 new BigDecimal("12.00"), 1L, "S")));
 
@@ -193,21 +286,25 @@ class InventoryControllerTest {
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$", hasSize(1)));
 
-                verify(inventoryService).getUserSalesStats(6L);
+                verify(inventoryService).getUserSalesStats(6L, null, null);
         }
 
         @Test
         void getStationSalesStats_ReturnsList() throws Exception {
                 User user = userWithOrg(7L, "USER");
                 setAuth(user);
-                when(inventoryService.getStationSalesStats(7L)).thenReturn(List.of(
+                OffsetDateTime from = OffsetDateTime.parse("2026-01-01T18:00:00Z");
+                OffsetDateTime to = OffsetDateTime.parse("2026-01-02T04:00:00Z");
+                when(inventoryService.getStationSalesStats(7L, from, to)).thenReturn(List.of(
                                 new StationSalesStatsResponseDto(1L, "Main", 3L, new BigDecimal("30.00"))));
 
-                mockMvc.perform(get("/api/inventory/station-sales-stats"))
+                mockMvc.perform(get("/api/inventory/station-sales-stats")
+                                .param("from", "2026-01-01T18:00:00Z")
+                                .param("to", "2026-01-02T04:00:00Z"))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$", hasSize(1)));
 
-                verify(inventoryService).getStationSalesStats(7L);
+                verify(inventoryService).getStationSalesStats(7L, from, to);
         }
 
         private static User userWithOrg(Long orgId, String roleName) {
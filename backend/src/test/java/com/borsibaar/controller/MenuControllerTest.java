@@ -0,0 +1,112 @@
+package com.borsibaar.controller;
+
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.dto.MenuCategoryDto;
+import com.borsibaar.entity.Role;
+import com.borsibaar.entity.User;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.service.InventoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class MenuControllerTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @MockitoBean
+        private InventoryService inventoryService;
+
+        @MockitoBean
+        private ClientRegistrationRepository clientRegistrationRepository;
+
+        @MockitoBean
+        private InventoryRepository inventoryRepository;
+
+        @BeforeEach
+        void setUp() {
+                when(inventoryRepository.catalogVersion(any())).thenReturn(1L);
+        }
+
+        @AfterEach
+        void tearDown() {
+                SecurityContextHolder.clearContext();
+        }
+
+        @Test
+        void getMenu_ReturnsCategoriesWithProducts() throws Exception {
+                when(inventoryService.getMenu(31L)).thenReturn(List.of(
+                                new MenuCategoryDto(1L, "Beer", true, List.of(new InventoryResponseDto(5L, 31L, 10L,
+                                                "Lager", new BigDecimal("12"), new BigDecimal("3.50"), null,
+                                                new BigDecimal("3.00"), new BigDecimal("2.00"), new BigDecimal("5.00"),
+                                                null))),
+                                new MenuCategoryDto(2L, "Food", false, List.of())));
+
+                mockMvc.perform(get("/api/menu").param("organizationId", "31"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().exists("ETag"))
+                                .andExpect(jsonPath("$", hasSize(2)))
+                                .andExpect(jsonPath("$[0].name").value("Beer"))
+                                .andExpect(jsonPath("$[0].products[0].productName").value("Lager"))
+                                .andExpect(jsonPath("$[0].products[0].unitPrice").value(3.50))
+                                .andExpect(jsonPath("$[0].products[0].maxPrice").value(5.00))
+                                .andExpect(jsonPath("$[1].products", hasSize(0)));
+        }
+
+        @Test
+        void getMenu_UsesUserOrg_WhenNoQueryParam() throws Exception {
+                User user = User.builder()
+                                .id(UUID.randomUUID())
+                                .email("user@test.com")
+                                .name("Test User")
+                                .organizationId(32L)
+                                .role(Role.builder().id(1L).name("USER").build())
+                                .build();
+                SecurityContextHolder.getContext().setAuthentication(
+                                new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList()));
+                when(inventoryService.getMenu(32L)).thenReturn(List.of());
+
+                mockMvc.perform(get("/api/menu")).andExpect(status().isOk());
+
+                verify(inventoryService).getMenu(32L);
+        }
+
+        @Test
+        void getMenu_MatchingETag_NotModifiedWithoutLoading() throws Exception {
+                when(inventoryService.getMenu(33L)).thenReturn(List.of());
+
+                String eTag = mockMvc.perform(get("/api/menu").param("organizationId", "33"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+
+                mockMvc.perform(get("/api/menu").param("organizationId", "33").header("If-None-Match", eTag))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", eTag));
+
+                verify(inventoryService, times(1)).getMenu(33L);
+        }
+}
@@ -1,11 +1,17 @@
 package com.borsibaar.controller;
 
+import com.borsibaar.dto.OfflineSaleRequestDto;
+import com.borsibaar.dto.SaleBatchRequestDto;
+import com.borsibaar.dto.SaleBatchResponseDto;
+import com.borsibaar.dto.SaleBatchResultDto;
 import com.borsibaar.dto.SaleItemRequestDto;
 import com.borsibaar.dto.SaleItemResponseDto;
 import com.borsibaar.dto.SaleRequestDto;
 import com.borsibaar.dto.SaleResponseDto;
 import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
+import com.borsibaar.service.SaleBatchService;
+import com.borsibaar.service.SaleIdempotencyService;
 import com.borsibaar.service.SalesService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
@@ -29,6 +35,8 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -47,6 +55,12 @@ class SalesControllerTest {
     @MockitoBean
     private SalesService salesService;
 
+    @MockitoBean
+    private SaleIdempotencyService saleIdempotencyService;
+
+    @MockitoBean
+    private SaleBatchService saleBatchService;
+
     @MockitoBean
     private ClientRegistrationRepository clientRegistrationRepository;
 
@@ -76,6 +90,69 @@ class SalesControllerTest {
         verify(salesService).processSale(any(SaleRequestDto.class), any(UUID.class), anyLong());
     }
 
+    @Test
+    void processSale_WithIdempotencyKey_DelegatesToIdempotencyService() throws Exception {
+        User user = userWithOrg(1L, "USER");
+        setAuth(user);
+
+        SaleRequestDto req = new SaleRequestDto(List.of(new SaleItemRequestDto(10L, new BigDecimal("1"))), null, 5L);
+        SaleResponseDto resp = new SaleResponseDto("SALE-1", List.of(), new BigDecimal("3.00"), null, OffsetDateTime.now());
+        when(saleIdempotencyService.processOnce(eq(1L), eq("tablet-7-42"), any())).thenReturn(resp);
+
+        mockMvc.perform(post("/api/sales")
+                        .header("Idempotency-Key", "tablet-7-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.saleId").value("SALE-1"));
+
+        verify(saleIdempotencyService).processOnce(eq(1L), eq("tablet-7-42"), any());
+        verify(salesService, never()).processSale(any(SaleRequestDto.class), any(UUID.class), anyLong());
+    }
+
+    @Test
+    void processSaleBatch_ReturnsPerSaleResults() throws Exception {
+        User user = userWithOrg(1L, "USER");
+        setAuth(user);
+
+        OffsetDateTime soldAt = OffsetDateTime.parse("2026-01-10T21:15:00Z");
+        SaleRequestDto sale = new SaleRequestDto(List.of(new SaleItemRequestDto(10L, new BigDecimal("1"))), null, 5L);
+        SaleBatchRequestDto req = new SaleBatchRequestDto(List.of(
+                new OfflineSaleRequestDto("tablet-7-1", soldAt, sale),
+                new OfflineSaleRequestDto("tablet-7-2", soldAt, sale)));
+        SaleResponseDto created = new SaleResponseDto("SALE-1", List.of(), new BigDecimal("3.00"), null, soldAt);
+        SaleBatchResponseDto resp = new SaleBatchResponseDto(1, 0, 1, List.of(
+                new SaleBatchResultDto(0, "tablet-7-1", "CREATED", created, null),
+                new SaleBatchResultDto(1, "tablet-7-2", "FAILED", null, "Insufficient stock for Cola")));
+        when(saleBatchService.replay(any(), eq(user.getId()), eq(1L))).thenReturn(resp);
+
+        mockMvc.perform(post("/api/sales/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results[0].sale.saleId").value("SALE-1"))
+                .andExpect(jsonPath("$.results[1].error").value("Insufficient stock for Cola"));
+
+        verify(saleBatchService).replay(eq(req.sales()), eq(user.getId()), eq(1L));
+    }
+
+    @Test
+    void processSaleBatch_MissingSaleTime_Returns400() throws Exception {
+        setAuth(userWithOrg(1L, "USER"));
+
+        SaleRequestDto sale = new SaleRequestDto(List.of(new SaleItemRequestDto(10L, new BigDecimal("1"))), null, 5L);
+        SaleBatchRequestDto req = new SaleBatchRequestDto(List.of(new OfflineSaleRequestDto("tablet-7-1", null, sale)));
+
+        mockMvc.perform(post("/api/sales/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest());
+
+        verify(saleBatchService, never()).replay(any(), any(), any());
+    }
+
     private static User userWithOrg(Long orgId, String roleName) {
         Role role = new Role();
         role.setId(1L);
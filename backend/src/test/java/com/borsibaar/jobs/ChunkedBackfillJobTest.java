@@ -0,0 +1,66 @@
+package com.borsibaar.jobs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedBackfillJobTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Integer> chunkSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+    }
+
+    @Test
+    void backfill_RunsChunksUntilNoneLeft_EachInItsOwnTransaction() {
+        ChunkedBackfillJob job = job(chunkSize -> chunkSizes.size() < 3);
+
+        assertEquals(2, job.backfill());
+
+        assertEquals(List.of(500, 500, 500), chunkSizes);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void backfill_Failure_StopsAndKeepsCommittedChunks() {
+        ChunkedBackfillJob job = job(chunkSize -> {
+            if (chunkSizes.size() > 1) {
+                throw new IllegalStateException("connection lost");
+            }
+            return true;
+        });
+
+        assertEquals(1, job.backfill());
+
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    private ChunkedBackfillJob job(IntPredicate chunks) {
+        return new ChunkedBackfillJob("test rollup", transactionManager, 500) {
+            @Override
+            protected boolean mergeNextChunk(int chunkSize) {
+                chunkSizes.add(chunkSize);
+                return chunks.test(chunkSize);
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.MarketEngine;
+import com.borsibaar.util.ReferenceIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceCorrectionJobTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private ObjectProvider<MarketEngine> marketEngine;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PriceCorrectionJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new PriceCorrectionJob(inventoryRepository, productRepository, new ReferenceIdGenerator(0),
+                marketEngine, meterRegistry, eventPublisher, transactionManager, Duration.ofSeconds(50));
+    }
+
+    @Test
+    void correctOrganization_RunsOneSetBasedDecayOverTheWindow() {
+        when(inventoryRepository.decayPrices(eq(1L), any(), startsWith("REDUCE-"))).thenReturn(3);
+
+        OffsetDateTime before = OffsetDateTime.now().minusSeconds(30);
+        int updated = job.correctOrganization(1L, Duration.ofSeconds(30), System.nanoTime());
+
+        assertEquals(3, updated);
+        ArgumentCaptor<OffsetDateTime> since = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(inventoryRepository).decayPrices(eq(1L), since.capture(), any());
+        assertFalse(since.getValue().isBefore(before));
+        verifyNoInteractions(productRepository);
+        verify(eventPublisher).publishEvent(new MarketMovedEvent(1L));
+        assertEquals(1, meterRegistry.get("price_correction.tick.duration").timer().count());
+        assertEquals(1, meterRegistry.get("price_correction.org.lag").timer().count());
+        // Aggregated: no series per organization
+        assertTrue(meterRegistry.getMeters().stream().allMatch(meter -> meter.getId().getTag("organization") == null));
+    }
+
+    @Test
+    void correctOrganization_DecayRunsInTransactionBoundedByTimeout() {
+        job.correctOrganization(1L, Duration.ofSeconds(30), System.nanoTime());
+
+        verify(transactionManager).getTransaction(argThat(definition -> definition.getTimeout() == 50));
+    }
+
+    @Test
+    void correctOrganization_Failure_IsCountedNotThrown() {
+        when(inventoryRepository.decayPrices(eq(1L), any(), any())).thenThrow(new IllegalStateException("boom"));
+
+        int updated = job.correctOrganization(1L, Duration.ofMinutes(1), System.nanoTime());
+
+        assertEquals(0, updated);
+        assertEquals(1.0, meterRegistry.get("price_correction.org.failures").counter().count());
+    }
+
+    @Test
+    void correctOrganization_MarketEngineEnabled_DelegatesTicksToEngine() {
+        MarketEngine engine = mock(MarketEngine.class);
+        when(marketEngine.getIfAvailable()).thenReturn(engine);
+        when(productRepository.findIdleDynamicProducts(eq(2L), any())).thenReturn(List.of());
+
+        job.correctOrganization(2L, Duration.ofMinutes(1), System.nanoTime());
+
+        verify(engine).applyPriceTicks(eq(List.of()), any());
+        verify(inventoryRepository, never()).decayPrices(any(), any(), any());
+    }
+}
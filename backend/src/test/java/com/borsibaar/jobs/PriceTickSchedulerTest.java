@@ -0,0 +1,142 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.entity.Organization;
+import com.borsibaar.event.OrganizationChangedEvent;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.util.HashedWheelTimer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceTickSchedulerTest {
+
+    @Mock
+    private OrganizationRepository organizationRepository;
+    @Mock
+    private PriceCorrectionJob priceCorrectionJob;
+    @Mock
+    private HashedWheelTimer timer;
+    @Mock
+    private HashedWheelTimer.Timeout timeout;
+
+    private PriceTickScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(timer.schedule(any(), any())).thenReturn(timeout);
+        scheduler = new PriceTickScheduler(organizationRepository, priceCorrectionJob, timer);
+    }
+
+    @Test
+    void start_SchedulesFirstTickPerOrganizationWithinInterval() {
+        when(organizationRepository.findAll()).thenReturn(List.of(organization(1L, 60), organization(2L, 30)));
+
+        scheduler.start();
+
+        verify(timer).start();
+        ArgumentCaptor<Duration> delays = ArgumentCaptor.forClass(Duration.class);
+        verify(timer, times(2)).schedule(any(), delays.capture());
+        assertTrue(delays.getAllValues().get(0).compareTo(Duration.ofSeconds(60)) <= 0);
+        assertTrue(delays.getAllValues().get(1).compareTo(Duration.ofSeconds(30)) <= 0);
+    }
+
+    @Test
+    void onOrganizationChanged_KnownOrganization_DoesNotScheduleTwice() {
+        Organization organization = organization(1L, 60);
+        scheduler.register(organization);
+        organization.setTickIntervalSeconds(10);
+        when(organizationRepository.findById(1L)).thenReturn(Optional.of(organization));
+
+        scheduler.onOrganizationChanged(new OrganizationChangedEvent(1L));
+
+        verify(timer, times(1)).schedule(any(), any());
+    }
+
+    @Test
+    void tick_RunsCorrectionAndReschedulesWithCurrentInterval() {
+        Organization organization = organization(1L, 60);
+        scheduler.register(organization);
+        ArgumentCaptor<Runnable> firstTick = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Duration> delays = ArgumentCaptor.forClass(Duration.class);
+        verify(timer).schedule(firstTick.capture(), delays.capture());
+
+        // Interval changed before the tick fires: next tick uses the new one
+        organization.setTickIntervalSeconds(10);
+        scheduler.register(organization);
+        firstTick.getValue().run();
+
+        verify(priceCorrectionJob).correctOrganization(eq(1L), eq(Duration.ofSeconds(10)), anyLong());
+        // Due one interval after the previous due time, not after the run
+        verify(timer, times(2)).schedule(any(), delays.capture());
+        Duration firstDelay = delays.getAllValues().get(0);
+        Duration nextDelay = delays.getAllValues().get(2);
+        assertTrue(nextDelay.compareTo(firstDelay.plusSeconds(10)) <= 0);
+        assertTrue(nextDelay.compareTo(firstDelay.plusSeconds(9)) > 0);
+    }
+
+    @Test
+    void onOrganizationChanged_DeletedOrganization_CancelsItsTick() {
+        scheduler.register(organization(1L, 60));
+        ArgumentCaptor<Runnable> tick = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer).schedule(tick.capture(), any());
+        when(organizationRepository.findById(1L)).thenReturn(Optional.empty());
+
+        scheduler.onOrganizationChanged(new OrganizationChangedEvent(1L));
+        // A tick already handed to the executor finds nothing left to do
+        tick.getValue().run();
+
+        verify(timeout).cancel();
+        verifyNoInteractions(priceCorrectionJob);
+        verify(timer, times(1)).schedule(any(), any());
+    }
+
+    @Test
+    void resync_CancelsOrganizationsNoLongerInTheTable() {
+        scheduler.register(organization(1L, 60));
+        scheduler.register(organization(2L, 60));
+        when(organizationRepository.findAll()).thenReturn(List.of(organization(2L, 60), organization(3L, 60)));
+
+        scheduler.resync();
+
+        verify(timeout, times(1)).cancel();
+        // Organization 3 was created through another node
+        verify(timer, times(3)).schedule(any(), any());
+    }
+
+    @Test
+    void initialDelay_IsStableAndSpreadsSequentialIds() {
+        Duration interval = Duration.ofSeconds(60);
+        Set<Long> seconds = new HashSet<>();
+        for (long id = 1; id <= 20; id++) {
+            Duration delay = PriceTickScheduler.initialDelay(id, interval);
+            assertFalse(delay.isNegative());
+            assertTrue(delay.compareTo(interval) < 0);
+            assertEquals(delay, PriceTickScheduler.initialDelay(id, interval));
+            seconds.add(delay.toSeconds());
+        }
+        assertTrue(seconds.size() >= 15, "first ticks should not bunch together: " + seconds);
+    }
+
+    private static Organization organization(Long id, int tickIntervalSeconds) {
+        Organization organization = new Organization();
+        organization.setId(id);
+        organization.setTickIntervalSeconds(tickIntervalSeconds);
+        return organization;
+    }
+}
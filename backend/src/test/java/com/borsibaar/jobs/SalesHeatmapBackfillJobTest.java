@@ -0,0 +1,34 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesHeatmapBackfillJobTest {
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void backfill_MergesChunksThroughTheRepository() {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        when(inventoryTransactionRepository.backfillHeatmap(500)).thenReturn(true, false);
+        SalesHeatmapBackfillJob job = new SalesHeatmapBackfillJob(inventoryTransactionRepository, transactionManager, 500);
+
+        assertEquals(1, job.backfill());
+
+        verify(inventoryTransactionRepository, times(2)).backfillHeatmap(500);
+    }
+}
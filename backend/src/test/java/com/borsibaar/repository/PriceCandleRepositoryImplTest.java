@@ -0,0 +1,114 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.PriceCandleRepositoryImpl.Candle;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceCandleRepositoryImplTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void candlesOf_MergesRowsOfAMinuteInOrder() {
+        List<Candle> candles = PriceCandleRepositoryImpl.candlesOf(List.of(
+                row(1L, "SALE", "-2", "3.00", "3.10", 10),
+                row(1L, "ADJUSTMENT", "0", "3.10", "2.90", 50),
+                row(1L, "SALE", "-1", "2.90", "3.40", 55)), InventoryTransaction::getInventoryId);
+
+        Candle minute = candles.get(0);
+        assertEquals(60, minute.key().bucketSeconds());
+        assertEquals(T0, minute.key().bucketStart());
+        assertEquals(new BigDecimal("3.00"), minute.open());
+        assertEquals(new BigDecimal("3.40"), minute.high());
+        assertEquals(new BigDecimal("2.90"), minute.low());
+        assertEquals(new BigDecimal("3.40"), minute.close());
+        assertEquals(new BigDecimal("3"), minute.volume());
+    }
+
+    @Test
+    void candlesOf_RollsCoarserLevelsUpFromFinerOnes() {
+        List<Candle> candles = PriceCandleRepositoryImpl.candlesOf(List.of(
+                row(1L, "SALE", "-1", "3.00", "3.20", 10),
+                row(1L, "SALE", "-1", "3.20", "3.50", 130),
+                row(1L, "SALE", "-2", "3.50", "3.30", 400)), InventoryTransaction::getInventoryId);
+
+        // Three minutes, two five-minute buckets, one hour
+        assertEquals(List.of(60L, 60L, 60L, 300L, 300L, 3600L),
+                candles.stream().map(candle -> candle.key().bucketSeconds()).toList());
+        Candle hour = candles.get(5);
+        assertEquals(T0, hour.key().bucketStart());
+        assertEquals(new BigDecimal("3.00"), hour.open());
+        assertEquals(new BigDecimal("3.50"), hour.high());
+        assertEquals(new BigDecimal("3.30"), hour.close());
+        assertEquals(new BigDecimal("4"), hour.volume());
+        assertEquals(T0.plusMinutes(5), candles.get(4).key().bucketStart());
+    }
+
+    @Test
+    void candlesOf_SkipsStockOnlyRows() {
+        List<Candle> candles = PriceCandleRepositoryImpl.candlesOf(List.of(
+                row(1L, "PURCHASE", "5", "3.00", "3.00", 10),
+                row(1L, "ADJUSTMENT", "-1", "3.00", "3.00", 20)), InventoryTransaction::getInventoryId);
+
+        assertTrue(candles.isEmpty());
+    }
+
+    @Test
+    void candlesOf_SameInstant_LaterRowCloses() {
+        List<Candle> candles = PriceCandleRepositoryImpl.candlesOf(List.of(
+                row(1L, "SALE", "-1", "3.00", "3.10", 10),
+                row(1L, "SALE", "-1", "3.10", "3.20", 10)), InventoryTransaction::getInventoryId);
+
+        assertEquals(new BigDecimal("3.00"), candles.get(0).open());
+        assertEquals(new BigDecimal("3.20"), candles.get(0).close());
+    }
+
+    @Test
+    void candlesOf_OrdersByLevelThenInventory() {
+        List<Candle> candles = PriceCandleRepositoryImpl.candlesOf(List.of(
+                row(2L, "SALE", "-1", "3.00", "3.10", 10),
+                row(1L, "SALE", "-1", "4.00", "4.10", 10)), InventoryTransaction::getInventoryId);
+
+        assertEquals(List.of(1L, 2L, 1L, 2L, 1L, 2L),
+                candles.stream().map(candle -> candle.key().inventoryId()).toList());
+    }
+
+    @Test
+    void merge_EarlierCandleKeepsOpenLaterCandleCloses() {
+        Candle early = PriceCandleRepositoryImpl.candlesOf(List.of(row(1L, "SALE", "-1", "3.00", "3.10", 10)),
+                InventoryTransaction::getInventoryId).get(0);
+        Candle late = PriceCandleRepositoryImpl.candlesOf(List.of(row(1L, "SALE", "-1", "3.10", "2.80", 40)),
+                InventoryTransaction::getInventoryId).get(0);
+
+        // Either order of arrival gives the same candle
+        assertEquals(early.merge(late), late.merge(early));
+        assertEquals(new BigDecimal("3.00"), early.merge(late).open());
+        assertEquals(new BigDecimal("2.80"), early.merge(late).close());
+    }
+
+    @Test
+    void bucketStart_AlignsToEpochWhateverTheOffset() {
+        OffsetDateTime at = OffsetDateTime.parse("2026-01-01T02:37:12+02:00");
+
+        assertEquals(OffsetDateTime.parse("2026-01-01T00:35:00Z"), PriceCandleRepositoryImpl.bucketStart(at, 300));
+        assertEquals(OffsetDateTime.parse("2026-01-01T00:00:00Z"), PriceCandleRepositoryImpl.bucketStart(at, 3600));
+    }
+
+    private static InventoryTransaction row(Long inventoryId, String type, String quantityChange, String priceBefore,
+            String priceAfter, int second) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventoryId(inventoryId);
+        transaction.setTransactionType(type);
+        transaction.setQuantityChange(new BigDecimal(quantityChange));
+        transaction.setPriceBefore(new BigDecimal(priceBefore));
+        transaction.setPriceAfter(new BigDecimal(priceAfter));
+        transaction.setCreatedAt(T0.plusSeconds(second));
+        return transaction;
+    }
+}
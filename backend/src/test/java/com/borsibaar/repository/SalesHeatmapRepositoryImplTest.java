@@ -0,0 +1,85 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.SalesHeatmapRepositoryImpl.Cell;
+import com.borsibaar.repository.SalesHeatmapRepositoryImpl.Placement;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesHeatmapRepositoryImplTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2026-01-01T22:00:00Z");
+    private static final Map<Long, Placement> PLACEMENTS = Map.of(
+            1L, new Placement(10L, 3L),
+            2L, new Placement(10L, 3L),
+            5L, new Placement(10L, 4L));
+
+    @Test
+    void cellsOf_SumsVolumeAndRevenuePerCategoryAtTheChargedPrice() {
+        List<Cell> cells = SalesHeatmapRepositoryImpl.cellsOf(List.of(
+                row(1L, "SALE", "-2", "3.00", 7L, 0),
+                row(2L, "SALE", "-1", "4.50", 7L, 60)), InventoryTransaction::getInventoryId, PLACEMENTS);
+
+        assertEquals(1, cells.size());
+        Cell cell = cells.get(0);
+        assertEquals(10L, cell.organizationId());
+        assertEquals(3L, cell.categoryId());
+        assertEquals(0, new BigDecimal("3").compareTo(cell.quantity()));
+        assertEquals(0, new BigDecimal("10.50").compareTo(cell.revenue()));
+    }
+
+    @Test
+    void cellsOf_KeysByUtcHourStationAndCategoryInMergeOrder() {
+        List<Cell> cells = SalesHeatmapRepositoryImpl.cellsOf(List.of(
+                row(5L, "SALE", "-1", "2.00", 7L, 0),
+                row(1L, "SALE", "-1", "3.00", 7L, 0),
+                row(1L, "SALE", "-1", "3.00", null, 0),
+                // 01:30 local in UTC+3 is 22:30 UTC, the same hour
+                row(1L, "SALE", "-1", "3.00", 7L, 1800, "+03:00"),
+                row(1L, "SALE", "-1", "3.00", 7L, 3600)), InventoryTransaction::getInventoryId, PLACEMENTS);
+
+        assertEquals(4, cells.size());
+        assertNull(cells.get(0).barStationId());
+        assertEquals(T0, cells.get(0).bucketStart());
+        assertEquals(7L, cells.get(1).barStationId());
+        assertEquals(3L, cells.get(1).categoryId());
+        assertEquals(0, new BigDecimal("2").compareTo(cells.get(1).quantity()));
+        assertEquals(4L, cells.get(2).categoryId());
+        assertEquals(T0.plusHours(1), cells.get(3).bucketStart());
+    }
+
+    @Test
+    void cellsOf_IgnoresRowsOtherThanSalesAndUnplacedInventories() {
+        List<Cell> cells = SalesHeatmapRepositoryImpl.cellsOf(List.of(
+                row(1L, "ADJUSTMENT", "5", "3.00", 7L, 0),
+                row(1L, "PURCHASE", "10", "3.00", 7L, 0),
+                row(9L, "SALE", "-1", "3.00", 7L, 0)), InventoryTransaction::getInventoryId, PLACEMENTS);
+
+        assertTrue(cells.isEmpty());
+    }
+
+    private static InventoryTransaction row(Long inventoryId, String type, String quantityChange, String price,
+            Long stationId, int second) {
+        return row(inventoryId, type, quantityChange, price, stationId, second, "Z");
+    }
+
+    private static InventoryTransaction row(Long inventoryId, String type, String quantityChange, String price,
+            Long stationId, int second, String offset) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventoryId(inventoryId);
+        transaction.setTransactionType(type);
+        transaction.setQuantityChange(new BigDecimal(quantityChange));
+        transaction.setPriceBefore(new BigDecimal(price));
+        transaction.setPriceAfter(new BigDecimal(price));
+        transaction.setBarStationId(stationId);
+        transaction.setCreatedAt(T0.plusSeconds(second).withOffsetSameInstant(ZoneOffset.of(offset)));
+        return transaction;
+    }
+}
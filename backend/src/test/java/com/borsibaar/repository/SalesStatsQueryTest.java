@@ -0,0 +1,275 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.BarStation;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.SalesStatsRepository.StationSalesTotals;
+import com.borsibaar.repository.SalesStatsRepository.UserSalesTotals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the sales statistics queries against the test H2 database, in
+ * PostgreSQL mode, with a schema generated from the entities.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SalesStatsQueryTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2026-01-01T20:00:00Z");
+    private static final OffsetDateTime FROM = T0.minusDays(1);
+    private static final OffsetDateTime TO = T0.plusDays(1);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private InventoryTransactionRepository transactionRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private Long organizationId;
+    private Long otherOrganizationId;
+    private Long mainBar;
+    private Long terrace;
+    private Category fixedPrices;
+    private Category dynamicPrices;
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        // As created by changeset 022; the schema itself is generated from the entities
+        jdbcTemplate.getJdbcTemplate().execute("""
+                CREATE INDEX IF NOT EXISTS idx_inventory_trans_type_created
+                ON inventory_transactions (transaction_type, created_at)
+                """);
+        organizationId = organization("Baar").getId();
+        otherOrganizationId = organization("Other").getId();
+        mainBar = station(organizationId, "Main").getId();
+        terrace = station(organizationId, "Terrace").getId();
+        fixedPrices = category(organizationId, "Food", false);
+        dynamicPrices = category(organizationId, "Beer", true);
+    }
+
+    @Test
+    void ledgerRevenue_MatchesBasePriceRevenueOnFixedPriceCategories() {
+        Inventory chips = inventory(product(fixedPrices, "Chips", "2.50"));
+        Inventory nuts = inventory(product(fixedPrices, "Nuts", "3.20"));
+        // Fixed-price products always sell at their base price
+        sale(chips, "o1", "-2", "2.50", alice, mainBar, 0);
+        sale(nuts, "o1", "-1", "3.20", alice, mainBar, 0);
+        sale(chips, "o2", "-3", "2.50", alice, terrace, 60);
+        sale(nuts, "o3", "-0.5", "3.20", bob, mainBar, 120);
+        sale(chips, "o4", "-1", "2.50", bob, null, 180);
+        entityManager.flush();
+
+        List<InventoryTransaction> sales = saleRows();
+        Map<String, BigDecimal> expectedByUser = legacyRevenueBy(sales,
+                t -> t.getCreatedBy() + "|" + t.getBarStationId());
+        Map<String, BigDecimal> expectedByStation = legacyRevenueBy(
+                sales.stream().filter(t -> t.getBarStationId() != null).toList(),
+                t -> String.valueOf(t.getBarStationId()));
+
+        List<UserSalesTotals> byUser = transactionRepository.findUserSalesTotals(organizationId, FROM, TO);
+        assertEquals(expectedByUser.size(), byUser.size());
+        for (UserSalesTotals row : byUser) {
+            assertEquals(0, expectedByUser.get(row.getUserId() + "|" + row.getBarStationId())
+                    .compareTo(row.getTotalRevenue()), "revenue of " + row.getUserId());
+        }
+
+        List<StationSalesTotals> byStation = transactionRepository.findStationSalesTotals(organizationId, FROM, TO);
+        assertEquals(expectedByStation.size(), byStation.size());
+        for (StationSalesTotals row : byStation) {
+            assertEquals(0, expectedByStation.get(String.valueOf(row.getBarStationId()))
+                    .compareTo(row.getTotalRevenue()), "revenue of station " + row.getBarStationId());
+        }
+    }
+
+    @Test
+    void ledgerRevenue_UsesThePriceEachSaleWasChargedAt() {
+        Inventory lager = inventory(product(dynamicPrices, "Lager", "4.00"));
+        sale(lager, "o1", "-2", "4.00", alice, mainBar, 0);
+        sale(lager, "o2", "-1", "4.40", alice, mainBar, 60);
+        sale(lager, "o3", "-1", "3.60", alice, mainBar, 120);
+        entityManager.flush();
+
+        UserSalesTotals row = transactionRepository.findUserSalesTotals(organizationId, FROM, TO).get(0);
+        assertEquals(0, new BigDecimal("16.00").compareTo(row.getTotalRevenue()));
+    }
+
+    @Test
+    void salesCounts_CountDistinctReferencesBusiestFirst() {
+        Inventory chips = inventory(product(fixedPrices, "Chips", "2.50"));
+        Inventory nuts = inventory(product(fixedPrices, "Nuts", "3.20"));
+        sale(chips, "o1", "-1", "2.50", alice, mainBar, 0);
+        sale(nuts, "o1", "-1", "3.20", alice, mainBar, 0);
+        sale(chips, "o2", "-1", "2.50", bob, terrace, 60);
+        sale(chips, "o3", "-1", "2.50", bob, terrace, 120);
+        sale(chips, "o4", "-1", "2.50", bob, terrace, 180);
+        // Not sales, or sold elsewhere: ignored
+        row(chips, "ADJUSTMENT", "r1", "5", "2.50", alice, mainBar, 240);
+        Category otherFood = category(otherOrganizationId, "Food", false);
+        sale(inventory(product(otherFood, "Chips", "2.50")), "x1", "-1", "2.50", alice, mainBar, 0);
+        entityManager.flush();
+
+        List<UserSalesTotals> byUser = transactionRepository.findUserSalesTotals(organizationId, FROM, TO);
+        assertEquals(2, byUser.size());
+        assertEquals(bob, byUser.get(0).getUserId());
+        assertEquals(3L, byUser.get(0).getSalesCount());
+        assertEquals(alice, byUser.get(1).getUserId());
+        assertEquals(1L, byUser.get(1).getSalesCount());
+
+        List<StationSalesTotals> byStation = transactionRepository.findStationSalesTotals(organizationId, FROM, TO);
+        assertEquals(List.of(terrace, mainBar), byStation.stream().map(StationSalesTotals::getBarStationId).toList());
+        assertEquals(0, new BigDecimal("5.70").compareTo(byStation.get(1).getTotalRevenue()));
+    }
+
+    @Test
+    void windowedTotals_OnlyCountSalesWithinTheWindow() {
+        Inventory chips = inventory(product(fixedPrices, "Chips", "2.50"));
+        sale(chips, "o1", "-1", "2.50", alice, mainBar, -1);
+        sale(chips, "o2", "-2", "2.50", alice, mainBar, 0);
+        sale(chips, "o3", "-1", "2.50", bob, terrace, 3599);
+        sale(chips, "o4", "-1", "2.50", bob, terrace, 3600);
+        entityManager.flush();
+
+        OffsetDateTime end = T0.plusHours(1);
+        List<UserSalesTotals> byUser = transactionRepository.findUserSalesTotals(organizationId, T0, end);
+        assertEquals(2, byUser.size());
+        assertEquals(1L, byUser.get(0).getSalesCount());
+        assertEquals(0, new BigDecimal("7.50").compareTo(
+                byUser.stream().map(UserSalesTotals::getTotalRevenue).reduce(BigDecimal.ZERO, BigDecimal::add)));
+
+        List<StationSalesTotals> byStation = transactionRepository.findStationSalesTotals(organizationId, T0, end);
+        assertEquals(2, byStation.size());
+        assertTrue(byStation.stream().allMatch(row -> row.getSalesCount() == 1L));
+    }
+
+    @Test
+    void windowedTotals_ReadTheWindowThroughTheTypeAndTimeIndex() {
+        MapSqlParameterSource window = new MapSqlParameterSource()
+                .addValue("organizationId", organizationId)
+                .addValue("from", T0)
+                .addValue("to", T0.plusHours(1));
+
+        for (String sql : List.of(SalesStatsRepositoryImpl.LEDGER_USER_TOTALS_SQL,
+                SalesStatsRepositoryImpl.LEDGER_STATION_TOTALS_SQL)) {
+            String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, window, String.class));
+            assertTrue(plan.toUpperCase().contains("IDX_INVENTORY_TRANS_TYPE_CREATED"), plan);
+        }
+    }
+
+    /**
+     * Revenue as computed before it was read from the ledger: the product's
+     * current base price times the quantity, looked up row by row.
+     */
+    private Map<String, BigDecimal> legacyRevenueBy(List<InventoryTransaction> transactions,
+            Function<InventoryTransaction, String> key) {
+        Map<String, BigDecimal> revenue = new HashMap<>();
+        transactions.stream()
+                .collect(Collectors.groupingBy(key))
+                .forEach((group, rows) -> revenue.put(group, rows.stream()
+                        .map(transaction -> inventoryRepository.findById(transaction.getInventoryId())
+                                .flatMap(inventory -> productRepository.findById(inventory.getProductId()))
+                                .map(product -> product.getBasePrice().multiply(transaction.getQuantityChange().abs()))
+                                .orElse(BigDecimal.ZERO))
+                        .reduce(BigDecimal.ZERO, BigDecimal::add)));
+        return revenue;
+    }
+
+    private List<InventoryTransaction> saleRows() {
+        entityManager.clear();
+        return transactionRepository.findAll().stream()
+                .filter(t -> t.getTransactionType().equals("SALE") && t.getCreatedBy() != null)
+                .toList();
+    }
+
+    private Organization organization(String name) {
+        Organization organization = new Organization();
+        organization.setName(name);
+        organization.setTickIntervalSeconds(60);
+        return entityManager.persist(organization);
+    }
+
+    private BarStation station(Long organizationId, String name) {
+        return entityManager.persist(BarStation.builder().organizationId(organizationId).name(name).build());
+    }
+
+    private Category category(Long organizationId, String name, boolean dynamicPricing) {
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName(name);
+        category.setDynamicPricing(dynamicPricing);
+        return entityManager.persist(category);
+    }
+
+    private Product product(Category category, String name, String basePrice) {
+        Product product = new Product();
+        product.setOrganizationId(category.getOrganizationId());
+        product.setCategoryId(category.getId());
+        product.setName(name);
+        product.setBasePrice(new BigDecimal(basePrice));
+        product.setActive(true);
+        return entityManager.persist(product);
+    }
+
+    private Inventory inventory(Product product) {
+        Inventory inventory = new Inventory();
+        inventory.setOrganizationId(product.getOrganizationId());
+        inventory.setProduct(product);
+        inventory.setQuantity(new BigDecimal("100"));
+        inventory.setCreatedAt(T0);
+        inventory.setUpdatedAt(T0);
+        return entityManager.persist(inventory);
+    }
+
+    private void sale(Inventory inventory, String referenceId, String quantityChange, String price, UUID userId,
+            Long stationId, int second) {
+        row(inventory, "SALE", referenceId, quantityChange, price, userId, stationId, second);
+    }
+
+    private void row(Inventory inventory, String type, String referenceId, String quantityChange, String price,
+            UUID userId, Long stationId, int second) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventory(inventory);
+        transaction.setTransactionType(type);
+        transaction.setQuantityChange(new BigDecimal(quantityChange));
+        transaction.setQuantityBefore(BigDecimal.ZERO);
+        transaction.setQuantityAfter(BigDecimal.ZERO);
+        transaction.setPriceBefore(new BigDecimal(price));
+        transaction.setPriceAfter(new BigDecimal(price));
+        transaction.setReferenceId(referenceId);
+        transaction.setCreatedBy(userId);
+        transaction.setBarStationId(stationId);
+        transaction.setCreatedAt(T0.plusSeconds(second));
+        entityManager.persist(transaction);
+    }
+}
@@ -0,0 +1,108 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.SalesStatsRepositoryImpl.Counter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesStatsRepositoryImplTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2026-01-01T22:00:00Z");
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+
+    @Test
+    void countersOf_SumsQuantityAndRevenueAtTheChargedPrice() {
+        List<Counter> counters = SalesStatsRepositoryImpl.countersOf(List.of(
+                row(1L, "SALE", "o1", "-2", "3.00", ALICE, 7L, 0),
+                row(1L, "SALE", "o2", "-1", "3.40", ALICE, 7L, 60)), InventoryTransaction::getInventoryId);
+
+        assertEquals(1, counters.size());
+        Counter counter = counters.get(0);
+        assertEquals(2, counter.salesCount());
+        assertEquals(0, new BigDecimal("3").compareTo(counter.quantity()));
+        assertEquals(0, new BigDecimal("9.40").compareTo(counter.revenue()));
+    }
+
+    @Test
+    void countersOf_CountsASaleOnceOnItsLowestInventory() {
+        List<Counter> counters = SalesStatsRepositoryImpl.countersOf(List.of(
+                row(3L, "SALE", "o1", "-1", "2.00", ALICE, 7L, 0),
+                row(1L, "SALE", "o1", "-2", "3.00", ALICE, 7L, 0),
+                row(1L, "SALE", "o1", "-1", "3.00", ALICE, 7L, 0)), InventoryTransaction::getInventoryId);
+
+        assertEquals(List.of(1L, 3L), counters.stream().map(counter -> counter.key().inventoryId()).toList());
+        assertEquals(1, counters.get(0).salesCount());
+        assertEquals(0, new BigDecimal("3").compareTo(counters.get(0).quantity()));
+        assertEquals(0, counters.get(1).salesCount());
+        assertEquals(1, counters.stream().mapToLong(Counter::salesCount).sum());
+    }
+
+    @Test
+    void countersOf_KeysBySellerStationAndUtcDay() {
+        List<Counter> counters = SalesStatsRepositoryImpl.countersOf(List.of(
+                row(1L, "SALE", "o1", "-1", "3.00", ALICE, 7L, 0),
+                row(1L, "SALE", "o2", "-1", "3.00", BOB, 7L, 0),
+                row(1L, "SALE", "o3", "-1", "3.00", ALICE, null, 0),
+                // 02:00 local in UTC+3 is still the 1st in UTC
+                row(1L, "SALE", "o4", "-1", "3.00", ALICE, 7L, 3600, "+03:00"),
+                row(1L, "SALE", "o5", "-1", "3.00", ALICE, 7L, 7200)), InventoryTransaction::getInventoryId);
+
+        assertEquals(4, counters.size());
+        Counter first = counters.get(0);
+        assertEquals(LocalDate.parse("2026-01-01"), first.key().saleDate());
+        assertEquals(ALICE, first.key().userId());
+        assertNull(first.key().barStationId());
+        Counter aliceAtStation = counters.get(1);
+        assertEquals(7L, aliceAtStation.key().barStationId());
+        assertEquals(2, aliceAtStation.salesCount());
+        assertEquals(BOB, counters.get(2).key().userId());
+        assertEquals(LocalDate.parse("2026-01-02"), counters.get(3).key().saleDate());
+    }
+
+    @Test
+    void countersOf_IgnoresRowsOtherThanSales() {
+        List<Counter> counters = SalesStatsRepositoryImpl.countersOf(List.of(
+                row(1L, "ADJUSTMENT", "r1", "5", "3.00", ALICE, 7L, 0),
+                row(1L, "PURCHASE", "r2", "10", "3.00", ALICE, 7L, 0)), InventoryTransaction::getInventoryId);
+
+        assertTrue(counters.isEmpty());
+    }
+
+    @Test
+    void countersOf_SalesWithoutReferenceAddUpWithoutCounting() {
+        List<Counter> counters = SalesStatsRepositoryImpl.countersOf(List.of(
+                row(1L, "SALE", null, "-1", "3.00", ALICE, 7L, 0)), InventoryTransaction::getInventoryId);
+
+        assertEquals(0, counters.get(0).salesCount());
+        assertEquals(0, new BigDecimal("3.00").compareTo(counters.get(0).revenue()));
+    }
+
+    private static InventoryTransaction row(Long inventoryId, String type, String referenceId, String quantityChange,
+            String price, UUID userId, Long stationId, int second) {
+        return row(inventoryId, type, referenceId, quantityChange, price, userId, stationId, second, "Z");
+    }
+
+    private static InventoryTransaction row(Long inventoryId, String type, String referenceId, String quantityChange,
+            String price, UUID userId, Long stationId, int second, String offset) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventoryId(inventoryId);
+        transaction.setTransactionType(type);
+        transaction.setReferenceId(referenceId);
+        transaction.setQuantityChange(new BigDecimal(quantityChange));
+        transaction.setPriceBefore(new BigDecimal(price));
+        transaction.setPriceAfter(new BigDecimal(price));
+        transaction.setCreatedBy(userId);
+        transaction.setBarStationId(stationId);
+        transaction.setCreatedAt(T0.plusSeconds(second).withOffsetSameInstant(ZoneOffset.of(offset)));
+        return transaction;
+    }
+}
@@ -0,0 +1,89 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SalesHeatmapCellDto;
+import com.borsibaar.dto.SalesHeatmapResponseDto;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsServiceTest {
+
+    private static final OffsetDateTime TO = OffsetDateTime.parse("2026-03-01T20:00:00Z");
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @InjectMocks
+    private AnalyticsService analyticsService;
+
+    @Test
+    void getHeatmap_Defaults_LastWeekByHour() {
+        SalesHeatmapCellDto cell = new SalesHeatmapCellDto("2026-03-01T19:00:00Z", 7L, "Main", 3L, "Beer",
+                new BigDecimal("4"), new BigDecimal("14.00"));
+        when(inventoryTransactionRepository.findHeatmap(1L, TO.minusDays(7), TO, Duration.ofHours(1)))
+                .thenReturn(List.of(cell));
+
+        SalesHeatmapResponseDto result = analyticsService.getHeatmap(1L, null, null, TO);
+
+        assertEquals("hour", result.granularity());
+        assertEquals(TO.minusDays(7).toString(), OffsetDateTime.parse(result.from()).toString());
+        assertEquals(List.of(cell), result.cells());
+    }
+
+    @Test
+    void getHeatmap_Day_SumsByDay() {
+        SalesHeatmapResponseDto result = analyticsService.getHeatmap(1L, "day", TO.minusDays(7), TO);
+
+        assertEquals("day", result.granularity());
+        verify(inventoryTransactionRepository).findHeatmap(1L, TO.minusDays(7), TO, Duration.ofDays(1));
+    }
+
+    @Test
+    void getHeatmap_RangeTooLongForHours_UsesDays() {
+        // 60 days are 1441 hourly buckets
+        SalesHeatmapResponseDto result = analyticsService.getHeatmap(1L, "hour", TO.minusDays(60), TO);
+
+        assertEquals("day", result.granularity());
+        verify(inventoryTransactionRepository).findHeatmap(1L, TO.minusDays(60), TO, Duration.ofDays(1));
+    }
+
+    @Test
+    void getHeatmap_RangeTooLongForDays_KeepsLatestPart() {
+        SalesHeatmapResponseDto result = analyticsService.getHeatmap(1L, "hour", TO.minusYears(3), TO);
+
+        OffsetDateTime start = TO.minusDays(AnalyticsService.MAX_BUCKETS - 1);
+        assertEquals("day", result.granularity());
+        assertEquals(start.toString(), OffsetDateTime.parse(result.from()).toString());
+        verify(inventoryTransactionRepository).findHeatmap(1L, start, TO, Duration.ofDays(1));
+    }
+
+    @Test
+    void getHeatmap_UnknownGranularity_BadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> analyticsService.getHeatmap(1L, "minute", null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+
+    @Test
+    void getHeatmap_FromNotBeforeTo_BadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> analyticsService.getHeatmap(1L, "hour", TO, TO));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+}
@@ -0,0 +1,187 @@
+package com.borsibaar.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EncodedResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MenuCache menuCache = mock(MenuCache.class);
+    private final EncodedResponseCache cache = new EncodedResponseCache(menuCache, new ObjectMapper(),
+            meterRegistry, 100, Duration.ofMinutes(1));
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong(3);
+
+    @BeforeEach
+    void setUp() {
+        // Same catalog for every organization, as after identical setups
+        when(menuCache.version(anyLong())).thenAnswer(inv -> version.get());
+    }
+
+    @Test
+    void respond_RepeatedPolls_SerializeOnce() {
+        ResponseEntity<byte[]> first = cache.respond("inventory", 1L, null, request(), body(List.of("Beer")));
+        ResponseEntity<byte[]> second = cache.respond("inventory", 1L, null, request(), body(List.of("Cider")));
+
+        assertEquals(1, calls.get());
+        assertEquals("[\"Beer\"]", new String(second.getBody()));
+        assertSame(first.getBody(), second.getBody());
+        assertEquals("application/json", second.getHeaders().getContentType().toString());
+    }
+
+    @Test
+    void respond_VersionBump_ReEncodes() {
+        cache.respond("inventory", 1L, null, request(), body(List.of("Beer")));
+
+        version.incrementAndGet();
+        ResponseEntity<byte[]> response = cache.respond("inventory", 1L, null, request(), body(List.of("Cider")));
+
+        assertEquals(2, calls.get());
+        assertEquals("[\"Cider\"]", new String(response.getBody()));
+    }
+
+    @Test
+    void respond_ResourcesAndCategoriesAreKeyedSeparately() {
+        cache.respond("inventory", 1L, null, request(), body(List.of("All")));
+        cache.respond("inventory", 1L, 7L, request(), body(List.of("Beer")));
+        cache.respond("categories", 1L, null, request(), body(List.of("Drinks")));
+
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void respond_LargeBodyAndGzipAccepted_SendsCompressed() throws IOException {
+        List<String> large = Collections.nCopies(200, "Pilsner");
+
+        ResponseEntity<byte[]> gzipped = cache.respond("inventory", 1L, null, request("gzip, deflate, br"), body(large));
+        ResponseEntity<byte[]> plain = cache.respond("inventory", 1L, null, request(), body(large));
+
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, plain.getHeaders().getFirst(HttpHeaders.VARY));
+        assertTrue(gzipped.getBody().length < plain.getBody().length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertArrayEquals(plain.getBody(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void respond_SmallBody_NeverCompressed() {
+        ResponseEntity<byte[]> response = cache.respond("inventory", 1L, null, request("gzip"), body(List.of("Beer")));
+
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void respond_CurrentETag_NotModifiedWithoutLoading() {
+        ResponseEntity<byte[]> first = cache.respond("inventory", 1L, null, request(), body(List.of("Beer")));
+        String eTag = first.getHeaders().getETag();
+
+        ResponseEntity<byte[]> second = cache.respond("inventory", 1L, null, conditional(eTag),
+                () -> fail("must not load"));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        assertEquals(eTag, second.getHeaders().getETag());
+        assertNull(second.getBody());
+    }
+
+    @Test
+    void respond_VersionBump_ChangesETag() {
+        String before = cache.respond("inventory", 1L, null, request(), body(List.of("Beer"))).getHeaders().getETag();
+
+        version.incrementAndGet();
+        ResponseEntity<byte[]> after = cache.respond("inventory", 1L, null, conditional(before),
+                body(List.of("Cider")));
+
+        assertEquals(HttpStatus.OK, after.getStatusCode());
+        assertNotEquals(before, after.getHeaders().getETag());
+    }
+
+    @Test
+    void respond_OtherOrganizationOrCategory_SameVersion_NotModifiedNeverSent() {
+        String eTag = cache.respond("inventory", 1L, null, request(), body(List.of("Beer"))).getHeaders().getETag();
+
+        // A user switching organizations still sends the tag of the previous one
+        ResponseEntity<byte[]> otherOrg = cache.respond("inventory", 2L, null, conditional(eTag),
+                body(List.of("Cider")));
+        ResponseEntity<byte[]> category = cache.respond("inventory", 1L, 7L, conditional(eTag),
+                body(List.of("Lager")));
+        ResponseEntity<byte[]> menu = cache.respond("menu", 1L, null, conditional(eTag), body(List.of("Drinks")));
+
+        assertEquals(HttpStatus.OK, otherOrg.getStatusCode());
+        assertEquals("[\"Cider\"]", new String(otherOrg.getBody()));
+        assertEquals(HttpStatus.OK, category.getStatusCode());
+        assertEquals(HttpStatus.OK, menu.getStatusCode());
+    }
+
+    @Test
+    void respond_ETagDiffersPerEncoding() {
+        String identity = cache.respond("inventory", 1L, null, request(), body(List.of("Beer"))).getHeaders().getETag();
+        String gzip = cache.respond("inventory", 1L, null, request("gzip"), body(List.of("Beer"))).getHeaders().getETag();
+
+        assertNotEquals(identity, gzip);
+        assertTrue(identity.startsWith("\""), "strong tag");
+    }
+
+    @Test
+    void matches_AcceptsListsWeakPrefixAndWildcard() {
+        assertTrue(EncodedResponseCache.matches("\"a\", W/\"b\"", "\"b\""));
+        assertTrue(EncodedResponseCache.matches("*", "\"b\""));
+        assertFalse(EncodedResponseCache.matches("\"a\"", "\"b\""));
+        assertFalse(EncodedResponseCache.matches(null, "\"b\""));
+    }
+
+    @Test
+    void acceptsGzip_HonoursQualityZero() {
+        assertTrue(EncodedResponseCache.acceptsGzip("deflate, GZIP;q=0.8"));
+        assertFalse(EncodedResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(EncodedResponseCache.acceptsGzip("identity"));
+        assertFalse(EncodedResponseCache.acceptsGzip(null));
+    }
+
+    private static WebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/inventory"));
+    }
+
+    private static WebRequest request(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/inventory");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        return new ServletWebRequest(request);
+    }
+
+    private static WebRequest conditional(String eTag) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/inventory");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        return new ServletWebRequest(request);
+    }
+
+    private Supplier<List<String>> body(List<String> value) {
+        return () -> {
+            calls.incrementAndGet();
+            return value;
+        };
+    }
+}
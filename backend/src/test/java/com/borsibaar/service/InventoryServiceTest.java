@@ -15,16 +15,22 @@ import com.borsibaar.entity.User;
 import com.borsibaar.mapper.InventoryMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryStockRepository.StockDecrement;
+import com.borsibaar.repository.InventoryStockRepository.StockUpdate;
 import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.SalesStatsRepository.StationSalesTotals;
+import com.borsibaar.repository.SalesStatsRepository.UserSalesTotals;
 import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import com.borsibaar.event.InventoryChangedEvent;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -32,7 +38,9 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -58,6 +66,12 @@ class InventoryServiceTest {
     @Mock
     private InventoryMapper inventoryMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MenuCache menuCache;
+
     @Mock
     private ClientRegistrationRepository clientRegistrationRepository;
 
@@ -71,6 +85,8 @@ class InventoryServiceTest {
         when(productRepository.findById(5L)).thenReturn(Optional.of(product));
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.empty());
         when(inventoryRepository.save(any(Inventory.class))).thenAnswer(inv -> { Inventory i = inv.getArgument(0); i.setId(77L); return i; });
+        when(inventoryRepository.incrementStock(77L, BigDecimal.valueOf(10)))
+                .thenReturn(Optional.of(stockUpdate(BigDecimal.ZERO, BigDecimal.valueOf(10), BigDecimal.valueOf(2))));
         when(inventoryMapper.toResponse(any())).thenAnswer(inv -> {
             Inventory i = inv.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "P", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
 
@@ -78,6 +94,7 @@ class InventoryServiceTest {
         InventoryResponseDto dto = inventoryService.addStock(request, userId, 1L);
         assertEquals(BigDecimal.valueOf(10), dto.quantity());
         verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        verify(eventPublisher).publishEvent(new InventoryChangedEvent(1L));
     }
 
     @Test
@@ -95,9 +112,12 @@ class InventoryServiceTest {
         Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(2)); inv.setAdjustedPrice(BigDecimal.ONE); inv.setUpdatedAt(OffsetDateTime.now());
         when(productRepository.findById(5L)).thenReturn(Optional.of(product));
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(inventoryRepository.decrementStock(9L, BigDecimal.valueOf(5), null))
+                .thenReturn(new StockDecrement(null, BigDecimal.ONE));
         RemoveStockRequestDto request = new RemoveStockRequestDto(5L, BigDecimal.valueOf(5), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.removeStock(request, userId, 1L));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals("Insufficient stock. Available: 1, Requested: 5", ex.getReason());
     }
 
     @Test
@@ -106,29 +126,30 @@ class InventoryServiceTest {
         Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(5)); inv.setAdjustedPrice(BigDecimal.valueOf(2)); inv.setUpdatedAt(OffsetDateTime.now());
         when(productRepository.findById(5L)).thenReturn(Optional.of(product));
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
-        when(inventoryRepository.save(any(Inventory.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryRepository.setStock(9L, BigDecimal.valueOf(8)))
+                .thenReturn(Optional.of(stockUpdate(BigDecimal.valueOf(5), BigDecimal.valueOf(8), BigDecimal.valueOf(2))));
         when(inventoryMapper.toResponse(any())).thenAnswer(a -> {
             Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
 
         AdjustStockRequestDto request = new AdjustStockRequestDto(5L, BigDecimal.valueOf(8), "Adj");
         InventoryResponseDto dto = inventoryService.adjustStock(request, userId, 1L);
         assertEquals(BigDecimal.valueOf(8), dto.quantity());
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        ArgumentCaptor<InventoryTransaction> txCap = ArgumentCaptor.forClass(InventoryTransaction.class);
+        verify(inventoryTransactionRepository).save(txCap.capture());
+        assertEquals(BigDecimal.valueOf(3), txCap.getValue().getQuantityChange());
+        verify(inventoryRepository, never()).save(any(Inventory.class));
     }
 
     @Test
-    void getByOrganization_FiltersInactiveProducts() {
-        Inventory inv1 = new Inventory(); inv1.setId(1L); inv1.setOrganizationId(1L); inv1.setProductId(10L); inv1.setQuantity(BigDecimal.ONE); inv1.setUpdatedAt(OffsetDateTime.now());
-        Inventory inv2 = new Inventory(); inv2.setId(2L); inv2.setOrganizationId(1L); inv2.setProductId(11L); inv2.setQuantity(BigDecimal.ONE); inv2.setUpdatedAt(OffsetDateTime.now());
-        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inv1, inv2));
-        Product p1 = new Product(); p1.setId(10L); p1.setActive(true); p1.setBasePrice(BigDecimal.ONE); p1.setName("A");
-        Product p2 = new Product(); p2.setId(11L); p2.setActive(false); p2.setBasePrice(BigDecimal.ONE); p2.setName("B");
-        when(productRepository.findById(10L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(11L)).thenReturn(Optional.of(p2));
-        when(inventoryMapper.toResponse(inv1)).thenReturn(new InventoryResponseDto(1L,1L,10L,"A",BigDecimal.ONE,BigDecimal.ONE, "abc", null,null,null,OffsetDateTime.now().toString()));
+    void getByOrganization_UsesSingleListingQuery() {
+        InventoryResponseDto row = new InventoryResponseDto(1L, 1L, 10L, "A", BigDecimal.ONE, BigDecimal.ONE, "abc", BigDecimal.ONE, null, null, OffsetDateTime.now().toString());
+        when(inventoryRepository.findListing(1L, null)).thenReturn(List.of(row));
+        when(menuCache.get(eq(1L), isNull(), any())).thenAnswer(inv -> inv.<Supplier<?>>getArgument(2).get());
+
         List<InventoryResponseDto> result = inventoryService.getByOrganization(1L);
-        assertEquals(1, result.size());
+
+        assertEquals(List.of(row), result);
+        verifyNoInteractions(productRepository, inventoryMapper);
     }
 
     @Test
@@ -156,7 +177,9 @@ class InventoryServiceTest {
         Inventory inv = new Inventory(); inv.setId(10L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(new BigDecimal("10")); inv.setAdjustedPrice(new BigDecimal("2.00")); inv.setUpdatedAt(OffsetDateTime.now());
         when(productRepository.findById(5L)).thenReturn(Optional.of(product));
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
-        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(a -> a.getArgument(0));
+        when(inventoryRepository.decrementStock(10L, new BigDecimal("3"), null))
+                .thenReturn(new StockDecrement(stockUpdate(new BigDecimal("10"), new BigDecimal("7"), new BigDecimal("2.00")),
+                        new BigDecimal("10")));
         when(inventoryMapper.toResponse(any())).thenAnswer(a -> { Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString());});
 
         RemoveStockRequestDto request = new RemoveStockRequestDto(5L, new BigDecimal("3"), "sale-1", "note");
@@ -178,75 +201,141 @@ class InventoryServiceTest {
         tx.setQuantityChange(new BigDecimal("-1")); tx.setQuantityBefore(BigDecimal.TEN); tx.setQuantityAfter(new BigDecimal("9"));
         tx.setPriceBefore(BigDecimal.ONE); tx.setPriceAfter(BigDecimal.ONE); tx.setReferenceId("ref"); tx.setNotes("n");
         tx.setCreatedBy(uid); tx.setCreatedAt(OffsetDateTime.now());
-        when(inventoryTransactionRepository.findByInventoryIdOrderByCreatedAtDesc(100L)).thenReturn(List.of(tx));
+        when(inventoryTransactionRepository.findLatestByInventoryId(100L, InventoryService.DEFAULT_HISTORY_LIMIT))
+                .thenReturn(List.of(tx));
         User user = new User(); user.setId(uid); user.setName("Alice"); user.setEmail("a@b.c");
         when(userRepository.findAllById(anyList())).thenReturn(List.of(user));
 
-        List<InventoryTransactionResponseDto> result = inventoryService.getTransactionHistory(10L, 1L);
+        List<InventoryTransactionResponseDto> result = inventoryService.getTransactionHistory(10L, 1L, null, null);
         assertEquals(1, result.size());
         assertEquals(uid.toString(), result.get(0).createdBy());
         assertEquals("Alice", result.get(0).createdByName());
     }
 
     @Test
-    void getUserSalesStats_ComputesCountsAndRevenue() {
+    void getTransactionHistory_WithCursor_ReadsPageBeforeIt() {
+        Inventory inv = new Inventory(); inv.setId(100L); inv.setOrganizationId(1L); inv.setProductId(10L);
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
+        when(inventoryTransactionRepository.findByInventoryIdBefore(anyLong(), any(), anyLong(), anyInt()))
+                .thenReturn(List.of());
+
+        // As a query string decodes an unencoded "+"
+        inventoryService.getTransactionHistory(10L, 1L, "2026-03-01T20:15:30.123456 02:00,981", 10_000);
+
+        verify(inventoryTransactionRepository).findByInventoryIdBefore(100L,
+                OffsetDateTime.parse("2026-03-01T20:15:30.123456+02:00"), 981L, InventoryService.MAX_HISTORY_LIMIT);
+    }
+
+    @Test
+    void getTransactionHistory_MalformedCursor_BadRequest() {
+        Inventory inv = new Inventory(); inv.setId(100L); inv.setOrganizationId(1L); inv.setProductId(10L);
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.getTransactionHistory(10L, 1L, "yesterday", 10));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+
+    @Test
+    void getUserSalesStats_MapsAggregatesToUsersAndStations() {
         Long orgId = 1L;
         UUID uid = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
         Long stationId = 7L;
-        // two transactions for same user/station, different inventories
-        InventoryTransaction t1 = new InventoryTransaction(); t1.setInventoryId(11L); t1.setTransactionType("SALE"); t1.setReferenceId("o1"); t1.setQuantityChange(new BigDecimal("-2")); t1.setCreatedBy(uid); t1.setBarStationId(stationId);
-        InventoryTransaction t2 = new InventoryTransaction(); t2.setInventoryId(12L); t2.setTransactionType("SALE"); t2.setReferenceId("o2"); t2.setQuantityChange(new BigDecimal("-1")); t2.setCreatedBy(uid); t2.setBarStationId(stationId);
-        when(inventoryTransactionRepository.findSaleTransactionsByOrganizationId(orgId)).thenReturn(List.of(t1, t2));
-
-        // inventories map to products with base prices
-        Inventory inv1 = new Inventory(); inv1.setId(11L); inv1.setProductId(101L);
-        Inventory inv2 = new Inventory(); inv2.setId(12L); inv2.setProductId(102L);
-        when(inventoryRepository.findById(11L)).thenReturn(Optional.of(inv1));
-        when(inventoryRepository.findById(12L)).thenReturn(Optional.of(inv2));
-        Product p1 = new Product(); p1.setId(101L); p1.setBasePrice(new BigDecimal("3.00"));
-        Product p2 = new Product(); p2.setId(102L); p2.setBasePrice(new BigDecimal("5.00"));
-        when(productRepository.findById(101L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(102L)).thenReturn(Optional.of(p2));
+        // summed from the sales counters, busiest first
+        when(inventoryTransactionRepository.findUserSalesTotals(orgId)).thenReturn(List.of(
+                userTotals(uid, stationId, 2L, new BigDecimal("11.00")),
+                userTotals(unknown, null, 1L, new BigDecimal("3.00"))));
 
         User user = new User(); user.setId(uid); user.setName("Bob"); user.setEmail("b@c.d");
-        when(userRepository.findAllById(anyList())).thenReturn(List.of(user));
+        when(userRepository.findAllById(Set.of(uid, unknown))).thenReturn(List.of(user));
         BarStation station = new BarStation(); station.setId(stationId); station.setName("Main");
-        when(barStationRepository.findAllById(anyList())).thenReturn(List.of(station));
+        when(barStationRepository.findAllById(Set.of(stationId))).thenReturn(List.of(station));
 
-        List<UserSalesStatsResponseDto> stats = inventoryService.getUserSalesStats(orgId);
-        assertEquals(1, stats.size());
+        List<UserSalesStatsResponseDto> stats = inventoryService.getUserSalesStats(orgId, null, null);
+        assertEquals(2, stats.size());
         UserSalesStatsResponseDto s = stats.get(0);
         assertEquals(2L, s.salesCount());
-        // revenue = 2*3 + 1*5 = 11
         assertEquals(new BigDecimal("11.00"), s.totalRevenue());
         assertEquals("Bob", s.userName());
+        assertEquals("Main", s.barStationName());
+        UserSalesStatsResponseDto other = stats.get(1);
+        assertEquals("Unknown User", other.userName());
+        assertNull(other.barStationId());
+        assertNull(other.barStationName());
+        // nothing is loaded per transaction
+        verifyNoInteractions(inventoryRepository, productRepository);
     }
 
     @Test
-    void getStationSalesStats_ComputesCountsAndRevenue() {
+    void getStationSalesStats_MapsAggregatesToStations() {
         Long orgId = 1L;
         Long stationId = 7L;
-        InventoryTransaction t1 = new InventoryTransaction(); t1.setInventoryId(11L); t1.setTransactionType("SALE"); t1.setReferenceId("o1"); t1.setQuantityChange(new BigDecimal("-2")); t1.setBarStationId(stationId);
-        InventoryTransaction t2 = new InventoryTransaction(); t2.setInventoryId(12L); t2.setTransactionType("SALE"); t2.setReferenceId("o2"); t2.setQuantityChange(new BigDecimal("-1")); t2.setBarStationId(stationId);
-        when(inventoryTransactionRepository.findSaleTransactionsByOrganizationId(orgId)).thenReturn(List.of(t1, t2));
-
-        Inventory inv1 = new Inventory(); inv1.setId(11L); inv1.setProductId(101L);
-        Inventory inv2 = new Inventory(); inv2.setId(12L); inv2.setProductId(102L);
-        when(inventoryRepository.findById(11L)).thenReturn(Optional.of(inv1));
-        when(inventoryRepository.findById(12L)).thenReturn(Optional.of(inv2));
-        Product p1 = new Product(); p1.setId(101L); p1.setBasePrice(new BigDecimal("3.00"));
-        Product p2 = new Product(); p2.setId(102L); p2.setBasePrice(new BigDecimal("5.00"));
-        when(productRepository.findById(101L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(102L)).thenReturn(Optional.of(p2));
+        when(inventoryTransactionRepository.findStationSalesTotals(orgId))
+                .thenReturn(List.of(stationTotals(stationId, 2L, new BigDecimal("11.00"))));
 
         BarStation station = new BarStation(); station.setId(stationId); station.setName("Main");
-        when(barStationRepository.findAllById(anyList())).thenReturn(List.of(station));
+        when(barStationRepository.findAllById(Set.of(stationId))).thenReturn(List.of(station));
 
-        List<StationSalesStatsResponseDto> stats = inventoryService.getStationSalesStats(orgId);
+        List<StationSalesStatsResponseDto> stats = inventoryService.getStationSalesStats(orgId, null, null);
         assertEquals(1, stats.size());
         StationSalesStatsResponseDto s = stats.get(0);
         assertEquals(2L, s.salesCount());
         assertEquals(new BigDecimal("11.00"), s.totalRevenue());
         assertEquals("Main", s.barStationName());
+        verifyNoInteractions(inventoryRepository, productRepository);
+    }
+
+    @Test
+    void getUserSalesStats_WithWindow_ReadsTheLedgerSlice() {
+        OffsetDateTime from = OffsetDateTime.parse("2026-01-01T18:00:00Z");
+        OffsetDateTime to = OffsetDateTime.parse("2026-01-02T04:00:00Z");
+        when(inventoryTransactionRepository.findUserSalesTotals(1L, from, to)).thenReturn(List.of());
+
+        assertTrue(inventoryService.getUserSalesStats(1L, from, to).isEmpty());
+        verify(inventoryTransactionRepository, never()).findUserSalesTotals(1L);
+    }
+
+    @Test
+    void getStationSalesStats_WithOnlyFrom_ReadsUntilNow() {
+        OffsetDateTime from = OffsetDateTime.now().minusHours(2);
+        ArgumentCaptor<OffsetDateTime> to = ArgumentCaptor.forClass(OffsetDateTime.class);
+        when(inventoryTransactionRepository.findStationSalesTotals(eq(1L), eq(from), to.capture()))
+                .thenReturn(List.of());
+
+        inventoryService.getStationSalesStats(1L, from, null);
+        assertTrue(to.getValue().isAfter(from));
+    }
+
+    @Test
+    void getUserSalesStats_EmptyWindow_BadRequest() {
+        OffsetDateTime at = OffsetDateTime.parse("2026-01-01T18:00:00Z");
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.getUserSalesStats(1L, at, at));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+
+    private static UserSalesTotals userTotals(UUID userId, Long stationId, Long salesCount, BigDecimal revenue) {
+        return new UserSalesTotals() {
+            public UUID getUserId() { return userId; }
+            public Long getBarStationId() { return stationId; }
+            public Long getSalesCount() { return salesCount; }
+            public BigDecimal getTotalRevenue() { return revenue; }
+        };
+    }
+
+    private static StationSalesTotals stationTotals(Long stationId, Long salesCount, BigDecimal revenue) {
+        return new StationSalesTotals() {
+            public Long getBarStationId() { return stationId; }
+            public Long getSalesCount() { return salesCount; }
+            public BigDecimal getTotalRevenue() { return revenue; }
+        };
+    }
+
+    private static StockUpdate stockUpdate(BigDecimal quantityBefore, BigDecimal quantityAfter, BigDecimal price) {
+        return new StockUpdate(quantityBefore, quantityAfter, price, price, OffsetDateTime.now());
     }
 }
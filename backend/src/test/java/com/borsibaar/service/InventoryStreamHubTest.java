@@ -0,0 +1,251 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryChangesResponseDto;
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryStreamHubTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    // Tasks run only when the test says so
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private InventoryStreamHub hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = newHub(256);
+    }
+
+    @Test
+    void subscribe_SendsHeartbeatSoTheStreamOpens() {
+        hub.subscribe(1L, null);
+        runTasks();
+
+        assertEquals(List.of(":heartbeat"), emitters.get(0).events);
+        assertEquals(1.0, meterRegistry.get("inventory_stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void onMarketMoved_LoadsOnceAndFansOutToEverySubscriber() {
+        when(inventoryRepository.currentChangeVersion()).thenReturn(100L);
+        when(inventoryRepository.findChanges(1L, 100L)).thenReturn(changes(105L, List.of(row(10L, "Beer")), List.of()));
+        hub.subscribe(1L, null);
+        hub.subscribe(1L, null);
+        runTasks();
+
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        runTasks();
+
+        verify(inventoryRepository, times(1)).findChanges(1L, 100L);
+        for (RecordingEmitter emitter : emitters) {
+            assertEquals(List.of(":heartbeat", "changes#105:[Beer]-[]"), emitter.events);
+        }
+    }
+
+    @Test
+    void onInventoryChanged_AdvancesCursorBetweenLoads() {
+        when(inventoryRepository.currentChangeVersion()).thenReturn(100L);
+        when(inventoryRepository.findChanges(1L, 100L)).thenReturn(changes(105L, List.of(row(10L, "Beer")), List.of()));
+        when(inventoryRepository.findChanges(1L, 105L)).thenReturn(changes(107L, List.of(), List.of(10L)));
+        hub.subscribe(1L, null);
+        runTasks();
+
+        hub.onInventoryChanged(new InventoryChangedEvent(1L));
+        runTasks();
+        hub.onInventoryChanged(new InventoryChangedEvent(1L));
+        runTasks();
+
+        assertEquals(List.of(":heartbeat", "changes#105:[Beer]-[]", "changes#107:[]-[10]"), emitters.get(0).events);
+    }
+
+    @Test
+    void onMarketMoved_NoSubscribers_DoesNotQuery() {
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        runTasks();
+
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    void subscribe_WithSince_ReplaysMissedChanges() {
+        when(inventoryRepository.findChanges(1L, 90L)).thenReturn(changes(100L, List.of(row(10L, "Beer")), List.of()));
+
+        hub.subscribe(1L, 90L);
+        runTasks();
+
+        assertEquals(List.of(":heartbeat", "changes#100:[Beer]-[]"), emitters.get(0).events);
+    }
+
+    @Test
+    void subscribe_WithSince_ReplayNeverOverwritesNewerChanges() {
+        when(inventoryRepository.currentChangeVersion()).thenReturn(100L);
+        when(inventoryRepository.findChanges(1L, 90L)).thenReturn(changes(100L, List.of(row(10L, "Beer @ 3")), List.of()));
+        when(inventoryRepository.findChanges(1L, 100L)).thenReturn(changes(105L, List.of(row(10L, "Beer @ 4")), List.of()));
+        hub.subscribe(1L, null);
+        runTasks();
+
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        hub.subscribe(1L, 90L); // reconnects while the load is queued
+        runTasks();
+
+        // The queued heartbeat is folded into the first batch
+        assertEquals(List.of("changes#105:[Beer @ 4]-[]"), emitters.get(1).events);
+        verify(inventoryRepository, times(1)).findChanges(1L, 100L);
+    }
+
+    @Test
+    void lastSubscriberLeaving_DropsFeed_NextSubscriberStartsFromCurrentVersion() {
+        when(inventoryRepository.currentChangeVersion()).thenReturn(100L, 200L);
+        when(inventoryRepository.findChanges(1L, 200L)).thenReturn(changes(201L, List.of(row(10L, "Beer")), List.of()));
+        hub.subscribe(1L, null);
+        runTasks();
+        emitters.get(0).close();
+        assertEquals(0.0, meterRegistry.get("inventory_stream.subscribers").gauge().value());
+
+        hub.subscribe(1L, null);
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        runTasks();
+
+        verify(inventoryRepository, never()).findChanges(1L, 100L);
+        assertEquals(List.of(":heartbeat", "changes#201:[Beer]-[]"), emitters.get(1).events);
+    }
+
+    @Test
+    void slowSubscriber_CoalescesChangesPerProduct() {
+        when(inventoryRepository.findChanges(anyLong(), anyLong()))
+                .thenReturn(changes(101L, List.of(row(10L, "Beer @ 3")), List.of()))
+                .thenReturn(changes(102L, List.of(row(10L, "Beer @ 4"), row(11L, "Cider")), List.of()));
+        hub.subscribe(1L, null);
+        runTasks();
+
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        runOne(); // first load queues a send
+        Runnable pendingSend = tasks.poll(); // the client is slow: hold the send back
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        runTasks();
+        pendingSend.run();
+
+        assertEquals(List.of(":heartbeat", "changes#102:[Beer @ 4, Cider]-[]"), emitters.get(0).events);
+    }
+
+    @Test
+    void slowSubscriber_BeyondBuffer_GetsResync() {
+        hub = newHub(1);
+        when(inventoryRepository.findChanges(anyLong(), anyLong()))
+                .thenReturn(changes(101L, List.of(row(10L, "Beer"), row(11L, "Cider")), List.of()));
+        hub.subscribe(1L, null);
+        runTasks();
+
+        hub.onMarketMoved(new MarketMovedEvent(1L));
+        runTasks();
+
+        assertEquals(List.of(":heartbeat", "resync#101"), emitters.get(0).events);
+    }
+
+    private InventoryStreamHub newHub(int bufferSize) {
+        return new InventoryStreamHub(inventoryRepository, tasks::add, meterRegistry, bufferSize, Duration.ofMinutes(1)) {
+            @Override
+            SseEmitter newEmitter() {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private void runOne() {
+        tasks.poll().run();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static InventoryChangesResponseDto changes(long version, List<InventoryResponseDto> changed,
+            List<Long> removed) {
+        return new InventoryChangesResponseDto(version, changed, removed);
+    }
+
+    private static InventoryResponseDto row(Long productId, String name) {
+        return new InventoryResponseDto(productId + 100, 1L, productId, name, BigDecimal.ONE, BigDecimal.TEN,
+                null, BigDecimal.TEN, null, null, null);
+    }
+
+    /**
+     * Records events as "name#id:payload", or ":comment" for comments.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+        private Runnable completionCallback = () -> { };
+
+        @Override
+        public void onCompletion(Runnable callback) {
+            completionCallback = callback;
+        }
+
+        // What the container does when the client disconnects
+        void close() {
+            completionCallback.run();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            String name = null;
+            String id = null;
+            String comment = null;
+            Object payload = null;
+            for (DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text) {
+                    for (String line : text.split("\n")) {
+                        if (line.startsWith("event:")) name = line.substring(6);
+                        if (line.startsWith("id:")) id = line.substring(3);
+                        if (line.startsWith(":")) comment = line;
+                        if (line.startsWith("data:") && line.length() > 5) payload = line.substring(5);
+                    }
+                } else {
+                    payload = part.getData();
+                }
+            }
+            if (name == null) {
+                events.add(comment);
+            } else if (payload instanceof InventoryChangesResponseDto batch) {
+                events.add(name + "#" + id + ":" + batch.changed().stream().map(InventoryResponseDto::productName).toList()
+                        + "-" + batch.removedProductIds());
+            } else {
+                events.add(name + "#" + id);
+            }
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryStockRepository.StockChange;
+import com.borsibaar.repository.InventoryStockRepository.StockShortfall;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.util.ReferenceIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarketEngineTest {
+
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private InventoryRepository inventoryRepository;
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock
+    private SalesRollupService salesRollupService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path journalDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final UUID userId = UUID.randomUUID();
+    private MarketEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        lenient().when(productRepository.findAllWithInventoryByOrganizationId(1L))
+                .thenReturn(List.of(product(5L, "Beer", 10, "2.00", "3.00", true)));
+        engine = newEngine();
+    }
+
+    @Test
+    void sell_AppliesSaleInMemoryAndRaisesDynamicPrice() {
+        SaleResponseDto first = engine.sell(sale(5L, 2), userId, 1L, OffsetDateTime.now());
+        SaleResponseDto second = engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+
+        assertEquals(0, new BigDecimal("4.00").compareTo(first.totalAmount()));
+        // Price after the first sale is 2.00 + 0.50 step
+        assertEquals(0, new BigDecimal("2.50").compareTo(second.items().get(0).unitPrice()));
+        verify(productRepository, times(1)).findAllWithInventoryByOrganizationId(1L);
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    void sell_PriceIsCappedAtMaxPrice() {
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+        SaleResponseDto capped = engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+
+        assertEquals(0, new BigDecimal("3.00").compareTo(capped.items().get(0).unitPrice()));
+    }
+
+    @Test
+    void sell_InsufficientStockAcrossLines_ChangesNothing() {
+        SaleRequestDto request = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(5L, BigDecimal.valueOf(6)),
+                new SaleItemRequestDto(5L, BigDecimal.valueOf(6))), null, null);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> engine.sell(request, userId, 1L, OffsetDateTime.now()));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+
+        // The full stock is still available
+        engine.sell(sale(5L, 10), userId, 1L, OffsetDateTime.now());
+    }
+
+    @Test
+    void sell_UnknownProduct_ReloadsBookOnceThenThrows() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> engine.sell(sale(99L, 1), userId, 1L, OffsetDateTime.now()));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+        verify(productRepository, times(2)).findAllWithInventoryByOrganizationId(1L);
+    }
+
+    @Test
+    void flush_PersistsNetChangesAndLedgerRowsInOneBatchEach() {
+        engine.sell(sale(5L, 2), userId, 1L, OffsetDateTime.now());
+        engine.sell(sale(5L, 3), userId, 1L, OffsetDateTime.now());
+
+        engine.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryRepository).applyChanges(changes.capture());
+        assertEquals(1, changes.getValue().size());
+        assertEquals(0, BigDecimal.valueOf(-5).compareTo(changes.getValue().get(0).quantityChange()));
+        assertEquals(0, new BigDecimal("3.00").compareTo(changes.getValue().get(0).adjustedPrice()));
+        verify(eventPublisher).publishEvent(new MarketMovedEvent(1L));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> ledger = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).insertAll(ledger.capture());
+        assertEquals(2, ledger.getValue().size());
+        assertEquals("SALE", ledger.getValue().get(0).getTransactionType());
+        assertEquals(9L, ledger.getValue().get(0).getInventoryId());
+
+        // Flushed segments are removed; nothing left to flush
+        engine.flush();
+        verify(inventoryRepository, times(1)).applyChanges(anyList());
+    }
+
+    @Test
+    void sell_InTransaction_IsJournaledOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.sell(sale(5L, 2), userId, 1L, OffsetDateTime.now());
+            engine.flush();
+            verifyNoInteractions(inventoryRepository);
+
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        engine.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryRepository).applyChanges(changes.capture());
+        assertEquals(0, BigDecimal.valueOf(-2).compareTo(changes.getValue().get(0).quantityChange()));
+    }
+
+    @Test
+    void sell_InTransaction_RolledBack_ReturnsStockAndPrice() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.sell(sale(5L, 10), userId, 1L, OffsetDateTime.now());
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // The full stock is available again at the original price
+        SaleResponseDto sale = engine.sell(sale(5L, 10), userId, 1L, OffsetDateTime.now());
+        assertEquals(0, new BigDecimal("2.00").compareTo(sale.items().get(0).unitPrice()));
+        engine.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> ledger = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).insertAll(ledger.capture());
+        assertEquals(1, ledger.getValue().size());
+    }
+
+    @Test
+    void sell_InTransaction_RolledBackUnderCappedSale_KeepsCappedPrice() {
+        List<TransactionSynchronization> first;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now()); // 2.00 -> 2.50
+            first = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now()); // 2.50 -> 3.00
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now()); // capped at 3.00
+
+        TransactionSynchronizationUtils.invokeAfterCompletion(first, TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // The later sales' price is what gets persisted, so it stands
+        SaleResponseDto next = engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+        assertEquals(0, new BigDecimal("3.00").compareTo(next.items().get(0).unitPrice()));
+    }
+
+    @Test
+    void sell_InTransaction_RolledBack_ProductDecaysAgain() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        int updated = engine.applyPriceTicks(List.of(product(5L, "Beer", 10, "2.00", "3.00", true)),
+                OffsetDateTime.now().minusMinutes(1));
+
+        assertEquals(1, updated);
+    }
+
+    @Test
+    void sell_RepeatedProductOverStock_ReportsTotalRequested() {
+        SaleRequestDto request = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(5L, BigDecimal.valueOf(6)),
+                new SaleItemRequestDto(5L, BigDecimal.valueOf(6))), null, null);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> engine.sell(request, userId, 1L, OffsetDateTime.now()));
+
+        assertTrue(ex.getReason().endsWith("Requested: 12"), ex.getReason());
+    }
+
+    @Test
+    void cancel_SaleOfRolledBackSavepoint_IsNeverJournaled() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            SaleResponseDto cancelled = engine.sell(sale(5L, 10), userId, 1L, OffsetDateTime.now());
+            engine.cancel(cancelled.saleId());
+            engine.sell(sale(5L, 10), userId, 1L, OffsetDateTime.now());
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        engine.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryRepository).applyChanges(changes.capture());
+        assertEquals(0, BigDecimal.valueOf(-10).compareTo(changes.getValue().get(0).quantityChange()));
+    }
+
+    @Test
+    void flush_StockRemovedMeanwhile_RecordsShortfallInLedger() {
+        engine.sell(sale(5L, 4), userId, 1L, OffsetDateTime.now());
+        when(inventoryRepository.applyChanges(anyList())).thenReturn(List.of(
+                new StockShortfall(9L, new BigDecimal("1"), new BigDecimal("3"))));
+
+        engine.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> ledger = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).insertAll(ledger.capture());
+        InventoryTransaction adjustment = ledger.getValue().get(1);
+        assertEquals("ADJUSTMENT", adjustment.getTransactionType());
+        assertEquals(9L, adjustment.getInventoryId());
+        assertEquals(0, new BigDecimal("3").compareTo(adjustment.getQuantityChange()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(adjustment.getQuantityAfter()));
+    }
+
+    @Test
+    void restart_ReplaysJournaledSalesThatWereNotFlushed() throws IOException {
+        engine.sell(sale(5L, 4), userId, 1L, OffsetDateTime.now());
+        verifyNoInteractions(inventoryRepository);
+
+        // Crash: the journal is not closed or flushed
+        MarketEngine restarted = newEngine();
+        restarted.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryRepository).applyChanges(changes.capture());
+        assertEquals(0, BigDecimal.valueOf(-4).compareTo(changes.getValue().get(0).quantityChange()));
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertEquals(1, files.count(), "only the new active segment remains");
+        }
+    }
+
+    @Test
+    void sell_ConcurrentSalesWithFsync_AreAllJournaled() throws Exception {
+        MarketEngine syncing = newEngine(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SaleResponseDto>> sales = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sales.add(executor.submit(() -> syncing.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now())));
+            }
+            for (Future<SaleResponseDto> sale : sales) {
+                sale.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Crash: every acknowledged sale is on disk
+        newEngine().flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryRepository).applyChanges(changes.capture());
+        assertEquals(0, BigDecimal.valueOf(-10).compareTo(changes.getValue().get(0).quantityChange()));
+    }
+
+    @Test
+    void applyPriceTicks_SkipsProductsSoldInEngineWithinWindow() {
+        Product idle = product(6L, "Cider", 5, "2.00", "3.00", true);
+        idle.setMinPrice(new BigDecimal("1.00"));
+        when(productRepository.findAllWithInventoryByOrganizationId(1L))
+                .thenReturn(List.of(product(5L, "Beer", 10, "2.00", "3.00", true), idle));
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+
+        int updated = engine.applyPriceTicks(List.of(product(5L, "Beer", 10, "2.00", "3.00", true), idle),
+                OffsetDateTime.now().minusMinutes(1));
+
+        assertEquals(1, updated);
+        SaleResponseDto sale = engine.sell(sale(6L, 1), userId, 1L, OffsetDateTime.now());
+        assertEquals(0, new BigDecimal("1.75").compareTo(sale.items().get(0).unitPrice()));
+    }
+
+    @Test
+    void evict_ReloadsBookFromDatabaseOnNextSale() {
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+
+        engine.evict(1L);
+        engine.sell(sale(5L, 1), userId, 1L, OffsetDateTime.now());
+
+        verify(productRepository, times(2)).findAllWithInventoryByOrganizationId(1L);
+        // Pending changes are flushed before the book is read back
+        verify(inventoryRepository).applyChanges(anyList());
+    }
+
+    private static void completeTransaction(int status) {
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), status);
+    }
+
+    private MarketEngine newEngine() {
+        return newEngine(false);
+    }
+
+    private MarketEngine newEngine(boolean fsync) {
+        return new MarketEngine(productRepository, inventoryRepository, inventoryTransactionRepository,
+                salesRollupService, new ReferenceIdGenerator(0), transactionManager, objectMapper, eventPublisher, journalDir, fsync);
+    }
+
+    private static SaleRequestDto sale(Long productId, long quantity) {
+        return new SaleRequestDto(List.of(new SaleItemRequestDto(productId, BigDecimal.valueOf(quantity))), null, null);
+    }
+
+    private static Product product(Long id, String name, long quantity, String price, String maxPrice,
+            boolean dynamicPricing) {
+        Organization organization = new Organization();
+        organization.setId(1L);
+        organization.setPriceIncreaseStep(new BigDecimal("0.50"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.25"));
+        Category category = new Category();
+        category.setDynamicPricing(dynamicPricing);
+
+        Product product = new Product();
+        product.setId(id);
+        product.setOrganizationId(1L);
+        product.setName(name);
+        product.setActive(true);
+        product.setBasePrice(new BigDecimal(price));
+        product.setMaxPrice(new BigDecimal(maxPrice));
+        product.setOrganization(organization);
+        product.setCategory(category);
+        Inventory inventory = new Inventory();
+        inventory.setId(id + 4);
+        inventory.setQuantity(BigDecimal.valueOf(quantity));
+        product.setInventory(inventory);
+        return product;
+    }
+}
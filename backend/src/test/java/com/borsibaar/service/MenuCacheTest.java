@@ -0,0 +1,129 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.event.MarketMovedEvent;
+import com.borsibaar.repository.InventoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class MenuCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+    private final AtomicInteger loads = new AtomicInteger();
+    // The catalog_versions table, shared by every node
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private MenuCache menuCache = newCache(Duration.ofMinutes(1));
+
+    @BeforeEach
+    void setUp() {
+        when(inventoryRepository.catalogVersion(anyLong()))
+                .thenAnswer(inv -> versions.getOrDefault(inv.<Long>getArgument(0), 0L));
+        when(inventoryRepository.bumpCatalogVersion(anyLong()))
+                .thenAnswer(inv -> versions.merge(inv.<Long>getArgument(0), 1L, Long::sum));
+    }
+
+    @Test
+    void get_RepeatedReads_LoadOnce() {
+        for (int screen = 0; screen < 10; screen++) {
+            menuCache.get(1L, 7L, loader("Beer"));
+        }
+
+        assertEquals(1, loads.get());
+        // The version is held in memory between refreshes
+        verify(inventoryRepository, times(1)).catalogVersion(1L);
+        assertEquals(9.0, meterRegistry.get("cache.gets").tag("cache", "inventory.menu").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "inventory.menu").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void get_CategoriesAreCachedSeparately() {
+        menuCache.get(1L, 7L, loader("Beer"));
+        List<InventoryResponseDto> all = menuCache.get(1L, null, loader("All"));
+
+        assertEquals(2, loads.get());
+        assertEquals("All", all.get(0).productName());
+    }
+
+    @Test
+    void get_VersionMoved_ReloadsEveryCategoryOfThatOrganizationOnly() {
+        menuCache.get(1L, 7L, loader("Beer"));
+        menuCache.get(1L, null, loader("All"));
+        menuCache.get(2L, null, loader("Other"));
+
+        commitChange(1L);
+        List<InventoryResponseDto> reloaded = menuCache.get(1L, 7L, loader("Cheaper beer"));
+        menuCache.get(1L, null, loader("All"));
+        menuCache.get(2L, null, loader("Other"));
+
+        assertEquals(5, loads.get());
+        assertEquals("Cheaper beer", reloaded.get(0).productName());
+    }
+
+    @Test
+    void get_LoadOverlappingInvalidation_IsNotServedAfterwards() {
+        // The change commits while the listing is still being read
+        menuCache.get(1L, null, () -> {
+            commitChange(1L);
+            return loader("Stale").get();
+        });
+
+        List<InventoryResponseDto> next = menuCache.get(1L, null, loader("Fresh"));
+
+        assertEquals("Fresh", next.get(0).productName());
+    }
+
+    @Test
+    void get_ChangeThroughOtherNode_SeenAfterRefresh() {
+        menuCache = newCache(Duration.ZERO);
+        menuCache.get(1L, null, loader("Beer"));
+
+        versions.merge(1L, 1L, Long::sum);
+        List<InventoryResponseDto> reloaded = menuCache.get(1L, null, loader("Cheaper beer"));
+
+        assertEquals("Cheaper beer", reloaded.get(0).productName());
+    }
+
+    @Test
+    void version_ReadRacingBump_NeverMovesBack() {
+        menuCache = newCache(Duration.ZERO);
+        menuCache.onMarketMoved(new MarketMovedEvent(1L));
+        // A read that started before the bump committed
+        when(inventoryRepository.catalogVersion(1L)).thenReturn(0L);
+
+        assertEquals(1L, menuCache.version(1L));
+    }
+
+    private void commitChange(Long organizationId) {
+        menuCache.onMarketMoved(new MarketMovedEvent(organizationId));
+    }
+
+    private MenuCache newCache(Duration versionRefresh) {
+        return new MenuCache(inventoryRepository, mock(PlatformTransactionManager.class), meterRegistry, 100,
+                Duration.ofMinutes(1), versionRefresh);
+    }
+
+    private Supplier<List<InventoryResponseDto>> loader(String productName) {
+        return () -> {
+            loads.incrementAndGet();
+            return List.of(new InventoryResponseDto(1L, 1L, 10L, productName, BigDecimal.ONE, BigDecimal.TEN,
+                    null, BigDecimal.TEN, null, null, null));
+        };
+    }
+}
@@ -3,6 +3,7 @@ package com.borsibaar.service;
 import com.borsibaar.dto.OrganizationRequestDto;
 import com.borsibaar.dto.OrganizationResponseDto;
 import com.borsibaar.entity.Organization;
+import com.borsibaar.event.OrganizationChangedEvent;
 import com.borsibaar.mapper.OrganizationMapper;
 import com.borsibaar.repository.OrganizationRepository;
 import org.junit.jupiter.api.Test;
@@ -10,6 +11,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -28,22 +30,25 @@ class OrganizationServiceTest {
     private OrganizationRepository organizationRepository;
     @Mock
     private OrganizationMapper organizationMapper;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private OrganizationService organizationService;
 
     @Test
     void create_SetsCreatedAtAndMaps() {
-        OrganizationRequestDto request = new OrganizationRequestDto("Org", BigDecimal.valueOf(0.5), BigDecimal.valueOf(0.5));
+        OrganizationRequestDto request = new OrganizationRequestDto("Org", BigDecimal.valueOf(0.5), BigDecimal.valueOf(0.5), 60);
         Organization entity = new Organization();
         when(organizationMapper.toEntity(request)).thenReturn(entity);
         Organization saved = new Organization(); saved.setId(3L); saved.setName("Org"); saved.setCreatedAt(OffsetDateTime.now());
         when(organizationRepository.save(entity)).thenReturn(saved);
-        when(organizationMapper.toResponse(saved)).thenReturn(new OrganizationResponseDto(3L, "Org",  saved.getCreatedAt(), saved.getUpdatedAt(), BigDecimal.valueOf(0.5), BigDecimal.valueOf(0.5)));
+        when(organizationMapper.toResponse(saved)).thenReturn(new OrganizationResponseDto(3L, "Org",  saved.getCreatedAt(), saved.getUpdatedAt(), BigDecimal.valueOf(0.5), BigDecimal.valueOf(0.5), 60));
 
         OrganizationResponseDto dto = organizationService.create(request);
         assertEquals(3L, dto.id());
         verify(organizationRepository).save(entity);
+        verify(eventPublisher).publishEvent(new OrganizationChangedEvent(3L));
     }
 
     @Test
@@ -57,7 +62,7 @@ class OrganizationServiceTest {
     void getAll_ReturnsMappedList() {
         Organization o = new Organization(); o.setId(1L); o.setName("A");
         when(organizationRepository.findAll()).thenReturn(List.of(o));
-        when(organizationMapper.toResponse(o)).thenReturn(new OrganizationResponseDto(1L, "A", null, OffsetDateTime.now(), BigDecimal.valueOf(0.5), BigDecimal.valueOf(0.5)));
+        when(organizationMapper.toResponse(o)).thenReturn(new OrganizationResponseDto(1L, "A", null, OffsetDateTime.now(), BigDecimal.valueOf(0.5), BigDecimal.valueOf(0.5), 60));
         var list = organizationService.getAll();
         assertEquals(1, list.size());
     }
@@ -0,0 +1,108 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.dto.PriceCandlesResponseDto;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceCandleServiceTest {
+
+    private static final OffsetDateTime TO = OffsetDateTime.parse("2026-03-01T20:00:00Z");
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @InjectMocks
+    private PriceCandleService priceCandleService;
+
+    private Inventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new Inventory();
+        inventory.setId(100L);
+    }
+
+    @Test
+    void getCandles_Defaults_LastHourByMinute() {
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inventory));
+        PriceCandleDto candle = new PriceCandleDto("2026-03-01T19:59:00Z", BigDecimal.ONE, BigDecimal.TEN,
+                BigDecimal.ONE, BigDecimal.TEN, new BigDecimal("3"));
+        when(inventoryTransactionRepository.findCandles(100L, TO.minusHours(1), TO, Duration.ofMinutes(1)))
+                .thenReturn(List.of(candle));
+
+        PriceCandlesResponseDto result = priceCandleService.getCandles(10L, 1L, null, null, TO);
+
+        assertEquals("1m", result.interval());
+        assertEquals(List.of(candle), result.candles());
+    }
+
+    @Test
+    void getCandles_RangeTooLongForInterval_UsesCoarserInterval() {
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inventory));
+
+        // A day is 1440 one-minute and 288 five-minute buckets
+        PriceCandlesResponseDto result = priceCandleService.getCandles(10L, 1L, "1m", TO.minusDays(1), TO);
+
+        assertEquals("5m", result.interval());
+        verify(inventoryTransactionRepository).findCandles(100L, TO.minusDays(1), TO, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void getCandles_RangeTooLongForAnyInterval_KeepsLatestPart() {
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inventory));
+
+        PriceCandlesResponseDto result = priceCandleService.getCandles(10L, 1L, "1m", TO.minusDays(90), TO);
+
+        OffsetDateTime start = TO.minusHours(PriceCandleService.MAX_CANDLES - 1);
+        assertEquals("1h", result.interval());
+        assertEquals(start.toString(), OffsetDateTime.parse(result.from()).toString());
+        verify(inventoryTransactionRepository).findCandles(100L, start, TO, Duration.ofHours(1));
+    }
+
+    @Test
+    void getCandles_UnknownInterval_BadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> priceCandleService.getCandles(10L, 1L, "1d", null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+
+    @Test
+    void getCandles_FromNotBeforeTo_BadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> priceCandleService.getCandles(10L, 1L, "5m", TO, TO));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    void getCandles_NoInventory_NotFound() {
+        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> priceCandleService.getCandles(10L, 1L, null, null, TO));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+}
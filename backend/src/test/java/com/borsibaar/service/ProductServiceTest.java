@@ -14,9 +14,11 @@ import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import com.borsibaar.event.InventoryChangedEvent;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -36,6 +38,7 @@ class ProductServiceTest {
     @Mock private UserRepository userRepository;
     @Mock private InventoryRepository inventoryRepository;
     @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks private ProductService productService;
 
@@ -109,6 +112,8 @@ class ProductServiceTest {
         productService.delete(44L);
         assertFalse(product.isActive());
         verify(productRepository).save(product);
+        verify(inventoryRepository).markProductChanged(44L);
+        verify(eventPublisher).publishEvent(any(InventoryChangedEvent.class));
     }
 
     @Test
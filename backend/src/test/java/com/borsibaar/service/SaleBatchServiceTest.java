@@ -0,0 +1,195 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.OfflineSaleRequestDto;
+import com.borsibaar.dto.SaleBatchResponseDto;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SaleBatchServiceTest {
+
+    @Mock
+    private SalesService salesService;
+    @Mock
+    private SaleIdempotencyService saleIdempotencyService;
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock
+    private SalesRollupService salesRollupService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SaleBatchService service;
+
+    private final UUID userId = UUID.randomUUID();
+    private final OffsetDateTime soldAt = OffsetDateTime.parse("2026-01-10T21:15:00Z");
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        service = new SaleBatchService(salesService, saleIdempotencyService, inventoryTransactionRepository,
+                salesRollupService, transactionManager, 2);
+    }
+
+    @Test
+    void replay_ChunksSalesAndBatchesLedgerRowsPerChunk() {
+        Map<Long, Product> products = Map.of(1L, new Product());
+        when(salesService.loadProducts(any())).thenReturn(products);
+        when(salesService.executeSale(any(), eq(products), eq(userId), eq(1L), eq(soldAt), anyList()))
+                .thenAnswer(inv -> {
+                    List<InventoryTransaction> rows = inv.getArgument(5);
+                    rows.add(new InventoryTransaction());
+                    return saleResponse("SALE-" + rows.size());
+                });
+
+        SaleBatchResponseDto result = service.replay(
+                List.of(offlineSale(null), offlineSale(null), offlineSale(null)), userId, 1L);
+
+        assertEquals(3, result.created());
+        assertEquals(0, result.failed());
+        assertEquals(List.of(0, 1, 2), result.results().stream().map(r -> r.index()).toList());
+        // Two chunks: one product lookup and one ledger batch each
+        verify(salesService, times(2)).loadProducts(Set.of(1L));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> batches = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository, times(2)).insertAll(batches.capture());
+        assertEquals(2, batches.getAllValues().get(0).size());
+        assertEquals(1, batches.getAllValues().get(1).size());
+        verify(transactionManager, times(2)).getTransaction(argThat(def -> def != null
+                && def.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRED));
+        verify(transactionManager, times(3)).getTransaction(argThat(def -> def != null
+                && def.getPropagationBehavior() == TransactionDefinition.PROPAGATION_NESTED));
+    }
+
+    @Test
+    void replay_RejectedSale_IsReportedAndRolledBackToSavepoint() {
+        when(salesService.loadProducts(any())).thenReturn(Map.of());
+        when(salesService.executeSale(any(), any(), any(), any(), any(), anyList()))
+                .thenAnswer(inv -> {
+                    List<InventoryTransaction> rows = inv.getArgument(5);
+                    rows.add(new InventoryTransaction());
+                    return saleResponse("SALE-1");
+                })
+                .thenAnswer(inv -> {
+                    List<InventoryTransaction> rows = inv.getArgument(5);
+                    rows.add(new InventoryTransaction());
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient stock for Cola");
+                });
+
+        SaleBatchResponseDto result = service.replay(List.of(offlineSale(null), offlineSale(null)), userId, 1L);
+
+        assertEquals(1, result.created());
+        assertEquals(1, result.failed());
+        assertEquals("FAILED", result.results().get(1).status());
+        assertEquals("Insufficient stock for Cola", result.results().get(1).error());
+        assertNull(result.results().get(1).sale());
+        // Only the accepted sale's ledger row is written
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryTransaction>> batch = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).insertAll(batch.capture());
+        assertEquals(1, batch.getValue().size());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void replay_AlreadyProcessedClientSale_IsReportedAsDuplicate() {
+        when(salesService.loadProducts(any())).thenReturn(Map.of());
+        SaleResponseDto original = saleResponse("SALE-42");
+        when(saleIdempotencyService.findProcessed(1L, "tablet-7-1")).thenReturn(Optional.of(original));
+        when(saleIdempotencyService.findProcessed(1L, "tablet-7-2")).thenReturn(Optional.empty());
+        when(salesService.executeSale(any(), any(), any(), any(), any(), anyList()))
+                .thenReturn(saleResponse("SALE-43"));
+
+        SaleBatchResponseDto result = service.replay(
+                List.of(offlineSale("tablet-7-1"), offlineSale("tablet-7-2")), userId, 1L);
+
+        assertEquals(1, result.duplicates());
+        assertEquals(1, result.created());
+        assertSame(original, result.results().get(0).sale());
+        verify(salesService, times(1)).executeSale(any(), any(), any(), any(), any(), anyList());
+        verify(saleIdempotencyService).record(eq(1L), eq("tablet-7-2"), any());
+        verify(saleIdempotencyService, never()).record(eq(1L), eq("tablet-7-1"), any());
+    }
+
+    @Test
+    void replay_KeyNotRecorded_CancelsSale() {
+        when(salesService.loadProducts(any())).thenReturn(Map.of());
+        when(saleIdempotencyService.findProcessed(1L, "tablet-7-1")).thenReturn(Optional.empty());
+        SaleResponseDto sale = saleResponse("SALE-43");
+        when(salesService.executeSale(any(), any(), any(), any(), any(), anyList())).thenReturn(sale);
+        doThrow(new IllegalStateException("Could not serialize sale response"))
+                .when(saleIdempotencyService).record(eq(1L), eq("tablet-7-1"), any());
+
+        assertThrows(IllegalStateException.class,
+                () -> service.replay(List.of(offlineSale("tablet-7-1")), userId, 1L));
+
+        verify(salesService).cancelSale(sale);
+    }
+
+    @Test
+    void replay_ConcurrentUploadOfSameSale_RetriesChunkAndReportsDuplicate() {
+        when(salesService.loadProducts(any())).thenReturn(Map.of());
+        SaleResponseDto winner = saleResponse("SALE-42");
+        when(saleIdempotencyService.findProcessed(1L, "tablet-7-0")).thenReturn(Optional.empty());
+        when(saleIdempotencyService.findProcessed(1L, "tablet-7-1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(winner));
+        SaleResponseDto sale = saleResponse("SALE-43");
+        when(salesService.executeSale(any(), any(), any(), any(), any(), anyList())).thenReturn(sale);
+        doAnswer(inv -> {
+            if ("tablet-7-1".equals(inv.getArgument(1))) {
+                throw new DataIntegrityViolationException("uk_sale_idempotency_keys_org_key");
+            }
+            return null;
+        }).when(saleIdempotencyService).record(eq(1L), any(), any());
+
+        SaleBatchResponseDto result = service.replay(List.of(offlineSale("tablet-7-0"), offlineSale("tablet-7-1")),
+                userId, 1L);
+
+        assertEquals(1, result.created());
+        assertEquals(1, result.duplicates());
+        assertSame(winner, result.results().get(1).sale());
+        verify(salesService).cancelSale(sale);
+        // The savepoint, then the whole chunk, which is replayed in a new transaction
+        verify(transactionManager, times(2)).rollback(any());
+        verify(salesService, times(3)).executeSale(any(), any(), any(), any(), any(), anyList());
+    }
+
+    private OfflineSaleRequestDto offlineSale(String clientSaleId) {
+        SaleRequestDto sale = new SaleRequestDto(List.of(new SaleItemRequestDto(1L, BigDecimal.ONE)), null, 3L);
+        return new OfflineSaleRequestDto(clientSaleId, soldAt, sale);
+    }
+
+    private SaleResponseDto saleResponse(String saleId) {
+        return new SaleResponseDto(saleId, new ArrayList<>(), BigDecimal.TEN, null, soldAt);
+    }
+}
@@ -0,0 +1,179 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemResponseDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.SaleIdempotencyKey;
+import com.borsibaar.exception.BadRequestException;
+import com.borsibaar.repository.SaleIdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SaleIdempotencyServiceTest {
+
+    @Mock
+    private SaleIdempotencyKeyRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private SaleIdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SaleIdempotencyService(repository, objectMapper, Duration.ofHours(1), 100);
+    }
+
+    @Test
+    void processOnce_Retry_ReturnsCachedResponseWithoutRunningSale() {
+        when(repository.findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(eq(1L), eq("k1"), any()))
+                .thenReturn(Optional.empty());
+        AtomicInteger runs = new AtomicInteger();
+        SaleResponseDto response = saleResponse("SALE-1");
+
+        SaleResponseDto first = service.processOnce(1L, "k1", () -> inTransaction(true, () -> {
+            runs.incrementAndGet();
+            service.record(1L, "k1", response);
+        }, response));
+        SaleResponseDto retry = service.processOnce(1L, "k1", () -> { runs.incrementAndGet(); return response; });
+
+        assertSame(first, retry);
+        assertEquals(1, runs.get());
+        // Second call is answered from memory
+        verify(repository, times(1)).findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(eq(1L), eq("k1"), any());
+    }
+
+    @Test
+    void processOnce_SaleRolledBack_IsNotCached() {
+        when(repository.findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(eq(1L), eq("k6"), any()))
+                .thenReturn(Optional.empty());
+        AtomicInteger runs = new AtomicInteger();
+        SaleResponseDto response = saleResponse("SALE-6");
+
+        // The key is recorded, then something later in the sale transaction fails
+        service.processOnce(1L, "k6", () -> inTransaction(false, () -> {
+            runs.incrementAndGet();
+            service.record(1L, "k6", response);
+        }, response));
+        service.processOnce(1L, "k6", () -> { runs.incrementAndGet(); return response; });
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void processOnce_KeyStoredBeforeRestart_ReturnsStoredResponse() throws Exception {
+        SaleResponseDto stored = saleResponse("SALE-7");
+        SaleIdempotencyKey entry = new SaleIdempotencyKey();
+        entry.setResponse(objectMapper.writeValueAsString(stored));
+        when(repository.findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(eq(1L), eq("k2"), any()))
+                .thenReturn(Optional.of(entry));
+
+        SaleResponseDto result = service.processOnce(1L, "k2", () -> fail("sale must not run again"));
+
+        assertEquals("SALE-7", result.saleId());
+        assertEquals(0, new BigDecimal("6.00").compareTo(result.totalAmount()));
+    }
+
+    @Test
+    void processOnce_ConcurrentDuplicate_ReturnsWinnersResponse() throws Exception {
+        SaleIdempotencyKey winner = new SaleIdempotencyKey();
+        winner.setResponse(objectMapper.writeValueAsString(saleResponse("SALE-9")));
+        when(repository.findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(eq(1L), eq("k3"), any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(winner));
+
+        SaleResponseDto result = service.processOnce(1L, "k3", () -> {
+            throw new DataIntegrityViolationException("uk_sale_idempotency_keys_org_key");
+        });
+
+        assertEquals("SALE-9", result.saleId());
+    }
+
+    @Test
+    void processOnce_KeysAreScopedPerOrganization() {
+        when(repository.findByOrganizationIdAndIdempotencyKeyAndCreatedAtAfter(any(), eq("k4"), any()))
+                .thenReturn(Optional.empty());
+
+        service.processOnce(1L, "k4", () -> saleResponse("SALE-1"));
+        SaleResponseDto other = service.processOnce(2L, "k4", () -> saleResponse("SALE-2"));
+
+        assertEquals("SALE-2", other.saleId());
+    }
+
+    @Test
+    void processOnce_BlankKey_Throws() {
+        assertThrows(BadRequestException.class, () -> service.processOnce(1L, " ", () -> saleResponse("SALE-1")));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void record_PersistsSerializedResponse() throws Exception {
+        SaleResponseDto response = saleResponse("SALE-3");
+
+        service.record(1L, "k5", response);
+
+        ArgumentCaptor<SaleIdempotencyKey> captor = ArgumentCaptor.forClass(SaleIdempotencyKey.class);
+        verify(repository).saveAndFlush(captor.capture());
+        assertEquals("k5", captor.getValue().getIdempotencyKey());
+        assertEquals("SALE-3", captor.getValue().getSaleId());
+        assertEquals("SALE-3", objectMapper.readValue(captor.getValue().getResponse(), SaleResponseDto.class).saleId());
+    }
+
+    @Test
+    void record_KeyReusedAfterWindow_DeletesExpiredRowFirst() {
+        SaleResponseDto response = saleResponse("SALE-8");
+
+        service.record(1L, "k8", response);
+
+        ArgumentCaptor<OffsetDateTime> cutoff = ArgumentCaptor.forClass(OffsetDateTime.class);
+        InOrder inOrder = inOrder(repository);
+        inOrder.verify(repository).deleteKeyCreatedBefore(eq(1L), eq("k8"), cutoff.capture());
+        inOrder.verify(repository).saveAndFlush(any());
+        assertTrue(cutoff.getValue().isBefore(OffsetDateTime.now().minusMinutes(59)));
+    }
+
+    private static SaleResponseDto inTransaction(boolean commit, Runnable work, SaleResponseDto response) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            if (commit) {
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            }
+            return response;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static SaleResponseDto saleResponse(String saleId) {
+        SaleItemResponseDto item = new SaleItemResponseDto(10L, "Cola", new BigDecimal("2"),
+                new BigDecimal("3.00"), new BigDecimal("6.00"));
+        return new SaleResponseDto(saleId, List.of(item), new BigDecimal("6.00"), null,
+                OffsetDateTime.now(ZoneOffset.UTC));
+    }
+}
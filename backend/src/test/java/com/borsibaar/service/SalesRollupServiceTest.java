@@ -0,0 +1,44 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesRollupServiceTest {
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @InjectMocks
+    private SalesRollupService salesRollupService;
+
+    @Test
+    void merge_MergesEveryRollup() {
+        List<InventoryTransaction> transactions = List.of(new InventoryTransaction());
+
+        salesRollupService.merge(transactions);
+
+        InOrder inOrder = inOrder(inventoryTransactionRepository);
+        inOrder.verify(inventoryTransactionRepository).touchLastSale(transactions);
+        inOrder.verify(inventoryTransactionRepository).mergeCandles(transactions);
+        inOrder.verify(inventoryTransactionRepository).mergeSalesCounters(transactions);
+        inOrder.verify(inventoryTransactionRepository).mergeHeatmap(transactions);
+    }
+
+    @Test
+    void merge_NoTransactions_DoesNothing() {
+        salesRollupService.merge(List.of());
+
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+}
@@ -3,24 +3,35 @@ package com.borsibaar.service;
 import com.borsibaar.dto.SaleItemRequestDto;
 import com.borsibaar.dto.SaleRequestDto;
 import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.entity.Category;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
 import com.borsibaar.entity.Product;
+import com.borsibaar.event.MarketMovedEvent;
 import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryStockRepository.StockDecrement;
+import com.borsibaar.repository.InventoryStockRepository.StockUpdate;
 import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.util.ReferenceIdGenerator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,7 +42,12 @@ class SalesServiceTest {
 
     @Mock private InventoryRepository inventoryRepository;
     @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private SalesRollupService salesRollupService;
     @Mock private ProductRepository productRepository;
+    @Spy private ReferenceIdGenerator referenceIdGenerator = new ReferenceIdGenerator(0);
+    @Mock private SaleIdempotencyService saleIdempotencyService;
+    @Mock private ObjectProvider<MarketEngine> marketEngine;
+    @Mock private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks private SalesService salesService;
 
@@ -39,21 +55,108 @@ class SalesServiceTest {
 
     @Test
     void processSale_SingleItem_SuccessPriceIncreaseCapped() {
-        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(10)); product.setMaxPrice(BigDecimal.valueOf(10)); product.setName("Beer");
+        Organization org = new Organization(); org.setPriceIncreaseStep(BigDecimal.ONE);
+        Category dynamic = new Category(); dynamic.setDynamicPricing(true);
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(10)); product.setMaxPrice(BigDecimal.valueOf(10)); product.setName("Beer"); product.setCategory(dynamic); product.setOrganization(org);
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.valueOf(20)); inventory.setAdjustedPrice(BigDecimal.valueOf(10)); inventory.setUpdatedAt(OffsetDateTime.now());
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.save(inventory)).thenReturn(inventory);
-        when(inventoryTransactionRepository.save(any(InventoryTransaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L))).thenReturn(List.of(product));
+        // Price capped at max (10) by the update statement
+        when(inventoryRepository.decrementStock(9L, BigDecimal.valueOf(2), BigDecimal.ONE))
+                .thenReturn(applied(stockUpdate(20, 18, 10, 10)));
 
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.valueOf(2));
         SaleRequestDto request = new SaleRequestDto(List.of(item), "note", 1L);
         SaleResponseDto response = salesService.processSale(request, userId, 1L);
         assertEquals(1, response.items().size());
         assertEquals(BigDecimal.valueOf(20), response.totalAmount());
-        // Price capped at max (10)
-        assertEquals(BigDecimal.valueOf(10), inventory.getAdjustedPrice());
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).insertAll(captor.capture());
+        verify(salesRollupService).merge(captor.getValue());
+        InventoryTransaction tx = captor.getValue().get(0);
+        assertEquals(BigDecimal.valueOf(-2), tx.getQuantityChange());
+        assertEquals(BigDecimal.valueOf(20), tx.getQuantityBefore());
+        assertEquals(BigDecimal.valueOf(18), tx.getQuantityAfter());
+        assertEquals(BigDecimal.valueOf(10), tx.getPriceAfter());
+        verifyNoInteractions(saleIdempotencyService);
+        verify(eventPublisher).publishEvent(new MarketMovedEvent(1L));
+    }
+
+    @Test
+    void processSale_MultipleItems_LoadsBasketOnceAndBatchesLedger() {
+        Organization org = new Organization(); org.setPriceIncreaseStep(BigDecimal.ONE);
+        Category dynamic = new Category(); dynamic.setDynamicPricing(true);
+        Product beer = new Product(); beer.setId(5L); beer.setOrganizationId(1L); beer.setActive(true); beer.setBasePrice(BigDecimal.valueOf(3)); beer.setName("Beer"); beer.setCategory(dynamic); beer.setOrganization(org);
+        Inventory beerInv = new Inventory(); beerInv.setId(9L); beerInv.setProduct(beer); beerInv.setQuantity(BigDecimal.valueOf(10)); beerInv.setAdjustedPrice(BigDecimal.valueOf(3));
+        beer.setInventory(beerInv);
+        Product cider = new Product(); cider.setId(6L); cider.setOrganizationId(1L); cider.setActive(true); cider.setBasePrice(BigDecimal.valueOf(4)); cider.setName("Cider");
+        Inventory ciderInv = new Inventory(); ciderInv.setId(10L); ciderInv.setProduct(cider); ciderInv.setQuantity(BigDecimal.valueOf(5));
+        cider.setInventory(ciderInv);
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L, 6L))).thenReturn(List.of(beer, cider));
+        when(inventoryRepository.decrementStock(9L, BigDecimal.ONE, BigDecimal.ONE))
+                .thenReturn(applied(stockUpdate(10, 9, 3, 4)))
+                .thenReturn(applied(stockUpdate(9, 8, 4, 5)));
+        // Non-dynamic category: no price step
+        when(inventoryRepository.decrementStock(10L, BigDecimal.valueOf(2), null))
+                .thenReturn(applied(stockUpdate(5, 3, 4, 4)));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(5L, BigDecimal.ONE),
+                new SaleItemRequestDto(6L, BigDecimal.valueOf(2)),
+                new SaleItemRequestDto(5L, BigDecimal.ONE)), null, 1L);
+        SaleResponseDto response = salesService.processSale(request, userId, 1L);
+
+        // Second beer line is charged the price bumped by the first one
+        assertEquals(BigDecimal.valueOf(3), response.items().get(0).unitPrice());
+        assertEquals(BigDecimal.valueOf(4), response.items().get(2).unitPrice());
+        assertEquals(BigDecimal.valueOf(15), response.totalAmount());
+
+        verify(productRepository, never()).findById(anyLong());
+        verify(inventoryRepository, never()).save(any());
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).insertAll(captor.capture());
+        assertEquals(3, captor.getValue().size());
+        assertTrue(response.saleId().startsWith("SALE-"));
+        assertTrue(captor.getValue().stream().allMatch(t -> t.getReferenceId().equals(response.saleId())));
+    }
+
+    @Test
+    void processSale_DecrementsInInventoryIdOrder() {
+        Product beer = new Product(); beer.setId(5L); beer.setOrganizationId(1L); beer.setActive(true); beer.setBasePrice(BigDecimal.valueOf(3)); beer.setName("Beer");
+        Inventory beerInv = new Inventory(); beerInv.setId(9L); beerInv.setProduct(beer); beerInv.setQuantity(BigDecimal.TEN);
+        beer.setInventory(beerInv);
+        Product cider = new Product(); cider.setId(6L); cider.setOrganizationId(1L); cider.setActive(true); cider.setBasePrice(BigDecimal.valueOf(4)); cider.setName("Cider");
+        Inventory ciderInv = new Inventory(); ciderInv.setId(10L); ciderInv.setProduct(cider); ciderInv.setQuantity(BigDecimal.TEN);
+        cider.setInventory(ciderInv);
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L, 6L))).thenReturn(List.of(beer, cider));
+        when(inventoryRepository.decrementStock(9L, BigDecimal.ONE, null)).thenReturn(applied(stockUpdate(10, 9, 3, 3)));
+        when(inventoryRepository.decrementStock(10L, BigDecimal.ONE, null)).thenReturn(applied(stockUpdate(10, 9, 4, 4)));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(6L, BigDecimal.ONE),
+                new SaleItemRequestDto(5L, BigDecimal.ONE)), null, 1L);
+        SaleResponseDto response = salesService.processSale(request, userId, 1L);
+
+        InOrder inOrder = inOrder(inventoryRepository);
+        inOrder.verify(inventoryRepository).decrementStock(9L, BigDecimal.ONE, null);
+        inOrder.verify(inventoryRepository).decrementStock(10L, BigDecimal.ONE, null);
+        // Response lines stay in basket order
+        assertEquals(List.of(6L, 5L), response.items().stream().map(i -> i.productId()).toList());
+    }
+
+    @Test
+    void processSale_WithIdempotencyKey_RecordsResponse() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2)); product.setName("Beer");
+        Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setQuantity(BigDecimal.TEN);
+        product.setInventory(inventory);
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L))).thenReturn(List.of(product));
+        when(inventoryRepository.decrementStock(9L, BigDecimal.ONE, null))
+                .thenReturn(applied(stockUpdate(10, 9, 2, 2)));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), null, 1L);
+        SaleResponseDto response = salesService.processSale(request, userId, 1L, "retry-key");
+
+        verify(saleIdempotencyService).record(1L, "retry-key", response);
     }
 
     @Test
@@ -61,11 +164,17 @@ class SalesServiceTest {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L))).thenReturn(List.of(product));
+        // Conditional update matched no row
+        when(inventoryRepository.decrementStock(9L, BigDecimal.valueOf(5), null))
+                .thenReturn(new StockDecrement(null, BigDecimal.valueOf(3)));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.valueOf(5));
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        // The stock the update saw, not the quantity loaded with the product
+        assertTrue(ex.getReason().contains("Available: 3"));
+        verifyNoInteractions(inventoryTransactionRepository);
     }
 
     @Test
@@ -73,7 +182,7 @@ class SalesServiceTest {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(false); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L))).thenReturn(List.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -85,7 +194,7 @@ class SalesServiceTest {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(2L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(2L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L))).thenReturn(List.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -95,10 +204,19 @@ class SalesServiceTest {
     @Test
     void processSale_ProductInventoryMissing_Throws() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllWithInventoryByIdIn(Set.of(5L))).thenReturn(List.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
         assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
     }
+
+    private static StockDecrement applied(StockUpdate update) {
+        return new StockDecrement(update, update.quantityBefore());
+    }
+
+    private static StockUpdate stockUpdate(long quantityBefore, long quantityAfter, long priceBefore, long priceAfter) {
+        return new StockUpdate(BigDecimal.valueOf(quantityBefore), BigDecimal.valueOf(quantityAfter),
+                BigDecimal.valueOf(priceBefore), BigDecimal.valueOf(priceAfter), OffsetDateTime.now());
+    }
 }
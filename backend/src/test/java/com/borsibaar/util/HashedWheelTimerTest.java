@@ -0,0 +1,95 @@
+package com.borsibaar.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> fired = new ArrayList<>();
+    // Runs expired tasks on the calling thread
+    private final HashedWheelTimer timer = new HashedWheelTimer(Duration.ofSeconds(1), 8, Runnable::run, clock::get);
+
+    @Test
+    void schedule_FiresAtDeadlineTickNotBefore() {
+        timer.schedule(() -> fired.add("a"), Duration.ofSeconds(3));
+
+        timer.advanceTo(2);
+        assertTrue(fired.isEmpty());
+
+        timer.advanceTo(3);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void schedule_DeadlineBeyondOneRotation_WaitsFullRounds() {
+        // Same bucket as tick 3, two rotations later
+        timer.schedule(() -> fired.add("late"), Duration.ofSeconds(19));
+        timer.schedule(() -> fired.add("early"), Duration.ofSeconds(3));
+
+        timer.advanceTo(11);
+        assertEquals(List.of("early"), fired);
+
+        timer.advanceTo(18);
+        assertEquals(List.of("early"), fired);
+
+        timer.advanceTo(19);
+        assertEquals(List.of("early", "late"), fired);
+    }
+
+    @Test
+    void schedule_PartialTick_RoundsUp() {
+        timer.schedule(() -> fired.add("a"), Duration.ofMillis(1500));
+
+        timer.advanceTo(1);
+        assertTrue(fired.isEmpty());
+
+        timer.advanceTo(2);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void schedule_RelativeToCurrentClock() {
+        timer.advanceTo(4);
+        clock.set(Duration.ofSeconds(4).toNanos());
+
+        timer.schedule(() -> fired.add("a"), Duration.ofSeconds(2));
+
+        timer.advanceTo(5);
+        assertTrue(fired.isEmpty());
+        timer.advanceTo(6);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void schedule_ZeroDelay_FiresOnNextAdvance() {
+        timer.schedule(() -> fired.add("now"), Duration.ZERO);
+
+        timer.advanceTo(0);
+
+        assertEquals(List.of("now"), fired);
+    }
+
+    @Test
+    void cancel_PreventsExecution() {
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> fired.add("a"), Duration.ofSeconds(2));
+        timer.advanceTo(1);
+
+        timeout.cancel();
+        timer.advanceTo(10);
+
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    void constructor_RejectsNonPositiveTick() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashedWheelTimer(Duration.ZERO, 8, Runnable::run));
+    }
+}
@@ -0,0 +1,106 @@
+package com.borsibaar.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceIdGeneratorTest {
+
+    @Test
+    void nextId_ConcurrentCallers_AllUniqueAndIncreasingPerThread() throws Exception {
+        ReferenceIdGenerator generator = new ReferenceIdGenerator(3);
+        int threads = 8;
+        int idsPerThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[idsPerThread];
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> all = new HashSet<>(threads * idsPerThread);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) {
+                        assertTrue(ids[i] > ids[i - 1], "ids must increase within a thread");
+                    }
+                    assertEquals(3, nodeOf(ids[i]));
+                    assertTrue(all.add(ids[i]), "duplicate id " + ids[i]);
+                }
+            }
+            assertEquals(threads * idsPerThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void nextId_SequenceExhausted_BorrowsNextMillisecond() {
+        long frozen = ReferenceIdGenerator.EPOCH_MILLIS + 1_000;
+        ReferenceIdGenerator generator = new ReferenceIdGenerator(0, () -> frozen);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 3 * (ReferenceIdGenerator.SEQUENCE_MASK + 1); i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void nextId_ClockMovesBackwards_StaysMonotonic() {
+        AtomicLong clock = new AtomicLong(ReferenceIdGenerator.EPOCH_MILLIS + 5_000);
+        ReferenceIdGenerator generator = new ReferenceIdGenerator(0, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-2_000);
+        long after = generator.nextId();
+        assertTrue(after > before);
+    }
+
+    @Test
+    void nextId_DifferentNodesSameMillisecond_DoNotCollide() {
+        long frozen = ReferenceIdGenerator.EPOCH_MILLIS + 42;
+        ReferenceIdGenerator nodeA = new ReferenceIdGenerator(1, () -> frozen);
+        ReferenceIdGenerator nodeB = new ReferenceIdGenerator(2, () -> frozen);
+
+        assertNotEquals(nodeA.nextId(), nodeB.nextId());
+    }
+
+    @Test
+    void next_PrependsPrefix() {
+        ReferenceIdGenerator generator = new ReferenceIdGenerator(0);
+        assertTrue(generator.next("SALE").matches("SALE-\\d+"));
+    }
+
+    @Test
+    void constructor_NodeIdOutOfRange_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceIdGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceIdGenerator(-1));
+    }
+
+    private static long nodeOf(long id) {
+        return (id >>> ReferenceIdGenerator.SEQUENCE_BITS) & ReferenceIdGenerator.MAX_NODE_ID;
+    }
+}
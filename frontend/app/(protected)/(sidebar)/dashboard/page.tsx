@@ -42,6 +42,7 @@ export default function Dashboard() {
     name: string;
     priceIncreaseStep?: number;
     priceDecreaseStep?: number;
+    tickIntervalSeconds?: number;
   } | null>(null);
   const [saving, setSaving] = useState(false);
   const [saveError, setSaveError] = useState<string | null>(null);
@@ -83,6 +84,7 @@ export default function Dashboard() {
               priceDecreaseStep: org?.priceDecreaseStep
                 ? parseFloat(org.priceDecreaseStep)
                 : undefined,
+              tickIntervalSeconds: org?.tickIntervalSeconds ?? undefined,
             });
           } else setOrgName("Unknown Organization");
         } catch {
@@ -154,6 +156,7 @@ export default function Dashboard() {
             name: orgDetails.name,
             priceIncreaseStep: orgDetails.priceIncreaseStep,
             priceDecreaseStep: orgDetails.priceDecreaseStep,
+            tickIntervalSeconds: orgDetails.tickIntervalSeconds,
           }),
         }
       );
@@ -167,6 +170,7 @@ export default function Dashboard() {
         priceDecreaseStep: updated.priceDecreaseStep
           ? parseFloat(updated.priceDecreaseStep)
           : undefined,
+        tickIntervalSeconds: updated.tickIntervalSeconds ?? undefined,
       });
       setSaveSuccess("Organization updated successfully");
     } catch (err) {
@@ -402,6 +406,32 @@ export default function Dashboard() {
                     }
                   />
                 </div>
+                <div>
+                  <label className="block text-sm font-medium mb-1 text-card-foreground">
+                    Price Decrease Interval (seconds)
+                  </label>
+                  <Input
+                    type="number"
+                    step="1"
+                    min="5"
+                    max="3600"
+                    className="w-full px-3 py-2 border border-gray-700 rounded-lg focus:ring-2 focus:ring-blue-500 focus:border-transparent"
+                    value={orgDetails.tickIntervalSeconds ?? ""}
+                    onChange={(e) =>
+                      setOrgDetails((d) =>
+                        d
+                          ? {
+                              ...d,
+                              tickIntervalSeconds:
+                                e.target.value === ""
+                                  ? undefined
+                                  : parseInt(e.target.value, 10),
+                            }
+                          : d
+                      )
+                    }
+                  />
+                </div>
               </div>
               {saveError && (
                 <p className="text-sm text-destructive">{saveError}</p>
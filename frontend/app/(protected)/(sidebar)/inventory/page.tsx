@@ -28,6 +28,9 @@ interface InventoryTransactionResponseDto {
   createdByEmail?: string;
   createdAt: string;
 }
+
+const HISTORY_PAGE_SIZE = 50;
+
 import {
   Select,
   SelectContent,
@@ -62,6 +65,8 @@ export default function Inventory() {
     InventoryTransactionResponseDto[]
   >([]);
   const [loadingHistory, setLoadingHistory] = useState(false);
+  const [loadingMoreHistory, setLoadingMoreHistory] = useState(false);
+  const [hasMoreHistory, setHasMoreHistory] = useState(false);
   const [formData, setFormData] = useState({
     quantity: "",
     notes: "",
@@ -130,7 +135,7 @@ export default function Inventory() {
     try {
       setLoadingHistory(true);
       const response = await fetch(
-        `/api/backend/inventory/product/${productId}/history`,
+        `/api/backend/inventory/product/${productId}/history?limit=${HISTORY_PAGE_SIZE}`,
         {
           credentials: "include",
         }
@@ -140,14 +145,42 @@ export default function Inventory() {
 
       const data = await response.json();
       setTransactionHistory(data);
+      setHasMoreHistory(data.length === HISTORY_PAGE_SIZE);
     } catch (err) {
       console.error("Error fetching history:", err);
       setTransactionHistory([]);
+      setHasMoreHistory(false);
     } finally {
       setLoadingHistory(false);
     }
   };
 
+  // Next page starts after the oldest row shown so far
+  const fetchMoreTransactionHistory = async (productId: number) => {
+    const last = transactionHistory[transactionHistory.length - 1];
+    if (!last) return;
+    try {
+      setLoadingMoreHistory(true);
+      const before = encodeURIComponent(`${last.createdAt},${last.id}`);
+      const response = await fetch(
+        `/api/backend/inventory/product/${productId}/history?limit=${HISTORY_PAGE_SIZE}&before=${before}`,
+        {
+          credentials: "include",
+        }
+      );
+
+      if (!response.ok) throw new Error("Failed to fetch history");
+
+      const data = await response.json();
+      setTransactionHistory((prev) => [...prev, ...data]);
+      setHasMoreHistory(data.length === HISTORY_PAGE_SIZE);
+    } catch (err) {
+      console.error("Error fetching history:", err);
+    } finally {
+      setLoadingMoreHistory(false);
+    }
+  };
+
   const handleCreateProduct = async () => {
     try {
       const productResponse = await fetch("/api/backend/product", {
@@ -363,6 +396,7 @@ export default function Inventory() {
     setFormData({ quantity: "", notes: "", referenceId: "" });
     setTransactionHistory([]);
     setLoadingHistory(false);
+    setHasMoreHistory(false);
   };
 
   // @ts-expect-error: types aren't imported currently from backend
@@ -1185,6 +1219,15 @@ export default function Inventory() {
                       )}
                   </div>
                 ))}
+                {hasMoreHistory && (
+                  <button
+                    onClick={() => fetchMoreTransactionHistory(selectedProduct?.productId)}
+                    disabled={loadingMoreHistory}
+                    className="w-full py-2 text-sm text-gray-300 bg-gray-700 hover:bg-gray-800 rounded-lg transition disabled:opacity-50"
+                  >
+                    {loadingMoreHistory ? "Loading..." : "Load more"}
+                  </button>
+                )}
               </div>
             )}
           </div>
@@ -48,16 +48,18 @@ const tallinnTicks = (cutoff: Date, now: Date, stepMin: number) => {
 };
 
 // ---------- Types ----------
-type HistoryDto = {
-  id: number;
-  inventoryId: number;
-  priceBefore: number;
-  priceAfter: number;
-  createdAt: string;
+// One-minute OHLC bucket, aggregated by the backend
+type CandleDto = {
+  time: string;
+  open: number;
+  high: number;
+  low: number;
+  close: number;
+  volume: number;
 };
 type CurrentHistory = {
   productInv: InvDto;
-  priceHistory: HistoryDto[];
+  priceHistory: CandleDto[];
 };
 
 export default function PriceHistoryGraphFancy({
@@ -88,15 +90,15 @@ export default function PriceHistoryGraphFancy({
     try {
       setError(null);
       const res = await fetch(
-        `/api/backend/inventory/product/${productInv.productId}/history`,
+        `/api/backend/inventory/product/${productInv.productId}/candles?interval=1m&organizationId=${productInv.organizationId}`,
         {
           cache: "no-store",
           credentials: "include",
         },
       );
       if (!res.ok) throw new Error(`HTTP ${res.status}`);
-      const historyJson: HistoryDto[] = await res.json();
-      setCurrent({ productInv, priceHistory: historyJson });
+      const candlesJson: { candles: CandleDto[] } = await res.json();
+      setCurrent({ productInv, priceHistory: candlesJson.candles });
     } catch (e) {
       setError(e?.message || "Failed to fetch history");
     }
@@ -139,10 +141,10 @@ export default function PriceHistoryGraphFancy({
 
     const product = current.productInv;
     const hist = [...(current.priceHistory ?? [])]
-      .map((h) => ({
-        ts: new Date(h.createdAt),
-        before: Number(h.priceBefore),
-        after: Number(h.priceAfter),
+      .map((c) => ({
+        ts: new Date(c.time),
+        before: Number(c.open),
+        after: Number(c.close),
       }))
       .filter((h) => !isNaN(h.ts.getTime()))
       .sort((a, b) => a.ts.getTime() - b.ts.getTime());
@@ -15,8 +15,11 @@ export type InvDto = {
   quantity: number;
   unitPrice: number;
   basePrice: number;
+  minPrice: number | null;
+  maxPrice: number | null;
   updatedAt: string;
 };
+type MenuCategory = Category & { dynamicPricing: boolean; products: InvDto[] };
 
 const money = (n: number) =>
   new Intl.NumberFormat("et-EE", {
@@ -40,50 +43,38 @@ export default function ClientProductsByCategory() {
 
   useEffect(() => {
     let alive = true;
+    let lastEtag: string | null = null;
 
     const load = async () => {
       setLoading(true);
       try {
         const organizationId = 2;
 
-        const cRes = await fetch(
-          `/api/backend/categories?organizationId=${organizationId}`,
+        // One conditional request: the browser revalidates its copy with
+        // If-None-Match and reuses it when the backend answers 304
+        const res = await fetch(
+          `/api/backend/menu?organizationId=${organizationId}`,
           {
-            cache: "no-store",
+            cache: "no-cache",
             credentials: "include",
           }
         );
-        if (!cRes.ok) throw new Error(`Categories HTTP ${cRes.status}`);
-        const cJson = await cRes.json();
-        const categoryList: Category[] = Array.isArray(cJson)
-          ? cJson
-          : cJson?.items ?? cJson?.content ?? [];
+        if (!res.ok) throw new Error(`Menu HTTP ${res.status}`);
+        const etag = res.headers.get("etag");
+        if (etag && etag === lastEtag) {
+          if (alive) setErr(null);
+          return;
+        }
+        const menu: MenuCategory[] = await res.json();
 
         if (!alive) return;
-        setCats(categoryList);
-
-        const fetches = categoryList.map(async (c) => {
-          const res = await fetch(
-            `/api/backend/inventory?categoryId=${c.id}&organizationId=${organizationId}`,
-            {
-              cache: "no-store",
-              credentials: "include",
-            }
-          );
-          if (!res.ok)
-            throw new Error(`Inventory HTTP ${res.status} (cat ${c.id})`);
-          const j = await res.json();
-          const arr: InvDto[] = Array.isArray(j)
-            ? j
-            : j?.items ?? j?.content ?? [];
-          return [c.name, arr] as const;
-        });
-
-        const results = await Promise.all(fetches);
-        if (!alive) return;
+        lastEtag = etag;
+        setCats(menu);
 
         const grouped = Object.fromEntries(
-          results.filter(([, arr]) => arr.length > 0)
+          menu
+            .filter((c) => c.products.length > 0)
+            .map((c) => [c.name, c.products] as const)
         );
         setGroups(grouped);
         setErr(null);
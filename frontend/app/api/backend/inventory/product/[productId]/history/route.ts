@@ -6,8 +6,18 @@ export async function GET(
     { params }: { params: Promise<{ productId: string }> }
 ) {
     try {
+        // Forward the page cursor and size
+        const { searchParams } = new URL(request.url);
+        const url = new URL(`${backendUrl}/api/inventory/product/${(await params).productId}/history`);
+        for (const name of ["before", "limit"]) {
+            const value = searchParams.get(name);
+            if (value) {
+                url.searchParams.append(name, value);
+            }
+        }
+
         const response = await fetch(
-            `${backendUrl}/api/inventory/product/${(await params).productId}/history`,
+            url.toString(),
             {
                 method: "GET",
                 headers: {
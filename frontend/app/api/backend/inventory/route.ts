@@ -17,17 +17,23 @@ export async function GET(request: NextRequest) {
             method: "GET",
             headers: {
                 Cookie: request.headers.get("cookie") || "",
+                // Let the backend answer 304 when the menu has not changed
+                "If-None-Match": request.headers.get("if-none-match") || "",
             },
             credentials: "include",
         });
 
+        if (response.status === 304) {
+            return new NextResponse(null, { status: 304, headers: cacheHeaders(response) });
+        }
+
         if (!response.ok) {
             const text = await response.text();
             return new NextResponse(text, { status: response.status });
         }
 
         const data = await response.json();
-        return NextResponse.json(data, { status: response.status });
+        return NextResponse.json(data, { status: response.status, headers: cacheHeaders(response) });
     } catch (error) {
         console.error("Proxy error:", error);
         return NextResponse.json(
@@ -36,3 +42,13 @@ export async function GET(request: NextRequest) {
         );
     }
 }
+
+function cacheHeaders(response: Response): HeadersInit {
+    const headers: Record<string, string> = {};
+    const etag = response.headers.get("etag");
+    if (etag) {
+        headers["ETag"] = etag;
+        headers["Cache-Control"] = "no-cache";
+    }
+    return headers;
+}
@@ -0,0 +1,52 @@
+import { NextRequest, NextResponse } from "next/server";
+import { backendUrl } from "@/utils/constants";
+
+export async function GET(request: NextRequest) {
+    try {
+        const { searchParams } = new URL(request.url);
+        const organizationId = searchParams.get("organizationId");
+
+        const url = new URL(`${backendUrl}/api/menu`);
+        if (organizationId) {
+            url.searchParams.append("organizationId", organizationId);
+        }
+
+        const response = await fetch(url.toString(), {
+            method: "GET",
+            headers: {
+                Cookie: request.headers.get("cookie") || "",
+                // Let the backend answer 304 when the menu has not changed
+                "If-None-Match": request.headers.get("if-none-match") || "",
+            },
+            credentials: "include",
+        });
+
+        if (response.status === 304) {
+            return new NextResponse(null, { status: 304, headers: cacheHeaders(response) });
+        }
+
+        if (!response.ok) {
+            const text = await response.text();
+            return new NextResponse(text, { status: response.status });
+        }
+
+        const data = await response.json();
+        return NextResponse.json(data, { status: response.status, headers: cacheHeaders(response) });
+    } catch (error) {
+        console.error("Proxy error:", error);
+        return NextResponse.json(
+            { error: "Failed to fetch menu" },
+            { status: 500 }
+        );
+    }
+}
+
+function cacheHeaders(response: Response): HeadersInit {
+    const headers: Record<string, string> = {};
+    const etag = response.headers.get("etag");
+    if (etag) {
+        headers["ETag"] = etag;
+        headers["Cache-Control"] = "no-cache";
+    }
+    return headers;
+}